@@ -19,7 +19,9 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
-@WebFilter(urlPatterns = {"/index.jsp", "/task/*"})
+@WebFilter(
+    urlPatterns = {"/index.jsp", "/task/*"},
+    asyncSupported = true)
 public class AuthenticationFilter implements Filter {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AuthenticationFilter.class);
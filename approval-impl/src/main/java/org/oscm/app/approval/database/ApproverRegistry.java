@@ -0,0 +1,44 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the approver key of each organization that used the approval tool. Approvers are never
+ * deleted, so a key once read stays valid and the database is only accessed for the first request
+ * of an organization.
+ */
+public class ApproverRegistry {
+
+  private static final ApproverRegistry INSTANCE = new ApproverRegistry();
+
+  private final ConcurrentMap<String, Integer> approvers = new ConcurrentHashMap<>();
+
+  public static ApproverRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the key of the approver for the given organization, the approver is created if it does
+   * not exist yet.
+   */
+  public int getApproverKey(String orgId, DataAccessService das) throws Exception {
+    Integer tkey = approvers.get(orgId);
+    if (tkey == null) {
+      tkey = Integer.valueOf(das.registerApprover(orgId));
+      approvers.put(orgId, tkey);
+    }
+    return tkey.intValue();
+  }
+
+  public void clear() {
+    approvers.clear();
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.oscm.app.approval.remote.BesClient;
+import org.oscm.app.approval.remote.WebServiceTask;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.oscm.app.connector.framework.ProcessException;
+import org.oscm.intf.TriggerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Approves suspended triggers whose service is configured for auto-approval. The approval must
+ * wait until the trigger callback returned to the marketplace, so it is stored in the autoapproval
+ * queue with a delay. The workers of the queue approve it and retry while BES rejects it. Pending
+ * approvals are resumed after a restart, also by another node.
+ */
+public class AutoApprovalScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(AutoApprovalScheduler.class);
+
+  static final String QUEUE = "autoapproval";
+  static final String DELAY_MILLIS = "autoapproval.delay.millis";
+
+  private static final AutoApprovalScheduler INSTANCE = new AutoApprovalScheduler();
+
+  private final ApprovalConfig config;
+  private final RetryQueue queue;
+
+  public AutoApprovalScheduler() {
+    this(new DataAccessService(), ApprovalConfig.getInstance());
+  }
+
+  public AutoApprovalScheduler(DataAccessService das, ApprovalConfig config) {
+    this.config = config;
+    this.queue = new RetryQueue(QUEUE, QUEUE, das, config, this::process);
+  }
+
+  public static AutoApprovalScheduler getInstance() {
+    return INSTANCE;
+  }
+
+  /** Starts the workers, which also resume the stored approvals. */
+  public void start() {
+    queue.start("approval-auto-approval-");
+  }
+
+  /** Stops the workers. Stored approvals are resumed on the next start. */
+  public void stop() {
+    queue.stop();
+  }
+
+  /**
+   * Stores the approval of the given trigger, which is attempted after the configured delay. A
+   * trigger is stored only once.
+   */
+  public void schedule(String orgId, long triggerKey) {
+    try {
+      if (!queue.enqueue(
+          String.valueOf(triggerKey),
+          orgId.getBytes(UTF_8),
+          config.getLong(DELAY_MILLIS, 1000))) {
+        logger.debug("Auto-approval of trigger " + triggerKey + " already scheduled");
+      }
+    } catch (Exception e) {
+      logger.error(
+          "Failed to store the auto-approval of trigger " + triggerKey
+              + ", it must be approved manually",
+          e);
+    }
+  }
+
+  /** Approves the trigger of a stored approval. */
+  void process(RetryQueue.Entry entry) throws Exception {
+    approve(new String(entry.payload, UTF_8), Long.parseLong(entry.name));
+    logger.debug("Trigger " + entry.name + " approved");
+  }
+
+  void approve(String orgId, long triggerKey) throws Exception {
+    BesClient.runWebServiceAsOrganizationAdmin(
+        orgId, createApproveActionWSCall(TriggerService.class, triggerKey));
+  }
+
+  <T> WebServiceTask<T> createApproveActionWSCall(Class<T> serv, final long triggerKey) {
+    return new WebServiceTask<T>(serv) {
+
+      @Override
+      public Object execute(T svc) throws ProcessException {
+        try {
+          TriggerService trigSvc = (TriggerService) svc;
+          trigSvc.approveAction(triggerKey);
+        } catch (Exception e) {
+          throw new ProcessException(
+              "Failed to approvate trigger " + e.getMessage(), ProcessException.ERROR);
+        }
+        return WebServiceTask.RC_OK;
+      }
+    };
+  }
+}
@@ -11,17 +11,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 
-import javax.naming.Context;
-import javax.naming.InitialContext;
 import javax.sql.DataSource;
 
 import org.oscm.app.approval.i18n.Messages;
+import org.oscm.app.approval.util.ApprovalConfig;
 import org.oscm.vo.VOOrganization;
 import org.oscm.vo.VOTriggerProcess;
 import org.slf4j.Logger;
@@ -41,6 +41,34 @@ public class DataAccessService {
    */
   private static final String DATASOURCE = "ApprovalDS";
 
+  /**
+   * Optional datasource of a read-only replica of the approval database. If it is not defined,
+   * all queries use {@link #DATASOURCE}.
+   */
+  private static final String READ_DATASOURCE = "ApprovalDS-ReadOnly";
+
+  /**
+   * Optional datasource of the role owning the approval tables. If it is defined, the schema
+   * updates and the partition maintenance use it, otherwise {@link #DATASOURCE}, whose role must
+   * then own the tables.
+   */
+  private static final String OWNER_DATASOURCE = "ApprovalDS-Owner";
+
+  static final String DATASOURCE_PROVIDER = "datasource.provider";
+  static final String DATASOURCE_POOL_SIZE = "datasource.pool.size";
+  static final String DATABASE_URL = "database.url";
+  static final String DATABASE_USER = "database.username";
+  static final String DATABASE_PASSWORD = "database.password";
+
+  private static volatile DataSourceProvider dataSourceProvider;
+  private static volatile DataSource readDs;
+  private static volatile boolean readDsResolved;
+  private static volatile DataSource ownerDs;
+  private static volatile boolean ownerDsResolved;
+
+  /** Number of task list rows transferred from the database per round trip. */
+  static final int TASKLIST_FETCH_SIZE = 100;
+
   public boolean doesApproverExistsInDB(String orgId) throws Exception {
     logger.debug("Approver organization: " + orgId);
     boolean exists = false;
@@ -84,19 +112,48 @@ public class DataAccessService {
     return tkey;
   }
 
+  /**
+   * Returns the key of the approver for the given organization and creates the approver if it does
+   * not exist yet. Both happens in one statement, so concurrent requests of a new organization do
+   * not fail on the unique organization constraint.
+   */
+  public int registerApprover(String orgId) throws Exception {
+    logger.debug("Approver organization: " + orgId);
+    String query =
+        "with ins as (insert into approver (tkey,orgid) values (DEFAULT,?) on conflict (orgid) do nothing returning tkey) select tkey from ins union all select tkey from approver where orgid = ?";
+    try (Connection con = getDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(query)) {
+      stmt.setString(1, orgId);
+      stmt.setString(2, orgId);
+      // an approver inserted by a concurrent transaction is only visible to a new statement
+      for (int attempt = 0; attempt < 2; attempt++) {
+        @SuppressWarnings("resource")
+        ResultSet rs = stmt.executeQuery();
+
+        if (rs.next()) {
+          return rs.getInt("tkey");
+        }
+      }
+    } catch (SQLException e) {
+      logger.error("Failed to register approver " + orgId, e);
+      throw e;
+    }
+    throw new SQLException("Approver " + orgId + " could not be registered");
+  }
+
   public void createApprovalTask(
       VOTriggerProcess process, VOOrganization org, Task.ApprovalStatus status, String description)
       throws Exception {
 
     logger.debug("description: " + description);
     String query =
-        "insert into task (tkey,triggerkey,triggername,orgid,orgname,requestinguser,description,comment,created,status_tkey,approver_tkey) values (DEFAULT,?,?,?,?,?,?,?,current_timestamp,"
+        "insert into task (tkey,triggerkey,triggername,orgid,orgname,requestinguser,description,comment,created,status_tkey,approver_tkey) values (DEFAULT,?,?,?,?,?,cast(? as jsonb),?,current_timestamp,"
             + status.tkey
             + ",?)";
     try (Connection con = getDatasource().getConnection();
         PreparedStatement stmt = con.prepareStatement(query)) {
 
-      stmt.setString(1, Long.toString(process.getKey()));
+      stmt.setLong(1, process.getKey());
       stmt.setString(2, process.getTriggerDefinition().getName());
       stmt.setString(3, org.getOrganizationId());
       stmt.setString(4, org.getName());
@@ -108,33 +165,6 @@ public class DataAccessService {
     }
   }
 
-  public void deleteApprovedTasks(
-      String orgId,
-      boolean delete_notifications,
-      boolean delete_finished_tasks,
-      boolean delete_granted_clearances)
-      throws Exception {
-    logger.debug(
-        "delete_notifications: "
-            + delete_notifications
-            + " delete_finished_tasks: "
-            + delete_finished_tasks
-            + " delete_granted_clearances: "
-            + delete_granted_clearances);
-    String query =
-        "delete from task where (status_tkey = ? or status_tkey = ? or status_tkey = ? or status_tkey = ?) and approver_tkey = (select tkey from approver where orgid = ?)";
-    try (Connection con = getDatasource().getConnection();
-        PreparedStatement stmt = con.prepareStatement(query)) {
-
-      stmt.setInt(1, delete_notifications ? 6 : 0);
-      stmt.setInt(2, delete_finished_tasks ? 4 : 0);
-      stmt.setInt(3, delete_finished_tasks ? 5 : 0);
-      stmt.setInt(4, delete_granted_clearances ? 8 : 0);
-      stmt.setString(5, orgId);
-      stmt.executeUpdate();
-    }
-  }
-
   public List<Task> getTaskList(
       String orgId,
       boolean show_notifications,
@@ -143,73 +173,381 @@ public class DataAccessService {
       boolean show_granted_clearances,
       boolean show_open_clearances)
       throws Exception {
-    logger.debug("Approver organization: " + orgId);
+    TaskListQuery query = new TaskListQuery();
+    query.orgId = orgId;
+    query.show_notifications = show_notifications;
+    query.show_finished_tasks = show_finished_tasks;
+    query.show_open_tasks = show_open_tasks;
+    query.show_granted_clearances = show_granted_clearances;
+    query.show_open_clearances = show_open_clearances;
+
     List<Task> tasklist = new ArrayList<>();
-    String query =
-        "select t.tkey,t.orgid,t.orgname,t.triggername,t.requestinguser,t.created,s.name as status,s.tkey as status_tkey from task t, status s where approver_tkey = (select tkey from approver where orgid = ?) and (status_tkey = ? or status_tkey = ? or status_tkey = ? or status_tkey = ? or status_tkey = ? or status_tkey = ?)and s.tkey = status_tkey order by t.created desc";
-    try (Connection con = getDatasource().getConnection();
-        PreparedStatement stmt = con.prepareStatement(query)) {
+    streamTaskList(query, tasklist::add);
+    return tasklist;
+  }
 
-      stmt.setString(1, orgId);
-      stmt.setInt(2, show_notifications ? 6 : 0);
-      stmt.setInt(3, show_finished_tasks ? 4 : 0);
-      stmt.setInt(4, show_finished_tasks ? 5 : 0);
-      stmt.setInt(5, show_open_tasks ? 1 : 0);
-      stmt.setInt(6, show_granted_clearances ? 8 : 0);
-      stmt.setInt(7, show_open_clearances ? 7 : 0);
+  /**
+   * Reads the task list of an approver ordered by creation date (newest first) and passes each
+   * task to the given handler as soon as it is read. The rows are fetched in chunks of {@link
+   * #TASKLIST_FETCH_SIZE}, so the list is never held in memory as a whole.
+   *
+   * @param query - the selection criteria and the page to read
+   * @param handler - receives the tasks
+   * @return the cursor for reading the next page or <code>null</code> if there are no more tasks
+   */
+  public TaskCursor streamTaskList(TaskListQuery query, TaskHandler handler) throws Exception {
+    logger.debug("Approver organization: " + query.orgId);
+    List<Integer> statusKeys = query.getStatusKeys();
+    if (statusKeys.isEmpty()) {
+      return null;
+    }
+
+    StringBuilder sql =
+        new StringBuilder(
+            "select t.tkey,t.orgid,t.orgname,t.triggername,t.requestinguser,t.created,s.name as status,s.tkey as status_tkey from task t, status s where ");
+    if (query.approverKey > 0) {
+      sql.append("t.approver_tkey = ?");
+    } else {
+      sql.append("t.approver_tkey = (select tkey from approver where orgid = ?)");
+    }
+    sql.append(" and t.status_tkey in (");
+    for (int i = 0; i < statusKeys.size(); i++) {
+      sql.append(i == 0 ? "?" : ",?");
+    }
+    sql.append(") and s.tkey = t.status_tkey");
+    if (query.createdSince != null) {
+      sql.append(" and t.created >= ?");
+    }
+    if (query.cursor != null) {
+      // the plain upper bound lets the planner skip newer partitions
+      sql.append(" and t.created <= ? and (t.created, t.tkey) < (?, ?)");
+    }
+    sql.append(" order by t.created desc, t.tkey desc");
+    if (query.isPaged()) {
+      // one more row tells whether there is a next page
+      sql.append(" limit ?");
+    }
+
+    TaskCursor next = null;
+    try (Connection con = getReadDatasource().getConnection()) {
+      // the PostgreSQL driver only honors the fetch size within a transaction
+      boolean autoCommit = con.getAutoCommit();
+      con.setAutoCommit(false);
+      try (PreparedStatement stmt = con.prepareStatement(sql.toString())) {
+        int idx = 1;
+        if (query.approverKey > 0) {
+          stmt.setInt(idx++, query.approverKey);
+        } else {
+          stmt.setString(idx++, query.orgId);
+        }
+        for (Integer statusKey : statusKeys) {
+          stmt.setInt(idx++, statusKey.intValue());
+        }
+        if (query.createdSince != null) {
+          stmt.setTimestamp(idx++, query.createdSince);
+        }
+        if (query.cursor != null) {
+          stmt.setTimestamp(idx++, query.cursor.getCreated());
+          stmt.setTimestamp(idx++, query.cursor.getCreated());
+          stmt.setInt(idx++, query.cursor.getTkey());
+        }
+        if (query.isPaged()) {
+          stmt.setInt(idx++, query.pageSize + 1);
+        }
+        stmt.setFetchSize(TASKLIST_FETCH_SIZE);
+
+        @SuppressWarnings("resource")
+        ResultSet rs = stmt.executeQuery();
+
+        int numTasks = 0;
+        TaskCursor last = null;
+        while (rs.next()) {
+          if (query.isPaged() && numTasks == query.pageSize) {
+            next = last;
+            break;
+          }
+          Task task = createTask();
+          task.status = Messages.get(query.locale, "APPROVAL_STATUS_" + rs.getString("status"));
+          task.status_tkey = Integer.toString(rs.getInt("status_tkey"));
+          task.tkey = rs.getString("tkey");
+          task.triggername = rs.getString("triggername");
+          task.orgid = rs.getString("orgid");
+          task.orgname = rs.getString("orgname");
+          task.requestinguser = rs.getString("requestinguser");
+          task.created = rs.getTimestamp("created").toString();
+          if (query.isPaged()) {
+            last = new TaskCursor(rs.getTimestamp("created"), rs.getInt("tkey"));
+          }
+          handler.handle(task);
+          numTasks++;
+        }
+        logger.debug("loaded " + numTasks + " tasks for approver " + query.orgId);
+      } finally {
+        con.rollback();
+        con.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      logger.error("Failed to retrieve tasks for approver " + query.orgId, e);
+      throw e;
+    }
+    return next;
+  }
+
+  /**
+   * Searches the tasks of an approver and passes each task of the requested page to the given
+   * handler. With a search text the tasks are ordered by relevance, otherwise by creation date
+   * (newest first).
+   *
+   * @return <code>true</code> if there are more results after this page
+   */
+  public boolean searchTasks(TaskSearchQuery query, TaskHandler handler) throws Exception {
+    StringBuilder sql =
+        new StringBuilder(
+            "select t.tkey,t.orgid,t.orgname,t.triggername,t.requestinguser,t.created,s.name as status,s.tkey as status_tkey");
+    if (query.hasText()) {
+      sql.append(",ts_rank(t.search, q.query) as rank");
+    }
+    sql.append(" from task t join status s on s.tkey = t.status_tkey");
+    appendSearchCondition(sql, query, true);
+    sql.append(" order by ");
+    if (query.hasText()) {
+      sql.append("rank desc, ");
+    }
+    sql.append("t.created desc, t.tkey desc limit ? offset ?");
+
+    boolean more = false;
+    try (Connection con = getReadDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(sql.toString())) {
+      int idx = bindSearchCondition(stmt, query, true);
+      // one more row tells whether there is a next page
+      stmt.setInt(idx++, query.pageSize + 1);
+      stmt.setInt(idx++, query.getOffset());
 
       @SuppressWarnings("resource")
       ResultSet rs = stmt.executeQuery();
 
       int numTasks = 0;
       while (rs.next()) {
+        if (numTasks == query.pageSize) {
+          more = true;
+          break;
+        }
         Task task = createTask();
-        task.status = Messages.get("APPROVAL_STATUS_" + rs.getString("status"));
+        task.status = Messages.get(query.locale, "APPROVAL_STATUS_" + rs.getString("status"));
         task.status_tkey = Integer.toString(rs.getInt("status_tkey"));
         task.tkey = rs.getString("tkey");
         task.triggername = rs.getString("triggername");
         task.orgid = rs.getString("orgid");
         task.orgname = rs.getString("orgname");
         task.requestinguser = rs.getString("requestinguser");
-        tasklist.add(task);
+        task.created = rs.getTimestamp("created").toString();
+        handler.handle(task);
         numTasks++;
       }
-      logger.debug("loaded " + numTasks + " tasks for approver " + orgId);
     } catch (SQLException e) {
-      logger.error("Failed to retrieve tasks for approver " + orgId, e);
+      logger.error("Failed to search tasks of approver " + query.approverKey, e);
       throw e;
     }
-    return tasklist;
+    return more;
+  }
+
+  /** Counts the tasks matching the search text and creation period per status and trigger. */
+  public TaskFacets getSearchFacets(TaskSearchQuery query) throws Exception {
+    StringBuilder sql =
+        new StringBuilder(
+            "select t.status_tkey, t.triggername, grouping(t.status_tkey) as trigger_facet, count(*) as n from task t");
+    appendSearchCondition(sql, query, false);
+    sql.append(" group by grouping sets ((t.status_tkey), (t.triggername))");
+    sql.append(" order by trigger_facet, n desc");
+
+    TaskFacets facets = new TaskFacets();
+    try (Connection con = getReadDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(sql.toString())) {
+      bindSearchCondition(stmt, query, false);
+
+      @SuppressWarnings("resource")
+      ResultSet rs = stmt.executeQuery();
+
+      while (rs.next()) {
+        Long n = Long.valueOf(rs.getLong("n"));
+        if (rs.getInt("trigger_facet") == 1) {
+          facets.triggername.put(rs.getString("triggername"), n);
+        } else {
+          facets.status.put(Integer.valueOf(rs.getInt("status_tkey")), n);
+        }
+      }
+    } catch (SQLException e) {
+      logger.error("Failed to count search results of approver " + query.approverKey, e);
+      throw e;
+    }
+    return facets;
+  }
+
+  private void appendSearchCondition(StringBuilder sql, TaskSearchQuery query, boolean filters) {
+    if (query.hasText()) {
+      sql.append(", websearch_to_tsquery('simple', ?) q(query)");
+    }
+    sql.append(" where t.approver_tkey = ?");
+    if (query.hasText()) {
+      sql.append(" and t.search @@ q.query");
+    }
+    if (query.createdFrom != null) {
+      sql.append(" and t.created >= ?");
+    }
+    if (query.createdTo != null) {
+      sql.append(" and t.created < ?");
+    }
+    if (filters && !query.statusKeys.isEmpty()) {
+      sql.append(" and t.status_tkey in (");
+      for (int i = 0; i < query.statusKeys.size(); i++) {
+        sql.append(i == 0 ? "?" : ",?");
+      }
+      sql.append(")");
+    }
+    if (filters && query.triggerName != null) {
+      sql.append(" and t.triggername = ?");
+    }
+  }
+
+  /** @return the index of the next parameter */
+  private int bindSearchCondition(PreparedStatement stmt, TaskSearchQuery query, boolean filters)
+      throws SQLException {
+    int idx = 1;
+    if (query.hasText()) {
+      stmt.setString(idx++, query.text.trim());
+    }
+    stmt.setInt(idx++, query.approverKey);
+    if (query.createdFrom != null) {
+      stmt.setTimestamp(idx++, query.createdFrom);
+    }
+    if (query.createdTo != null) {
+      stmt.setTimestamp(idx++, query.createdTo);
+    }
+    if (filters) {
+      for (Integer statusKey : query.statusKeys) {
+        stmt.setInt(idx++, statusKey.intValue());
+      }
+      if (query.triggerName != null) {
+        stmt.setString(idx++, query.triggerName);
+      }
+    }
+    return idx;
+  }
+
+  /**
+   * Returns the number of tasks of an approver for each status, read from the aggregate maintained
+   * by the database.
+   *
+   * @return the counts mapped by status tkey, missing status values have no tasks
+   */
+  public Map<Integer, Long> getTaskCounts(int approverKey) throws Exception {
+    Map<Integer, Long> counts = new HashMap<>();
+    String query = "select status_tkey, n from task_counts where approver_tkey = ?";
+    try (Connection con = getReadDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(query)) {
+      stmt.setInt(1, approverKey);
+
+      @SuppressWarnings("resource")
+      ResultSet rs = stmt.executeQuery();
+
+      while (rs.next()) {
+        counts.put(Integer.valueOf(rs.getInt("status_tkey")), Long.valueOf(rs.getLong("n")));
+      }
+    } catch (SQLException e) {
+      logger.error("Failed to retrieve task counts of approver " + approverKey, e);
+      throw e;
+    }
+    return counts;
   }
 
   public Task getTask(String tkey) throws Exception {
-    logger.debug("tkey: " + tkey);
+    return getTask(tkey, TaskProjection.PAYLOAD);
+  }
+
+  public Task getTask(String tkey, TaskProjection projection) throws Exception {
+    return getTask(tkey, projection, false);
+  }
+
+  /**
+   * Reads the columns of the given projection of a task. The row version changes with every update
+   * of the task.
+   *
+   * @param fromPrimary - <code>true</code> to read from the primary database, needed if the task
+   *     was just changed and the replica may not have received the change yet
+   */
+  public Task getTask(String tkey, TaskProjection projection, boolean fromPrimary)
+      throws Exception {
+    return getTask(tkey, null, projection, fromPrimary);
+  }
+
+  /**
+   * Reads the columns of the given projection of a task. The creation date of the task lets the
+   * database read only the partition holding the task.
+   *
+   * @param created - the creation date of the task as returned by the task list, <code>null
+   *     </code> or empty if unknown
+   * @param fromPrimary - <code>true</code> to read from the primary database, needed if the task
+   *     was just changed and the replica may not have received the change yet
+   */
+  public Task getTask(String tkey, String created, TaskProjection projection, boolean fromPrimary)
+      throws Exception {
+    logger.debug(
+        "tkey: "
+            + tkey
+            + " created: "
+            + created
+            + " projection: "
+            + projection
+            + " primary: "
+            + fromPrimary);
     Task task = createTask();
+    Timestamp createdTime = toTimestamp(created);
     String query =
-        "select t.tkey,t.orgid,t.triggerkey,t.triggername,t.orgname,t.requestinguser,t.description,t.comment,t.created,s.name as status from task t, status s where t.tkey = ? and s.tkey = status_tkey";
-    try (Connection con = getDatasource().getConnection();
+        "select "
+            + projection.columns
+            + (projection.header
+                ? " from task t, status s where t.tkey = ? and s.tkey = t.status_tkey"
+                : " from task t where t.tkey = ?")
+            + (createdTime == null ? "" : " and t.created = ?");
+    DataSource source = fromPrimary ? getDatasource() : getReadDatasource();
+    try (Connection con = source.getConnection();
         PreparedStatement stmt = con.prepareStatement(query)) {
 
       stmt.setInt(1, Integer.parseInt(tkey));
+      if (createdTime != null) {
+        stmt.setTimestamp(2, createdTime);
+      }
 
       @SuppressWarnings("resource")
       ResultSet rs = stmt.executeQuery();
 
       while (rs.next()) {
-        task.orgid = rs.getString("orgid");
-        task.triggerkey = Long.parseLong(rs.getString("triggerkey"));
-        task.triggername = rs.getString("triggername");
-        task.orgname = rs.getString("orgname");
-        task.requestinguser = rs.getString("requestinguser");
-        task.description = rs.getString("description");
-        task.comment = rs.getString("comment");
-        task.status = rs.getString("status");
         task.tkey = rs.getString("tkey");
-
-        Map<String, String> data = task.getTriggerProcessData();
-        Messages.setLocale(data.get("user.locale"));
-        Date date = rs.getTimestamp("created");
-        task.created = date.toString();
+        task.row_version = rs.getString("row_version");
+        if (projection.header) {
+          task.orgid = rs.getString("orgid");
+          task.triggerkey = Long.parseLong(rs.getString("triggerkey"));
+          task.triggername = rs.getString("triggername");
+          task.orgname = rs.getString("orgname");
+          task.requestinguser = rs.getString("requestinguser");
+          task.status = rs.getString("status");
+          task.status_tkey = rs.getString("status_tkey");
+          task.version = rs.getInt("version");
+          Date date = rs.getTimestamp("created");
+          task.created = date.toString();
+        }
+        if (projection.payload) {
+          task.description = rs.getString("description");
+          task.comment = rs.getString("comment");
+          task.user_email = rs.getString("user_email");
+          task.service_id = rs.getString("service_id");
+          task.subscription_id = rs.getString("subscription_id");
+          task.price_type = rs.getString("price_type");
+          task.trigger_id = rs.getString("trigger_id");
+        }
+        if (projection.payload || projection == TaskProjection.LOCALE) {
+          task.user_locale = rs.getString("user_locale");
+        }
       }
     } catch (SQLException e) {
       logger.error("Failed to retrieve task with tkey " + tkey, e);
@@ -222,47 +560,283 @@ public class DataAccessService {
     return new Task();
   }
 
+  /**
+   * Parses the creation date of a task as written by {@link Timestamp#toString()}.
+   *
+   * @return <code>null</code> if the creation date is not given
+   */
+  static Timestamp toTimestamp(String created) {
+    if (created == null || created.isEmpty()) {
+      return null;
+    }
+    return Timestamp.valueOf(created);
+  }
+
   public void saveTask(Task task) throws Exception {
     logger.debug("tkey: " + task.tkey);
-    String query = "update task set comment = ? where tkey = ?";
+    Timestamp created = toTimestamp(task.created);
+    String query =
+        "update task set comment = ? where tkey = ?" + (created == null ? "" : " and created = ?");
     try (Connection con = getDatasource().getConnection();
         PreparedStatement stmt = con.prepareStatement(query); ) {
       stmt.setString(1, task.comment);
       stmt.setInt(2, Integer.parseInt(task.tkey));
+      if (created != null) {
+        stmt.setTimestamp(3, created);
+      }
       stmt.executeUpdate();
     }
   }
 
-  public void updateTaskStatus(String tkey, String comment, Task.ApprovalStatus status)
+  /**
+   * Changes the status of a task, see {@link #compareAndSetTaskStatus(Task, String,
+   * Task.ApprovalStatus)}.
+   *
+   * @return <code>false</code> if the task does not exist, its status does not allow the
+   *     transition or it was changed concurrently
+   */
+  public boolean updateTaskStatus(String tkey, String comment, Task.ApprovalStatus status)
       throws Exception {
-    logger.debug("tkey: " + tkey + " status: " + status);
-    String query = "update task set status_tkey = ?, comment = ? where tkey = ?";
+    return updateTaskStatus(tkey, null, comment, status);
+  }
+
+  /**
+   * Changes the status of a task with the given creation date, see {@link
+   * #compareAndSetTaskStatus(Task, String, Task.ApprovalStatus)}.
+   *
+   * @param created - the creation date of the task, <code>null</code> or empty if unknown
+   * @return <code>false</code> if the task does not exist, its status does not allow the
+   *     transition or it was changed concurrently
+   */
+  public boolean updateTaskStatus(
+      String tkey, String created, String comment, Task.ApprovalStatus status) throws Exception {
+    Task current = getTask(tkey, created, TaskProjection.HEADER, true);
+    if (current.tkey == null) {
+      logger.warn("Task " + tkey + " not found");
+      return false;
+    }
+    return compareAndSetTaskStatus(current, comment, status);
+  }
+
+  /**
+   * Changes the status of a task as read before, provided that the transition is allowed and the
+   * task was not changed since. Of concurrent transitions of the same task exactly one succeeds,
+   * without locking the task in advance.
+   *
+   * @param expected - the task with the status and version as read before
+   * @return <code>false</code> if the status does not allow the transition or the task was changed
+   *     concurrently
+   */
+  public boolean compareAndSetTaskStatus(
+      Task expected, String comment, Task.ApprovalStatus status) throws Exception {
+    Task.ApprovalStatus from = Task.ApprovalStatus.fromKey(Integer.parseInt(expected.status_tkey));
+    logger.debug("tkey: " + expected.tkey + " status: " + from + " -> " + status);
+    if (from == null || !from.canTransitionTo(status)) {
+      logger.warn("Task " + expected.tkey + " cannot change from " + from + " to " + status);
+      return false;
+    }
+    Timestamp created = toTimestamp(expected.created);
+    String query =
+        "update task set status_tkey = ?, comment = ?, version = version + 1 where tkey = ? and status_tkey = ? and version = ?"
+            + (created == null ? "" : " and created = ?");
     try (Connection con = getDatasource().getConnection();
         PreparedStatement stmt = con.prepareStatement(query)) {
       stmt.setInt(1, status.tkey);
       stmt.setString(2, comment);
-      stmt.setInt(3, Integer.parseInt(tkey));
-      stmt.executeUpdate();
+      stmt.setInt(3, Integer.parseInt(expected.tkey));
+      stmt.setInt(4, from.tkey);
+      stmt.setInt(5, expected.version);
+      if (created != null) {
+        stmt.setTimestamp(6, created);
+      }
+      boolean updated = stmt.executeUpdate() == 1;
+      if (!updated) {
+        logger.info("Task " + expected.tkey + " was changed concurrently");
+      }
+      return updated;
     }
   }
 
+  /**
+   * Sets the status of several open tasks of an approver with one batch. Tasks which are not
+   * waiting for approval or belong to another approver are not changed. If all tasks carry their
+   * creation date, each update reads only the partition holding the task.
+   *
+   * @return the update count for each task, in the order of the given tasks
+   */
+  public int[] batchUpdateTaskStatus(List<Task> tasks, int approverKey, Task.ApprovalStatus status)
+      throws Exception {
+    logger.debug("tasks: " + tasks.size() + " status: " + status);
+    if (!Task.ApprovalStatus.WAITING_FOR_APPROVAL.canTransitionTo(status)) {
+      throw new IllegalArgumentException("Tasks cannot be changed to " + status);
+    }
+    boolean created = tasks.stream().allMatch(t -> toTimestamp(t.created) != null);
+    String query =
+        "update task set status_tkey = ?, comment = ?, version = version + 1 where tkey = ? and approver_tkey = ? and status_tkey = ?"
+            + (created ? " and created = ?" : "");
+    try (Connection con = getDatasource().getConnection()) {
+      boolean autoCommit = con.getAutoCommit();
+      con.setAutoCommit(false);
+      try (PreparedStatement stmt = con.prepareStatement(query)) {
+        for (Task task : tasks) {
+          stmt.setInt(1, status.tkey);
+          stmt.setString(2, task.comment);
+          stmt.setInt(3, Integer.parseInt(task.tkey));
+          stmt.setInt(4, approverKey);
+          stmt.setInt(5, Task.ApprovalStatus.WAITING_FOR_APPROVAL.tkey);
+          if (created) {
+            stmt.setTimestamp(6, toTimestamp(task.created));
+          }
+          stmt.addBatch();
+        }
+        int[] counts = stmt.executeBatch();
+        con.commit();
+        return counts;
+      } catch (SQLException e) {
+        con.rollback();
+        logger.error("Failed to update status of " + tasks.size() + " tasks", e);
+        throw e;
+      } finally {
+        con.setAutoCommit(autoCommit);
+      }
+    }
+  }
+
+  /**
+   * Reads the organization and trigger key of the given tasks with one query. If all tasks carry
+   * their creation date, only the partitions holding the tasks are read.
+   *
+   * @return the tasks mapped by their tkey
+   */
+  public Map<String, Task> getTriggerTasks(List<Task> keys) throws Exception {
+    Map<String, Task> tasks = new HashMap<>();
+    if (keys.isEmpty()) {
+      return tasks;
+    }
+    boolean created = keys.stream().allMatch(t -> toTimestamp(t.created) != null);
+    StringBuilder query =
+        new StringBuilder("select t.tkey,t.orgid,t.triggerkey from task t where t.tkey in (");
+    for (int i = 0; i < keys.size(); i++) {
+      query.append(i == 0 ? "?" : ",?");
+    }
+    query.append(")");
+    if (created) {
+      query.append(" and t.created in (");
+      for (int i = 0; i < keys.size(); i++) {
+        query.append(i == 0 ? "?" : ",?");
+      }
+      query.append(")");
+    }
+    try (Connection con = getDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(query.toString())) {
+      for (int i = 0; i < keys.size(); i++) {
+        stmt.setInt(i + 1, Integer.parseInt(keys.get(i).tkey));
+        if (created) {
+          stmt.setTimestamp(keys.size() + i + 1, toTimestamp(keys.get(i).created));
+        }
+      }
+
+      @SuppressWarnings("resource")
+      ResultSet rs = stmt.executeQuery();
+
+      while (rs.next()) {
+        Task task = createTask();
+        task.tkey = rs.getString("tkey");
+        task.orgid = rs.getString("orgid");
+        task.triggerkey = rs.getLong("triggerkey");
+        tasks.put(task.tkey, task);
+      }
+    } catch (SQLException e) {
+      logger.error("Failed to retrieve " + keys.size() + " tasks", e);
+      throw e;
+    }
+    return tasks;
+  }
+
   protected DataSource getDatasource() throws Exception {
     if (ds == null) {
+      ds = lookupDatasource(DATASOURCE);
+    }
+    return ds;
+  }
+
+  /**
+   * Returns the datasource for queries which may read slightly outdated data, the read-only
+   * replica if one is defined, otherwise the primary datasource.
+   */
+  protected DataSource getReadDatasource() throws Exception {
+    if (!readDsResolved) {
       try {
-        Properties p = new Properties();
-        p.put(
-            Context.INITIAL_CONTEXT_FACTORY,
-            "org.apache.openejb.core.OpenEJBInitialContextFactory");
-        Context namingContext = getNamingContext(p);
-        ds = (DataSource) namingContext.lookup(DATASOURCE);
+        readDs = lookupDatasource(READ_DATASOURCE);
+        logger.info("Reading tasks from datasource " + READ_DATASOURCE);
       } catch (Exception e) {
-        throw new Exception("Datasource " + DATASOURCE + " not found.");
+        logger.info("Datasource " + READ_DATASOURCE + " not defined, reading from " + DATASOURCE);
       }
+      readDsResolved = true;
     }
-    return ds;
+    return readDs != null ? readDs : getDatasource();
+  }
+
+  /**
+   * Returns the datasource for changes of the schema, the one of the owner role if it is defined,
+   * otherwise the primary datasource.
+   */
+  protected DataSource getSchemaDatasource() throws Exception {
+    if (!ownerDsResolved) {
+      try {
+        ownerDs = lookupDatasource(OWNER_DATASOURCE);
+        logger.info("Changing the schema with datasource " + OWNER_DATASOURCE);
+      } catch (Exception e) {
+        logger.info(
+            "Datasource " + OWNER_DATASOURCE + " not defined, changing the schema with "
+                + DATASOURCE);
+      }
+      ownerDsResolved = true;
+    }
+    return ownerDs != null ? ownerDs : getDatasource();
   }
 
-  protected Context getNamingContext(Properties ctxProperties) throws Exception {
-    return new InitialContext(ctxProperties);
+  private DataSource lookupDatasource(String name) throws Exception {
+    return getDataSourceProvider().getDataSource(name);
+  }
+
+  /**
+   * Returns the provider of the datasources. Unless one was set, the datasources are looked up by
+   * JNDI, so the pools of the application server are used. With the setting <code>
+   * datasource.provider=jdbc</code> the database is reached directly with the connection settings
+   * of the process activities, through a pool of <code>datasource.pool.size</code> connections.
+   */
+  static DataSourceProvider getDataSourceProvider() {
+    DataSourceProvider provider = dataSourceProvider;
+    if (provider == null) {
+      provider = createDataSourceProvider(ApprovalConfig.getInstance());
+      dataSourceProvider = provider;
+    }
+    return provider;
+  }
+
+  static DataSourceProvider createDataSourceProvider(ApprovalConfig config) {
+    if ("jdbc".equalsIgnoreCase(config.getString(DATASOURCE_PROVIDER, "jndi"))) {
+      String url = config.getString(DATABASE_URL, null);
+      logger.info("Connecting to approval database " + url);
+      return new JdbcDataSourceProvider(
+          url,
+          config.getString(DATABASE_USER, null),
+          config.getString(DATABASE_PASSWORD, null),
+          config.getInt(DATASOURCE_POOL_SIZE, 20));
+    }
+    return new JndiDataSourceProvider();
+  }
+
+  /**
+   * Replaces the provider of the datasources for all instances, e.g. with a {@link
+   * JdbcDataSourceProvider} for an integration test or benchmark.
+   */
+  public static void setDataSourceProvider(DataSourceProvider provider) {
+    dataSourceProvider = provider;
+    readDs = null;
+    readDsResolved = false;
+    ownerDs = null;
+    ownerDsResolved = false;
   }
 }
@@ -0,0 +1,25 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import javax.sql.DataSource;
+
+/**
+ * Provides the datasources of the approval database to the {@link DataAccessService}. The
+ * provider is selected once for the whole tool, see {@link
+ * DataAccessService#setDataSourceProvider(DataSourceProvider)}.
+ */
+public interface DataSourceProvider {
+
+  /**
+   * Returns the datasource with the given name.
+   *
+   * @throws Exception if the datasource is not defined
+   */
+  DataSource getDataSource(String name) throws Exception;
+}
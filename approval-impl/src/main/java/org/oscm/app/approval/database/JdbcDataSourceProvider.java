@@ -0,0 +1,61 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.net.URI;
+
+import javax.sql.DataSource;
+
+import org.postgresql.ds.PGPoolingDataSource;
+
+/**
+ * Connects to a PostgreSQL database given by its JDBC URL, without an application server. Used
+ * for a single node installation and for benchmarks against a local database. All datasource
+ * names, including the read-only replica and the schema owner, resolve to the same pool of the
+ * PostgreSQL driver, which opens at most the given number of connections and lets further callers
+ * wait for a free one.
+ */
+public class JdbcDataSourceProvider implements DataSourceProvider {
+
+  private static final String PREFIX = "jdbc:postgresql:";
+  private static final int DEFAULT_PORT = 5432;
+
+  private final PGPoolingDataSource dataSource;
+
+  /**
+   * @param url - JDBC URL of the form <code>jdbc:postgresql://host[:port]/database</code>
+   * @param poolSize - maximum number of open connections
+   */
+  public JdbcDataSourceProvider(String url, String user, String password, int poolSize) {
+    if (url == null || !url.startsWith(PREFIX + "//")) {
+      throw new IllegalArgumentException("Not a PostgreSQL JDBC URL: " + url);
+    }
+    URI uri = URI.create(url.substring("jdbc:".length()));
+    String path = uri.getPath();
+    if (uri.getHost() == null || path == null || path.length() < 2) {
+      throw new IllegalArgumentException("Not a PostgreSQL JDBC URL: " + url);
+    }
+    dataSource = new PGPoolingDataSource();
+    dataSource.setServerName(uri.getHost());
+    dataSource.setPortNumber(uri.getPort() > 0 ? uri.getPort() : DEFAULT_PORT);
+    dataSource.setDatabaseName(path.substring(1));
+    dataSource.setUser(user);
+    dataSource.setPassword(password);
+    dataSource.setMaxConnections(Math.max(1, poolSize));
+  }
+
+  @Override
+  public DataSource getDataSource(String name) {
+    return dataSource;
+  }
+
+  /** Closes the pooled connections. */
+  public void close() {
+    dataSource.close();
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.util.Properties;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.sql.DataSource;
+
+/** Looks up the datasources defined by the application server, e.g. in the tomee.xml. */
+public class JndiDataSourceProvider implements DataSourceProvider {
+
+  @Override
+  public DataSource getDataSource(String name) throws Exception {
+    try {
+      Properties p = new Properties();
+      p.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.core.OpenEJBInitialContextFactory");
+      Context namingContext = getNamingContext(p);
+      return (DataSource) namingContext.lookup(name);
+    } catch (Exception e) {
+      throw new Exception("Datasource " + name + " not found.");
+    }
+  }
+
+  protected Context getNamingContext(Properties ctxProperties) throws Exception {
+    return new InitialContext(ctxProperties);
+  }
+}
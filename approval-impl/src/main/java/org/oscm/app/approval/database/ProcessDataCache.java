@@ -0,0 +1,184 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.oscm.app.approval.json.TriggerProcessData;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Least recently used cache of the parsed task descriptions. The description of a task never
+ * changes after the insert, so the trigger process data is bound and its properties are resolved
+ * only once per task as long as it stays in the cache. The cache is bounded by the number of tasks
+ * and the estimated heap use.
+ */
+public class ProcessDataCache implements ProcessDataCacheMXBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(ProcessDataCache.class);
+
+  static final String OBJECT_NAME = "org.oscm.app.approval:type=ProcessDataCache";
+
+  static final String SIZE = "processdata.cache.size";
+  static final String MAX_KILOBYTES = "processdata.cache.max.kilobytes";
+
+  /**
+   * Estimated heap bytes per description character: the text, the bound data and the properties.
+   */
+  static final int BYTES_PER_CHAR = 6;
+
+  private static final ProcessDataCache INSTANCE =
+      new ProcessDataCache(
+          ApprovalConfig.getInstance().getInt(SIZE, 1000),
+          ApprovalConfig.getInstance().getLong(MAX_KILOBYTES, 16384) * 1024);
+
+  /** The parsed description of a task. The data must not be modified. */
+  public static class Entry {
+    public final TriggerProcessData data;
+
+    /** The task properties resolved from the data so far. */
+    public final Map<String, String> properties = new ConcurrentHashMap<>();
+
+    final String description;
+    final long bytes;
+
+    public Entry(String description, TriggerProcessData data) {
+      this.description = description;
+      this.data = data;
+      this.bytes = description == null ? 0 : (long) description.length() * BYTES_PER_CHAR;
+    }
+  }
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final int maxSize;
+  private final long maxBytes;
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public ProcessDataCache(int maxSize, long maxBytes) {
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+  }
+
+  public static ProcessDataCache getInstance() {
+    return INSTANCE;
+  }
+
+  public void start() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (Exception e) {
+      logger.warn("Failed to register the process data cache statistics", e);
+    }
+  }
+
+  public void stop() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      logger.warn("Failed to unregister the process data cache statistics", e);
+    }
+    clear();
+  }
+
+  /**
+   * Returns the cached entry of the task, <code>null</code> if there is none or it was made from
+   * another description, e.g. for a task key that was used again.
+   */
+  public synchronized Entry get(String tkey, String description) {
+    Entry entry = entries.get(tkey);
+    if (entry == null || !entry.description.equals(description)) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry;
+  }
+
+  public synchronized void put(String tkey, Entry entry) {
+    if (maxSize <= 0 || entry.bytes > maxBytes) {
+      return;
+    }
+    remove(tkey);
+    entries.put(tkey, entry);
+    bytes += entry.bytes;
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (entries.size() > maxSize || bytes > maxBytes) {
+      bytes -= eldest.next().bytes;
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  /** Removes the entry of a deleted task. */
+  public synchronized void invalidate(String tkey) {
+    remove(tkey);
+  }
+
+  @Override
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  private void remove(String tkey) {
+    Entry old = entries.remove(tkey);
+    if (old != null) {
+      bytes -= old.bytes;
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  @Override
+  public int getSize() {
+    return size();
+  }
+
+  @Override
+  public synchronized long getEstimatedBytes() {
+    return bytes;
+  }
+
+  @Override
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  @Override
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  @Override
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+/**
+ * Statistics of the cache of parsed task descriptions, registered as
+ * org.oscm.app.approval:type=ProcessDataCache.
+ */
+public interface ProcessDataCacheMXBean {
+
+  long getHitCount();
+
+  long getMissCount();
+
+  /** Number of entries dropped to stay within the size and heap bounds. */
+  long getEvictionCount();
+
+  /** Number of cached task descriptions. */
+  int getSize();
+
+  /** Estimated heap use of the cached entries in bytes. */
+  long getEstimatedBytes();
+
+  /** Drops all cached descriptions. */
+  void clear();
+}
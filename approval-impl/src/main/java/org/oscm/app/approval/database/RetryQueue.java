@@ -0,0 +1,340 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent retry queue in the trigger_intake table, which holds the entries of all queues and
+ * tells them apart by the queue column. A pool of workers claims the due entries of its queue with
+ * <code>skip locked</code>, so that several nodes can share the work, and passes them to the
+ * handler. Processed entries are deleted. Failed entries are retried with exponential backoff and
+ * jitter and marked as failed after the last attempt. Processing is at least once, an entry may be
+ * processed again if a node stops while processing it.
+ *
+ * <p>The settings are read with the prefix of the queue, e.g. <code>intake.workers</code>.
+ */
+class RetryQueue {
+
+  private static final Logger logger = LoggerFactory.getLogger(RetryQueue.class);
+
+  static final String WORKERS = ".workers";
+  static final String POLL_MILLIS = ".poll.millis";
+  static final String LEASE_MILLIS = ".lease.millis";
+  static final String MAX_ATTEMPTS = ".max.attempts";
+  static final String RETRY_MILLIS = ".retry.millis";
+  static final String RETRY_MAX_MILLIS = ".retry.max.millis";
+
+  // entries with a unique name within their queue are stored only once
+  static final String INSERT =
+      "insert into trigger_intake (queue,trigger,payload,next_attempt) values (?,?,?,current_timestamp + ? * interval '1 millisecond')"
+          + " on conflict do nothing";
+  static final String CLAIM =
+      "update trigger_intake set attempts = attempts + 1, next_attempt = current_timestamp + ? * interval '1 millisecond'"
+          + " where tkey = (select tkey from trigger_intake where queue = ? and status = 'QUEUED' and next_attempt <= current_timestamp"
+          + " order by next_attempt limit 1 for update skip locked) returning tkey,trigger,payload,attempts";
+  static final String COMPLETE =
+      "delete from trigger_intake where tkey = ?"
+          + " returning (extract(epoch from clock_timestamp() - received) * 1000)::bigint as latency";
+  static final String RETRY =
+      "update trigger_intake set next_attempt = current_timestamp + ? * interval '1 millisecond', last_error = ? where tkey = ?";
+  static final String FAIL =
+      "update trigger_intake set status = 'FAILED', last_error = ? where tkey = ?";
+  static final String COUNT = "select count(*) from trigger_intake where queue = ? and status = ?";
+
+  private final String queue;
+  private final String prefix;
+  private final DataAccessService das;
+  private final ApprovalConfig config;
+  private final Handler handler;
+  private final Object signal = new Object();
+  private ExecutorService workers;
+  private volatile boolean running;
+
+  private final AtomicLong processed = new AtomicLong();
+  private final AtomicLong retried = new AtomicLong();
+  private final AtomicLong lastLatency = new AtomicLong();
+  private final AtomicLong totalLatency = new AtomicLong();
+  private final AtomicLong maxLatency = new AtomicLong();
+
+  /**
+   * @param queue - name of the queue in the queue column
+   * @param prefix - prefix of the settings
+   * @param handler - processes the claimed entries
+   */
+  RetryQueue(
+      String queue, String prefix, DataAccessService das, ApprovalConfig config, Handler handler) {
+    this.queue = queue;
+    this.prefix = prefix;
+    this.das = das;
+    this.config = config;
+    this.handler = handler;
+  }
+
+  /**
+   * Starts the workers.
+   *
+   * @param threadName - name of the worker threads, followed by their number
+   * @return <code>false</code> if they are already running
+   */
+  synchronized boolean start(String threadName) {
+    if (running) {
+      return false;
+    }
+    running = true;
+    int count = Math.max(1, config.getInt(prefix + WORKERS, 4));
+    AtomicInteger number = new AtomicInteger();
+    workers =
+        Executors.newFixedThreadPool(
+            count,
+            r -> {
+              Thread t = new Thread(r, threadName + number.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            });
+    for (int i = 0; i < count; i++) {
+      workers.submit(this::work);
+    }
+    return true;
+  }
+
+  /**
+   * Stops the workers. The stored entries are processed after the next start.
+   *
+   * @return <code>false</code> if they were not running
+   */
+  synchronized boolean stop() {
+    if (!running) {
+      return false;
+    }
+    running = false;
+    synchronized (signal) {
+      signal.notifyAll();
+    }
+    workers.shutdownNow();
+    workers = null;
+    return true;
+  }
+
+  /**
+   * Stores an entry which is due after the given delay and wakes up a worker of this node.
+   *
+   * @return <code>false</code> if an entry with the same unique name is already stored
+   */
+  boolean enqueue(String name, byte[] payload, long delayMillis) throws Exception {
+    int count;
+    try (Connection con = das.getDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(INSERT)) {
+      stmt.setString(1, queue);
+      stmt.setString(2, name);
+      stmt.setBytes(3, payload);
+      stmt.setLong(4, delayMillis);
+      count = stmt.executeUpdate();
+    }
+    synchronized (signal) {
+      signal.notify();
+    }
+    return count > 0;
+  }
+
+  private void work() {
+    long poll = Math.max(10, config.getLong(prefix + POLL_MILLIS, 1000));
+    while (running) {
+      try {
+        if (!processNext()) {
+          synchronized (signal) {
+            if (running) {
+              signal.wait(poll);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        logger.error("Failed to read the " + queue + " queue", e);
+        try {
+          Thread.sleep(poll);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Claims and processes the next due entry.
+   *
+   * @return <code>false</code> if there was none
+   */
+  boolean processNext() throws Exception {
+    Entry entry = claim();
+    if (entry == null) {
+      return false;
+    }
+    try {
+      handler.process(entry);
+    } catch (Exception e) {
+      fail(entry, e);
+      return true;
+    }
+    complete(entry);
+    return true;
+  }
+
+  /** Reserves the next due entry for the lease period, so that no other worker takes it. */
+  Entry claim() throws Exception {
+    try (Connection con = das.getDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(CLAIM)) {
+      stmt.setLong(1, config.getLong(prefix + LEASE_MILLIS, 600000));
+      stmt.setString(2, queue);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (!rs.next()) {
+          return null;
+        }
+        return new Entry(
+            rs.getLong("tkey"),
+            rs.getString("trigger"),
+            rs.getBytes("payload"),
+            rs.getInt("attempts"));
+      }
+    }
+  }
+
+  private void complete(Entry entry) throws Exception {
+    try (Connection con = das.getDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(COMPLETE)) {
+      stmt.setLong(1, entry.tkey);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (rs.next()) {
+          recordLatency(rs.getLong("latency"));
+        }
+      }
+    }
+    processed.incrementAndGet();
+  }
+
+  private void fail(Entry entry, Exception cause) throws Exception {
+    String error = String.valueOf(cause);
+    if (entry.attempts >= Math.max(1, config.getInt(prefix + MAX_ATTEMPTS, 8))) {
+      logger.error(
+          "Entry " + entry.name + " (" + entry.tkey + ") of the " + queue + " queue failed after "
+              + entry.attempts + " attempts",
+          cause);
+      try (Connection con = das.getDatasource().getConnection();
+          PreparedStatement stmt = con.prepareStatement(FAIL)) {
+        stmt.setString(1, error);
+        stmt.setLong(2, entry.tkey);
+        stmt.executeUpdate();
+      }
+      return;
+    }
+    long delay = getRetryDelay(entry.attempts);
+    logger.warn(
+        "Entry " + entry.name + " (" + entry.tkey + ") of the " + queue
+            + " queue failed, retrying in " + delay + " ms",
+        cause);
+    try (Connection con = das.getDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(RETRY)) {
+      stmt.setLong(1, delay);
+      stmt.setString(2, error);
+      stmt.setLong(3, entry.tkey);
+      stmt.executeUpdate();
+    }
+    retried.incrementAndGet();
+  }
+
+  /**
+   * Returns the delay before the next attempt. The base delay is doubled with each attempt up to
+   * the maximum, and a random part of up to half of it is taken off, so that the entries which
+   * failed during an outage of BES are not all retried at the same time.
+   */
+  long getRetryDelay(int attempts) {
+    long max = config.getLong(prefix + RETRY_MAX_MILLIS, 900000);
+    long delay = Math.max(2, config.getLong(prefix + RETRY_MILLIS, 5000));
+    for (int i = 1; i < attempts && delay < max; i++) {
+      delay *= 2;
+    }
+    delay = Math.min(delay, max);
+    return delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  void recordLatency(long millis) {
+    lastLatency.set(millis);
+    totalLatency.addAndGet(millis);
+    maxLatency.accumulateAndGet(millis, Math::max);
+  }
+
+  /** Returns the number of stored entries with the given status, -1 if it cannot be read. */
+  long count(String status) {
+    try (Connection con = das.getReadDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(COUNT)) {
+      stmt.setString(1, queue);
+      stmt.setString(2, status);
+      try (ResultSet rs = stmt.executeQuery()) {
+        return rs.next() ? rs.getLong(1) : 0;
+      }
+    } catch (Exception e) {
+      logger.error("Failed to count the " + status + " entries of the " + queue + " queue", e);
+      return -1;
+    }
+  }
+
+  long getProcessed() {
+    return processed.get();
+  }
+
+  long getRetried() {
+    return retried.get();
+  }
+
+  long getLastLatencyMillis() {
+    return lastLatency.get();
+  }
+
+  long getAverageLatencyMillis() {
+    long count = processed.get();
+    return count == 0 ? 0 : totalLatency.get() / count;
+  }
+
+  long getMaxLatencyMillis() {
+    return maxLatency.get();
+  }
+
+  /** Processes a claimed entry, an exception leads to a retry. */
+  interface Handler {
+    void process(Entry entry) throws Exception;
+  }
+
+  /** An entry claimed by a worker. */
+  static class Entry {
+    final long tkey;
+    final String name;
+    final byte[] payload;
+    final int attempts;
+
+    Entry(long tkey, String name, byte[] payload, int attempts) {
+      this.tkey = tkey;
+      this.name = name;
+      this.payload = payload;
+      this.attempts = attempts;
+    }
+  }
+}
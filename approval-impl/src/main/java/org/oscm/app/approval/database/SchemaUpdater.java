@@ -0,0 +1,255 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings the approval database up to date. The update scripts are named
+ * <code>sql/upd_postgresql_MM_mm_SS.sql</code> after the product major, minor and schema version
+ * and are applied in order of the schema version. Each applied script is recorded in the <code>
+ * version</code> table, so it runs exactly once.
+ *
+ * <p>The scripts alter and create tables, so they must run as the role owning the tables. This is
+ * the role of the datasource <code>ApprovalDS-Owner</code> if the application server defines it,
+ * otherwise the role of <code>ApprovalDS</code>. Each script which creates a table or sequence
+ * grants it to approvaluser, the role of <code>ApprovalDS</code> in a CT-MG installation.
+ */
+public class SchemaUpdater {
+
+  private static final Logger logger = LoggerFactory.getLogger(SchemaUpdater.class);
+
+  static final int PRODUCT_MAJOR_VERSION = 1;
+  static final int PRODUCT_MINOR_VERSION = 1;
+
+  /**
+   * Schema version created by the initial setup script upd_postgresql_01_01_01.sql. The script is
+   * only applied to an empty database, the CT-MG installation runs it before the tool starts.
+   */
+  static final int BASELINE_SCHEMA_VERSION = 1;
+
+  /** SQL state of PostgreSQL for a missing table. */
+  static final String UNDEFINED_TABLE = "42P01";
+
+  private static final String SCRIPT_PATTERN = "sql/upd_postgresql_%02d_%02d_%02d.sql";
+
+  /** Serializes the update of several nodes starting at the same time. */
+  private static final long MIGRATION_LOCK = 0x4f53434d41505052L;
+
+  private final DataAccessService das;
+
+  public SchemaUpdater() {
+    this(new DataAccessService());
+  }
+
+  public SchemaUpdater(DataAccessService das) {
+    this.das = das;
+  }
+
+  /**
+   * Applies all update scripts newer than the current schema version.
+   *
+   * @return the schema version of the database after the update
+   */
+  public int update() throws Exception {
+    DataSource ds = das.getSchemaDatasource();
+    try (Connection con = ds.getConnection()) {
+      lock(con, true);
+      try {
+        int version = getOrCreateSchemaVersion(con);
+        logger.info("Approval database schema version: " + version);
+        String script;
+        while ((script = loadScript(version + 1)) != null) {
+          version++;
+          applyScript(con, version, script);
+          logger.info("Updated approval database to schema version " + version);
+        }
+        return version;
+      } finally {
+        lock(con, false);
+      }
+    } catch (SQLException e) {
+      logger.error("Failed to update the approval database schema", e);
+      throw e;
+    }
+  }
+
+  private void lock(Connection con, boolean lock) throws SQLException {
+    String query = lock ? "select pg_advisory_lock(?)" : "select pg_advisory_unlock(?)";
+    try (PreparedStatement stmt = con.prepareStatement(query)) {
+      stmt.setLong(1, MIGRATION_LOCK);
+      stmt.execute();
+    }
+  }
+
+  /**
+   * Returns the schema version. An empty database, like an embedded one for tests, is set up with
+   * the initial setup script first.
+   */
+  private int getOrCreateSchemaVersion(Connection con) throws Exception {
+    try {
+      return getSchemaVersion(con);
+    } catch (SQLException e) {
+      if (!UNDEFINED_TABLE.equals(e.getSQLState())) {
+        throw e;
+      }
+    }
+    logger.info("Creating approval database schema");
+    applyScript(con, BASELINE_SCHEMA_VERSION, loadScript(BASELINE_SCHEMA_VERSION));
+    return BASELINE_SCHEMA_VERSION;
+  }
+
+  int getSchemaVersion(Connection con) throws SQLException {
+    String query =
+        "select max(schemaversion) as schemaversion from \"version\" where productmajorversion = ? and productminorversion = ?";
+    int version = 0;
+    try (PreparedStatement stmt = con.prepareStatement(query)) {
+      stmt.setInt(1, PRODUCT_MAJOR_VERSION);
+      stmt.setInt(2, PRODUCT_MINOR_VERSION);
+
+      @SuppressWarnings("resource")
+      ResultSet rs = stmt.executeQuery();
+
+      while (rs.next()) {
+        version = rs.getInt("schemaversion");
+      }
+    }
+    if (version == 0) {
+      // the version table is created by the initial setup script but was never filled
+      boolean autoCommit = con.getAutoCommit();
+      con.setAutoCommit(true);
+      try {
+        recordVersion(con, BASELINE_SCHEMA_VERSION);
+      } finally {
+        con.setAutoCommit(autoCommit);
+      }
+      version = BASELINE_SCHEMA_VERSION;
+    }
+    return version;
+  }
+
+  String loadScript(int schemaVersion) throws IOException {
+    String name =
+        String.format(
+            SCRIPT_PATTERN, PRODUCT_MAJOR_VERSION, PRODUCT_MINOR_VERSION, schemaVersion);
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream(name)) {
+      if (in == null) {
+        return null;
+      }
+      return IOUtils.toString(in, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Runs all statements of the script and records the version within one transaction. */
+  void applyScript(Connection con, int schemaVersion, String script) throws SQLException {
+    boolean autoCommit = con.getAutoCommit();
+    con.setAutoCommit(false);
+    try (Statement stmt = con.createStatement()) {
+      for (String sql : splitStatements(script)) {
+        logger.debug("schema version " + schemaVersion + ": " + sql);
+        stmt.execute(sql);
+      }
+      recordVersion(con, schemaVersion);
+      con.commit();
+    } catch (SQLException e) {
+      con.rollback();
+      logger.error("Failed to apply update script for schema version " + schemaVersion, e);
+      throw e;
+    } finally {
+      con.setAutoCommit(autoCommit);
+    }
+  }
+
+  private void recordVersion(Connection con, int schemaVersion) throws SQLException {
+    String query =
+        "insert into \"version\" (productmajorversion,productminorversion,schemaversion,migrationdate) values (?,?,?,current_timestamp)";
+    try (PreparedStatement stmt = con.prepareStatement(query)) {
+      stmt.setInt(1, PRODUCT_MAJOR_VERSION);
+      stmt.setInt(2, PRODUCT_MINOR_VERSION);
+      stmt.setInt(3, schemaVersion);
+      stmt.executeUpdate();
+    }
+  }
+
+  /**
+   * Splits a script into single statements at semicolons. Semicolons within comments, quoted
+   * strings, quoted identifiers and dollar quoted function bodies do not end a statement.
+   */
+  static List<String> splitStatements(String script) {
+    List<String> statements = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    int i = 0;
+    int len = script.length();
+    while (i < len) {
+      char c = script.charAt(i);
+      if (c == '-' && script.startsWith("--", i)) {
+        int end = script.indexOf('\n', i);
+        i = (end < 0) ? len : end + 1;
+        current.append('\n');
+      } else if (c == '/' && script.startsWith("/*", i)) {
+        int end = script.indexOf("*/", i + 2);
+        i = (end < 0) ? len : end + 2;
+        current.append(' ');
+      } else if (c == '\'' || c == '"') {
+        int end = script.indexOf(c, i + 1);
+        end = (end < 0) ? len : end + 1;
+        current.append(script, i, end);
+        i = end;
+      } else if (c == '$' && dollarTag(script, i) != null) {
+        String tag = dollarTag(script, i);
+        int end = script.indexOf(tag, i + tag.length());
+        end = (end < 0) ? len : end + tag.length();
+        current.append(script, i, end);
+        i = end;
+      } else if (c == ';') {
+        addStatement(statements, current);
+        i++;
+      } else {
+        current.append(c);
+        i++;
+      }
+    }
+    addStatement(statements, current);
+    return statements;
+  }
+
+  private static String dollarTag(String script, int start) {
+    int i = start + 1;
+    while (i < script.length()
+        && (Character.isLetterOrDigit(script.charAt(i)) || script.charAt(i) == '_')) {
+      i++;
+    }
+    if (i < script.length() && script.charAt(i) == '$') {
+      return script.substring(start, i + 1);
+    }
+    return null;
+  }
+
+  private static void addStatement(List<String> statements, StringBuilder current) {
+    String sql = current.toString().trim();
+    if (!sql.isEmpty()) {
+      statements.add(sql);
+    }
+    current.setLength(0);
+  }
+}
@@ -9,14 +9,10 @@ package org.oscm.app.approval.database;
 
 import org.oscm.app.approval.json.JSONMapper;
 import org.oscm.app.approval.json.TriggerProcessData;
-import org.oscm.app.approval.util.PriceText;
 import org.oscm.app.dataaccess.AppDataService;
-import org.oscm.app.dataaccess.Credentials;
-import org.oscm.app.v2_0.exceptions.APPlatformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public class Task {
@@ -38,6 +34,31 @@ public class Task {
     ApprovalStatus(int tkey) {
       this.tkey = tkey;
     }
+
+    /** Returns whether a task in this status may be changed to the given status. */
+    public boolean canTransitionTo(ApprovalStatus target) {
+      switch (this) {
+        case WAITING_FOR_APPROVAL:
+          return target == APPROVED || target == REJECTED || target == TIMEOUT;
+        case WAITING_FOR_CLEARANCE:
+          return target == CLEARANCE_GRANTED;
+        case CLEARANCE_GRANTED:
+          // reset if the provisioning could not be continued, so the clearance can be granted again
+          return target == WAITING_FOR_CLEARANCE;
+        default:
+          return false;
+      }
+    }
+
+    /** Returns the status with the given key, <code>null</code> if there is none. */
+    public static ApprovalStatus fromKey(int tkey) {
+      for (ApprovalStatus status : values()) {
+        if (status.tkey == tkey) {
+          return status;
+        }
+      }
+      return null;
+    }
   }
 
   public String tkey;
@@ -52,106 +73,60 @@ public class Task {
   public String status;
   public String status_tkey;
 
+  /** Changes with every update of the task row. */
+  public String row_version;
+
+  /** Incremented with every status transition, guards against concurrent transitions. */
+  public int version;
+
+  // fields of the trigger process data, read without parsing the description
+  public String user_locale;
+  public String user_email;
+  public String service_id;
+  public String subscription_id;
+  public String price_type;
+  public String trigger_id;
+
+  /**
+   * Returns the properties of the task for the approval processes. The values are resolved when
+   * they are read.
+   */
   public Map<String, String> getTriggerProcessData() {
     logger.debug("description: " + description);
-    TriggerProcessData processData = mapDescriptionToTriggerProcessData();
-
-    Map<String, String> props = new HashMap<>();
-    props.put("task.description", description);
-    props.put("task.comment", comment);
-    props.put("task.tkey", tkey);
-    props.put("task.triggerkey", Long.toString(triggerkey));
-    props.put("task.orgid", orgid);
-
-    props.put("user.userid", processData.ctmg_user.userid);
-    props.put("user.orgId", processData.ctmg_user.orgId);
-    props.put("user.key", processData.ctmg_user.key);
-    props.put("user.additional_name", processData.ctmg_user.additional_name);
-    props.put("user.salutation", processData.ctmg_user.salutation);
-
-    props.put("user.address", processData.ctmg_user.address);
-    props.put("user.email", processData.ctmg_user.email);
-    props.put("user.firstname", processData.ctmg_user.firstname);
-    props.put("user.lastname", processData.ctmg_user.lastname);
-    props.put("user.locale", processData.ctmg_user.locale);
-    props.put("user.phone", processData.ctmg_user.phone);
-    props.put("user.realm_userid", processData.ctmg_user.realm_userid);
-
-    if (processData.ctmg_service != null) {
-      props.put("service.id", processData.ctmg_service.id);
-      props.put("service.technicalId", processData.ctmg_service.technicalId);
-      props.put("service.name", processData.ctmg_service.name);
-      props.put("service.seller.id", processData.ctmg_service.seller.id);
-      props.put("service.seller.key", processData.ctmg_service.seller.key);
-      props.put("service.seller.name", processData.ctmg_service.seller.name);
-
-      String loc = processData.ctmg_user.locale;
-      props.put("service.price.freePeriod", processData.ctmg_service.price.freePeriod);
-      props.put("service.price.oneTimeFee", processData.ctmg_service.price.oneTimeFee);
-      props.put("service.price.pricePerPeriod", processData.ctmg_service.price.pricePerPeriod);
-      props.put("service.price.pricePerUser", processData.ctmg_service.price.pricePerUser);
-      props.put("service.price.type", processData.ctmg_service.price.type);
-      props.put("service.price.period", processData.ctmg_service.price.period);
-      props.put("service.price.currency", processData.ctmg_service.price.currency);
-      
-      props.put("service.price.text", PriceText.from(processData.ctmg_service.price));
-      
-      for (String key : processData.ctmg_service.params.keySet()) {
-        props.put(
-            "service.params." + key + ".value", processData.ctmg_service.params.get(key).value);
-        props.put(
-            "service.params." + key + ".label", processData.ctmg_service.params.get(key).label);
-        props.put("service.params." + key + ".id", processData.ctmg_service.params.get(key).id);
-      }
-    }
+    return new TaskProperties(this, getParsedDescription(), createAppDataService());
+  }
 
-    if (processData.ctmg_subscription != null) {
-      props.put("subscription.id", processData.ctmg_subscription.id);
-    } else {
-      logger.warn("Missing subscription is trigger process data");
-    }
-    props.put("organization.address", processData.ctmg_organization.address);
-    props.put("organization.id", processData.ctmg_organization.id);
-    props.put("organization.name", processData.ctmg_organization.name);
-
-    props.put("ctmg_suspend_process", processData.ctmg_suspend_process);
-    props.put("ctmg_trigger_id", processData.ctmg_trigger_id);
-    props.put("ctmg_trigger_key", processData.ctmg_trigger_key);
-    props.put("ctmg_trigger_name", processData.ctmg_trigger_name);
-    props.put("ctmg_trigger_orgid", processData.ctmg_trigger_orgid);
-    props.put("instanceid", processData.instanceid);
-    props.put("instancename", processData.instancename);
-
-    AppDataService das = new AppDataService();
-    Credentials cred;
-
-    try {
-      String approverOrgId = das.getApproverOrgId(processData.ctmg_trigger_orgid);
-      props.put("approver.org.id", approverOrgId);
-
-      if ("GrantClearance".equals(processData.ctmg_trigger_id)) {
-        cred = das.loadControllerOwnerCredentials();
-      } else {
-        cred = das.loadOrgAdminCredentials(processData.ctmg_organization.id);
+  /**
+   * Returns the parsed description. Tasks read from the database are parsed once and then taken
+   * from the cache.
+   */
+  ProcessDataCache.Entry getParsedDescription() {
+    ProcessDataCache cache = getProcessDataCache();
+    boolean cacheable = tkey != null && description != null;
+    ProcessDataCache.Entry entry = cacheable ? cache.get(tkey, description) : null;
+    if (entry == null) {
+      entry = new ProcessDataCache.Entry(description, mapDescriptionToTriggerProcessData());
+      if (cacheable) {
+        cache.put(tkey, entry);
       }
-      props.put("admin.userid", cred.getUserId());
-      props.put("admin.password", cred.getPassword());
-    } catch (APPlatformException e) {
-      logger.error(
-          "Failed to retrieve approver organization for organization "
-              + processData.ctmg_trigger_orgid,
-          e);
-    } catch (Exception e) {
-      logger.error(
-          "Failed to retrieve org admin login for organization " + processData.ctmg_organization.id,
-          e);
     }
+    return entry;
+  }
 
-    return props;
+  /** Returns the entity tag of the task or <code>null</code> if the row version is unknown. */
+  public String getETag() {
+    return row_version == null ? null : "\"" + tkey + "-" + row_version + "\"";
   }
 
- 
   protected TriggerProcessData mapDescriptionToTriggerProcessData() {
     return JSONMapper.toTriggerProcessData(description);
   }
+
+  protected AppDataService createAppDataService() {
+    return new AppDataService();
+  }
+
+  protected ProcessDataCache getProcessDataCache() {
+    return ProcessDataCache.getInstance();
+  }
 }
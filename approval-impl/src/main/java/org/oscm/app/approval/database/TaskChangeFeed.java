@@ -0,0 +1,186 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.oscm.app.approval.json.JSONMapper;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Distributes the task changes announced by the database to the subscribed approvers. A single
+ * connection per node listens on the channel filled by the task triggers, so the number of
+ * connected browsers does not add any database load.
+ */
+public class TaskChangeFeed {
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskChangeFeed.class);
+
+  static final String CHANNEL = "approval_task";
+
+  static final String WAIT_MILLIS = "events.wait.millis";
+  static final String RECONNECT_MILLIS = "events.reconnect.millis";
+
+  private static final TaskChangeFeed INSTANCE = new TaskChangeFeed();
+
+  private final DataAccessService das;
+  private final ApprovalConfig config;
+  private final ObjectReader reader = JSONMapper.readerFor(TaskEvent.class);
+  private final Map<Integer, Set<TaskEventHandler>> subscribers = new ConcurrentHashMap<>();
+  private Thread listener;
+
+  public TaskChangeFeed() {
+    this(new DataAccessService(), ApprovalConfig.getInstance());
+  }
+
+  public TaskChangeFeed(DataAccessService das, ApprovalConfig config) {
+    this.das = das;
+    this.config = config;
+  }
+
+  public static TaskChangeFeed getInstance() {
+    return INSTANCE;
+  }
+
+  /** Starts listening for task changes. */
+  public synchronized void start() {
+    if (listener != null) {
+      return;
+    }
+    listener = new Thread(this::listen, "approval-task-events");
+    listener.setDaemon(true);
+    listener.start();
+  }
+
+  public synchronized void stop() {
+    if (listener != null) {
+      listener.interrupt();
+      listener = null;
+    }
+  }
+
+  /** Passes all changes of the approver's tasks to the handler until it is unsubscribed. */
+  public void subscribe(int approverKey, TaskEventHandler handler) {
+    start();
+    subscribers
+        .computeIfAbsent(Integer.valueOf(approverKey), k -> ConcurrentHashMap.newKeySet())
+        .add(handler);
+  }
+
+  public void unsubscribe(int approverKey, TaskEventHandler handler) {
+    subscribers.computeIfPresent(
+        Integer.valueOf(approverKey),
+        (k, handlers) -> {
+          handlers.remove(handler);
+          return handlers.isEmpty() ? null : handlers;
+        });
+  }
+
+  int getSubscriberCount(int approverKey) {
+    Set<TaskEventHandler> handlers = subscribers.get(Integer.valueOf(approverKey));
+    return handlers == null ? 0 : handlers.size();
+  }
+
+  void listen() {
+    long reconnect = config.getLong(RECONNECT_MILLIS, 5000);
+    while (!Thread.currentThread().isInterrupted()) {
+      try (Connection con = das.getDatasource().getConnection()) {
+        if (!con.isWrapperFor(PGConnection.class)) {
+          logger.warn(
+              "The approval datasource does not provide PostgreSQL notifications, task changes are not pushed");
+          return;
+        }
+        receive(con, con.unwrap(PGConnection.class));
+      } catch (InterruptedException e) {
+        return;
+      } catch (Exception e) {
+        logger.error("Listening for task changes failed, reconnecting", e);
+        try {
+          Thread.sleep(reconnect);
+        } catch (InterruptedException ie) {
+          return;
+        }
+      }
+    }
+  }
+
+  private void receive(Connection con, PGConnection pg) throws Exception {
+    int wait = config.getInt(WAIT_MILLIS, 500);
+    // drivers since 42.2 wait on the socket, older ones only read notifications with a statement
+    Method waitForNotifications = getWaitingReceive();
+    try (Statement stmt = con.createStatement()) {
+      stmt.execute("LISTEN " + CHANNEL);
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          PGNotification[] notifications;
+          if (waitForNotifications != null) {
+            notifications =
+                (PGNotification[]) waitForNotifications.invoke(pg, Integer.valueOf(wait));
+          } else {
+            Thread.sleep(wait);
+            try (ResultSet rs = stmt.executeQuery("select 1")) {
+              notifications = pg.getNotifications();
+            }
+          }
+          if (notifications != null) {
+            for (PGNotification notification : notifications) {
+              dispatch(notification.getParameter());
+            }
+          }
+        }
+        throw new InterruptedException();
+      } finally {
+        // the connection goes back to the pool
+        stmt.execute("UNLISTEN " + CHANNEL);
+      }
+    }
+  }
+
+  private static Method getWaitingReceive() {
+    try {
+      return PGConnection.class.getMethod("getNotifications", int.class);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /** Passes a change announced by the database to the handlers of its approver. */
+  void dispatch(String payload) {
+    TaskEvent event;
+    try {
+      event = reader.readValue(payload);
+    } catch (Exception e) {
+      logger.error("Invalid task change " + payload, e);
+      return;
+    }
+    Set<TaskEventHandler> handlers = subscribers.get(Integer.valueOf(event.approver_tkey));
+    if (handlers == null) {
+      return;
+    }
+    for (TaskEventHandler handler : handlers) {
+      try {
+        handler.handle(event);
+      } catch (Exception e) {
+        logger.debug("Dropping task change subscriber of approver " + event.approver_tkey, e);
+        unsubscribe(event.approver_tkey, handler);
+      }
+    }
+  }
+}
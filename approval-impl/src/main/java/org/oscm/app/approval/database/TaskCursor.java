@@ -0,0 +1,71 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Keyset position within a task list ordered by <code>created desc, tkey desc</code>. The cursor
+ * points at the last task of a page, the next page starts with the first task behind it.
+ */
+public class TaskCursor {
+
+  private static final String SEPARATOR = "|";
+
+  private final Timestamp created;
+  private final int tkey;
+
+  public TaskCursor(Timestamp created, int tkey) {
+    this.created = created;
+    this.tkey = tkey;
+  }
+
+  public Timestamp getCreated() {
+    return created;
+  }
+
+  public int getTkey() {
+    return tkey;
+  }
+
+  /**
+   * Returns an opaque, URL safe token for this cursor. The timestamp keeps its full (microsecond)
+   * precision, otherwise tasks created within the same millisecond could be skipped.
+   */
+  public String encode() {
+    String plain = created.toString() + SEPARATOR + tkey;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Restores a cursor from a token created by {@link #encode()}.
+   *
+   * @param token - the token, may be <code>null</code> or empty for the first page
+   * @return the cursor or <code>null</code> if no token was given
+   * @throws IllegalArgumentException - if the token is malformed
+   */
+  public static TaskCursor decode(String token) {
+    if (token == null || token.trim().isEmpty()) {
+      return null;
+    }
+    try {
+      String plain =
+          new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+      int idx = plain.lastIndexOf(SEPARATOR);
+      Timestamp created = Timestamp.valueOf(plain.substring(0, idx));
+      int tkey = Integer.parseInt(plain.substring(idx + 1));
+      return new TaskCursor(created, tkey);
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid task list cursor " + token, e);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A new, changed or deleted task, as announced by the database. Holds the fields shown in the task
+ * list, so that the list can be updated without reading the task.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TaskEvent {
+
+  /** INSERT, UPDATE or DELETE */
+  public String op;
+
+  public String tkey;
+  public int approver_tkey;
+  public String status_tkey;
+  public String triggername;
+  public String orgid;
+  public String orgname;
+  public String requestinguser;
+
+  /** The creation date of the task, lets following requests read only the partition of the task. */
+  public String created;
+}
@@ -0,0 +1,14 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+/** Receives the task changes of an approver from the {@link TaskChangeFeed}. */
+public interface TaskEventHandler {
+
+  void handle(TaskEvent event) throws Exception;
+}
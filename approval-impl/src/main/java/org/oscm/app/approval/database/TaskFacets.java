@@ -0,0 +1,31 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Number of tasks matching a search per status and per trigger name. The counts consider the
+ * search text and creation period, but not the status and trigger filters, so that they show what
+ * another filter value would select.
+ */
+public class TaskFacets {
+
+  public final Map<Integer, Long> status = new LinkedHashMap<>();
+  public final Map<String, Long> triggername = new LinkedHashMap<>();
+
+  /** Returns the number of all tasks matching the search text and creation period. */
+  public long getTotal() {
+    long total = 0;
+    for (Long n : status.values()) {
+      total += n.longValue();
+    }
+    return total;
+  }
+}
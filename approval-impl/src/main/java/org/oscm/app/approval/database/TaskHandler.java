@@ -0,0 +1,14 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+/** Receives the tasks of a task list one by one while they are read from the database. */
+public interface TaskHandler {
+
+  void handle(Task task) throws Exception;
+}
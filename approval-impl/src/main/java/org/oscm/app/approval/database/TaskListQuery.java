@@ -0,0 +1,82 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.oscm.app.approval.i18n.Messages;
+
+/** Selection criteria and paging position for reading the task list of an approver. */
+public class TaskListQuery {
+
+  /** Page size used if the client requests paging without giving a size. */
+  public static final int DEFAULT_PAGE_SIZE = 50;
+
+  /** Upper limit for the page size requested by a client. */
+  public static final int MAX_PAGE_SIZE = 500;
+
+  public String orgId;
+
+  /** Key of the approver of the organization, if known. Saves the lookup by organization. */
+  public int approverKey;
+
+  public boolean show_notifications;
+  public boolean show_finished_tasks;
+  public boolean show_open_tasks;
+  public boolean show_granted_clearances;
+  public boolean show_open_clearances;
+
+  /**
+   * Only tasks created at or after this time are read, <code>null</code> for all tasks. Restricts
+   * the query to the partitions of the task table covering that period.
+   */
+  public Timestamp createdSince;
+
+  /** Position behind which the list continues, <code>null</code> for the first page. */
+  public TaskCursor cursor;
+
+  /** Language of the status names. */
+  public Locale locale = Messages.DEFAULT_LOCALE;
+
+  /** Maximum number of tasks to read, 0 reads all remaining tasks. */
+  public int pageSize;
+
+  public boolean isPaged() {
+    return pageSize > 0;
+  }
+
+  /** Sets the page size, limited to {@link #MAX_PAGE_SIZE}. */
+  public void setPageSize(int pageSize) {
+    this.pageSize = Math.min(Math.max(pageSize, 0), MAX_PAGE_SIZE);
+  }
+
+  /** Returns the keys of all status values selected by the show flags. */
+  public List<Integer> getStatusKeys() {
+    List<Integer> keys = new ArrayList<>();
+    if (show_open_tasks) {
+      keys.add(Integer.valueOf(Task.ApprovalStatus.WAITING_FOR_APPROVAL.tkey));
+    }
+    if (show_finished_tasks) {
+      keys.add(Integer.valueOf(Task.ApprovalStatus.APPROVED.tkey));
+      keys.add(Integer.valueOf(Task.ApprovalStatus.REJECTED.tkey));
+    }
+    if (show_notifications) {
+      keys.add(Integer.valueOf(Task.ApprovalStatus.NOTIFICATION.tkey));
+    }
+    if (show_open_clearances) {
+      keys.add(Integer.valueOf(Task.ApprovalStatus.WAITING_FOR_CLEARANCE.tkey));
+    }
+    if (show_granted_clearances) {
+      keys.add(Integer.valueOf(Task.ApprovalStatus.CLEARANCE_GRANTED.tkey));
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,212 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the monthly partitions of the task table. Partitions for the coming months are created
+ * in advance, so that new tasks never end up in the default partition. Partitions older than the
+ * retention period are dropped as a whole, unless they still contain open tasks.
+ */
+public class TaskPartitionManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskPartitionManager.class);
+
+  static final String MONTHS_AHEAD = "partition.months.ahead";
+  static final String RETENTION_MONTHS = "partition.retention.months";
+
+  static final String PARTITION_PREFIX = "task_p";
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+  private static final TaskPartitionManager INSTANCE = new TaskPartitionManager();
+
+  private final DataAccessService das;
+  private final ApprovalConfig config;
+  private ScheduledExecutorService executor;
+
+  public TaskPartitionManager() {
+    this(new DataAccessService(), ApprovalConfig.getInstance());
+  }
+
+  public TaskPartitionManager(DataAccessService das, ApprovalConfig config) {
+    this.das = das;
+    this.config = config;
+  }
+
+  public static TaskPartitionManager getInstance() {
+    return INSTANCE;
+  }
+
+  /** Runs the partition maintenance now and once a day. */
+  public synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "approval-task-partitions");
+              t.setDaemon(true);
+              return t;
+            });
+    executor.scheduleWithFixedDelay(this::maintain, 0, 1, TimeUnit.DAYS);
+  }
+
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  void maintain() {
+    try (Connection con = das.getSchemaDatasource().getConnection()) {
+      if (!isPartitioned(con)) {
+        logger.warn("Task table is not partitioned, skipping partition maintenance");
+        return;
+      }
+      YearMonth now = YearMonth.now();
+      createPartitions(con, now, config.getInt(MONTHS_AHEAD, 3));
+      int retention = config.getInt(RETENTION_MONTHS, 0);
+      if (retention > 0) {
+        dropPartitions(con, now.minusMonths(retention));
+      }
+    } catch (Exception e) {
+      logger.error("Task partition maintenance failed", e);
+    }
+  }
+
+  boolean isPartitioned(Connection con) throws SQLException {
+    String query = "select c.relkind from pg_class c where c.oid = to_regclass('task')";
+    try (Statement stmt = con.createStatement();
+        ResultSet rs = stmt.executeQuery(query)) {
+      return rs.next() && "p".equals(rs.getString("relkind"));
+    }
+  }
+
+  /**
+   * Creates the partitions from the given month up to the given number of months ahead. The
+   * primary key of the task table contains the creation date, so each partition gets its own
+   * unique index on tkey. The partitions get the privileges of the task table for approvaluser.
+   */
+  void createPartitions(Connection con, YearMonth from, int monthsAhead) throws SQLException {
+    try (Statement stmt = con.createStatement()) {
+      for (int i = 0; i <= monthsAhead; i++) {
+        YearMonth month = from.plusMonths(i);
+        String partition = partitionName(month);
+        stmt.execute(
+            "create table if not exists "
+                + partition
+                + " partition of task for values from ('"
+                + month.atDay(1)
+                + "') to ('"
+                + month.plusMonths(1).atDay(1)
+                + "')");
+        stmt.execute(
+            "create unique index if not exists "
+                + partition
+                + "_tkey_key on "
+                + partition
+                + " (tkey)");
+        stmt.execute(
+            "do $$ begin if exists (select 1 from pg_roles where rolname = 'approvaluser') then"
+                + " grant all privileges on table "
+                + partition
+                + " to approvaluser; end if; end $$");
+      }
+    }
+  }
+
+  /**
+   * Drops all monthly partitions before the given month. Partitions with tasks still waiting for
+   * approval or clearance are kept.
+   *
+   * @return the names of the dropped partitions
+   */
+  List<String> dropPartitions(Connection con, YearMonth before) throws SQLException {
+    List<String> dropped = new ArrayList<>();
+    for (String partition : getPartitions(con)) {
+      YearMonth month = parseMonth(partition);
+      if (month == null || !month.isBefore(before)) {
+        continue;
+      }
+      if (hasOpenTasks(con, partition)) {
+        logger.info("Keeping partition " + partition + " with open tasks");
+        continue;
+      }
+      try (Statement stmt = con.createStatement()) {
+        stmt.execute("alter table task detach partition " + partition);
+        stmt.execute("drop table " + partition);
+      }
+      logger.info("Dropped task partition " + partition);
+      dropped.add(partition);
+    }
+    if (!dropped.isEmpty()) {
+      // dropping a partition does not fire the row triggers maintaining the task counts
+      try (Statement stmt = con.createStatement()) {
+        stmt.execute("select task_counts_rebuild()");
+      }
+      ProcessDataCache.getInstance().clear();
+    }
+    return dropped;
+  }
+
+  List<String> getPartitions(Connection con) throws SQLException {
+    String query =
+        "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid where i.inhparent = to_regclass('task') order by c.relname";
+    List<String> partitions = new ArrayList<>();
+    try (Statement stmt = con.createStatement();
+        ResultSet rs = stmt.executeQuery(query)) {
+      while (rs.next()) {
+        partitions.add(rs.getString("relname"));
+      }
+    }
+    return partitions;
+  }
+
+  private boolean hasOpenTasks(Connection con, String partition) throws SQLException {
+    String query = "select 1 from " + partition + " where status_tkey in (?,?) limit 1";
+    try (PreparedStatement stmt = con.prepareStatement(query)) {
+      stmt.setInt(1, Task.ApprovalStatus.WAITING_FOR_APPROVAL.tkey);
+      stmt.setInt(2, Task.ApprovalStatus.WAITING_FOR_CLEARANCE.tkey);
+      try (ResultSet rs = stmt.executeQuery()) {
+        return rs.next();
+      }
+    }
+  }
+
+  static String partitionName(YearMonth month) {
+    return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+  }
+
+  /** Returns the month of a partition created by this manager, <code>null</code> otherwise. */
+  static YearMonth parseMonth(String partition) {
+    String suffix = partition.substring(Math.min(partition.length(), PARTITION_PREFIX.length()));
+    if (!partition.startsWith(PARTITION_PREFIX) || !suffix.matches("\\d{6}")) {
+      return null;
+    }
+    return YearMonth.from(LocalDate.parse(suffix + "01", DateTimeFormatter.BASIC_ISO_DATE));
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+/** Selects the columns read for a single task. All projections include the row version. */
+public enum TaskProjection {
+
+  /**
+   * Identifiers, names, status, transition version and creation date, without description and
+   * comment.
+   */
+  HEADER(
+      "t.tkey,t.orgid,t.triggerkey,t.triggername,t.orgname,t.requestinguser,t.created,s.name as status,t.status_tkey,t.version,t.xmin::text as row_version",
+      true,
+      false),
+
+  /** The header together with the trigger process data and the comment. */
+  PAYLOAD(
+      HEADER.columns
+          + ",t.description,t.comment,t.user_locale,t.user_email,t.service_id,t.subscription_id,t.price_type,t.trigger_id",
+      true,
+      true),
+
+  /** Only the locale of the requesting user. */
+  LOCALE("t.tkey,t.user_locale,t.xmin::text as row_version", false, false);
+
+  final String columns;
+  final boolean header;
+  final boolean payload;
+
+  TaskProjection(String columns, boolean header, boolean payload) {
+    this.columns = columns;
+    this.header = header;
+    this.payload = payload;
+  }
+}
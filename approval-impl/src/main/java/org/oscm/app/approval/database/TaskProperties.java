@@ -0,0 +1,379 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.oscm.app.approval.i18n.Messages;
+import org.oscm.app.approval.json.Organization;
+import org.oscm.app.approval.json.PriceModel;
+import org.oscm.app.approval.json.Seller;
+import org.oscm.app.approval.json.Service;
+import org.oscm.app.approval.json.ServiceParameter;
+import org.oscm.app.approval.json.TriggerProcessData;
+import org.oscm.app.approval.json.User;
+import org.oscm.app.approval.util.PriceText;
+import org.oscm.app.dataaccess.AppDataService;
+import org.oscm.app.dataaccess.Credentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Properties of a task as passed to the approval processes. The values are resolved from the
+ * parsed description when a process reads them, so the price text and the lookups of the approver
+ * organization and the admin credentials only run for the placeholders which refer to them. Values
+ * which are put take precedence over the resolved ones.
+ */
+public class TaskProperties extends AbstractMap<String, String> {
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskProperties.class);
+
+  static final String APPROVER_ORG_ID = "approver.org.id";
+  static final String ADMIN_USERID = "admin.userid";
+  static final String ADMIN_PASSWORD = "admin.password";
+
+  private static final String PARAMS = "service.params.";
+  private static final String[] PARAM_FIELDS = {".value", ".label", ".id"};
+
+  private static final Map<String, Function<TriggerProcessData, String>> PROCESS_DATA =
+      new LinkedHashMap<>();
+  private static final Map<String, Function<TriggerProcessData, String>> SERVICE =
+      new LinkedHashMap<>();
+  private static final Map<String, Function<TaskProperties, String>> LOOKUPS =
+      new LinkedHashMap<>();
+
+  static {
+    user("user.userid", u -> u.userid);
+    user("user.orgId", u -> u.orgId);
+    user("user.key", u -> u.key);
+    user("user.additional_name", u -> u.additional_name);
+    user("user.salutation", u -> u.salutation);
+    user("user.address", u -> u.address);
+    user("user.email", u -> u.email);
+    user("user.firstname", u -> u.firstname);
+    user("user.lastname", u -> u.lastname);
+    user("user.locale", u -> u.locale);
+    user("user.phone", u -> u.phone);
+    user("user.realm_userid", u -> u.realm_userid);
+
+    service("service.id", s -> s.id);
+    service("service.technicalId", s -> s.technicalId);
+    service("service.name", s -> s.name);
+    seller("service.seller.id", s -> s.id);
+    seller("service.seller.key", s -> s.key);
+    seller("service.seller.name", s -> s.name);
+    price("service.price.freePeriod", p -> p.freePeriod);
+    price("service.price.oneTimeFee", p -> p.oneTimeFee);
+    price("service.price.pricePerPeriod", p -> p.pricePerPeriod);
+    price("service.price.pricePerUser", p -> p.pricePerUser);
+    price("service.price.type", p -> p.type);
+    price("service.price.period", p -> p.period);
+    price("service.price.currency", p -> p.currency);
+    SERVICE.put(
+        "service.price.text",
+        d ->
+            d.ctmg_service.price == null
+                ? null
+                : PriceText.from(d.ctmg_service.price, getUserLocale(d)));
+
+    organization("organization.address", o -> o.address);
+    organization("organization.id", o -> o.id);
+    organization("organization.name", o -> o.name);
+
+    PROCESS_DATA.put("ctmg_suspend_process", d -> d.ctmg_suspend_process);
+    PROCESS_DATA.put("ctmg_trigger_id", d -> d.ctmg_trigger_id);
+    PROCESS_DATA.put("ctmg_trigger_key", d -> d.ctmg_trigger_key);
+    PROCESS_DATA.put("ctmg_trigger_name", d -> d.ctmg_trigger_name);
+    PROCESS_DATA.put("ctmg_trigger_orgid", d -> d.ctmg_trigger_orgid);
+    PROCESS_DATA.put("instanceid", d -> d.instanceid);
+    PROCESS_DATA.put("instancename", d -> d.instancename);
+
+    LOOKUPS.put(APPROVER_ORG_ID, TaskProperties::lookupApproverOrgId);
+    LOOKUPS.put(ADMIN_USERID, p -> p.getCredentials() == null ? null : p.credentials.getUserId());
+    LOOKUPS.put(
+        ADMIN_PASSWORD, p -> p.getCredentials() == null ? null : p.credentials.getPassword());
+  }
+
+  private static void user(String key, Function<User, String> field) {
+    PROCESS_DATA.put(key, d -> d.ctmg_user == null ? null : field.apply(d.ctmg_user));
+  }
+
+  private static void service(String key, Function<Service, String> field) {
+    SERVICE.put(key, d -> field.apply(d.ctmg_service));
+  }
+
+  private static void seller(String key, Function<Seller, String> field) {
+    service(key, s -> s.seller == null ? null : field.apply(s.seller));
+  }
+
+  private static void price(String key, Function<PriceModel, String> field) {
+    service(key, s -> s.price == null ? null : field.apply(s.price));
+  }
+
+  /** Texts like the price text are given in the language of the requesting user. */
+  private static Locale getUserLocale(TriggerProcessData data) {
+    return Messages.getLocale(data.ctmg_user == null ? null : data.ctmg_user.locale);
+  }
+
+  private static void organization(String key, Function<Organization, String> field) {
+    PROCESS_DATA.put(
+        key, d -> d.ctmg_organization == null ? null : field.apply(d.ctmg_organization));
+  }
+
+  private final Map<String, String> task = new HashMap<>();
+  private final TriggerProcessData data;
+  private final Map<String, String> resolved;
+  private final AppDataService appDataService;
+  private final Map<String, String> overrides = new HashMap<>();
+  private final Set<String> removed = new HashSet<>();
+  private final Map<String, String> lookups = new HashMap<>();
+  private Credentials credentials;
+  private boolean credentialsLoaded;
+
+  /**
+   * @param parsed - the parsed description, its resolved values are shared by all views of it
+   */
+  TaskProperties(Task task, ProcessDataCache.Entry parsed, AppDataService appDataService) {
+    this.task.put("task.description", task.description);
+    this.task.put("task.comment", task.comment);
+    this.task.put("task.tkey", task.tkey);
+    this.task.put("task.triggerkey", Long.toString(task.triggerkey));
+    this.task.put("task.orgid", task.orgid);
+    this.data = parsed.data;
+    this.resolved = parsed.properties;
+    this.appDataService = appDataService;
+    if (data.ctmg_subscription == null) {
+      logger.warn("Missing subscription is trigger process data");
+    }
+  }
+
+  @Override
+  public String get(Object key) {
+    if (!(key instanceof String) || removed.contains(key)) {
+      return null;
+    }
+    if (overrides.containsKey(key)) {
+      return overrides.get(key);
+    }
+    if (task.containsKey(key)) {
+      return task.get(key);
+    }
+    String name = (String) key;
+    if (LOOKUPS.containsKey(name)) {
+      return getLookup(name);
+    }
+    String value = resolved.get(name);
+    if (value == null) {
+      value = resolve(name);
+      if (value != null) {
+        resolved.put(name, value);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    if (!(key instanceof String) || removed.contains(key)) {
+      return false;
+    }
+    String name = (String) key;
+    if (overrides.containsKey(name) || task.containsKey(name) || PROCESS_DATA.containsKey(name)) {
+      return true;
+    }
+    if (LOOKUPS.containsKey(name)) {
+      return getLookup(name) != null;
+    }
+    if ("subscription.id".equals(name)) {
+      return data.ctmg_subscription != null;
+    }
+    if (data.ctmg_service == null) {
+      return false;
+    }
+    return SERVICE.containsKey(name) || findParameterField(name) != null;
+  }
+
+  @Override
+  public String put(String key, String value) {
+    String old = get(key);
+    removed.remove(key);
+    overrides.put(key, value);
+    return old;
+  }
+
+  @Override
+  public String remove(Object key) {
+    String old = get(key);
+    if (key instanceof String) {
+      overrides.remove(key);
+      removed.add((String) key);
+    }
+    return old;
+  }
+
+  /** Iterating resolves all values, including the lookups. */
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<Entry<String, String>>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        Iterator<String> keys = keys().iterator();
+        return new Iterator<Entry<String, String>>() {
+          private String current;
+
+          @Override
+          public boolean hasNext() {
+            return keys.hasNext();
+          }
+
+          @Override
+          public Entry<String, String> next() {
+            current = keys.next();
+            return new SimpleImmutableEntry<>(current, get(current));
+          }
+
+          @Override
+          public void remove() {
+            TaskProperties.this.remove(current);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return keys().size();
+      }
+    };
+  }
+
+  private Set<String> keys() {
+    Set<String> keys = new LinkedHashSet<>(task.keySet());
+    keys.addAll(PROCESS_DATA.keySet());
+    if (data.ctmg_subscription != null) {
+      keys.add("subscription.id");
+    }
+    if (data.ctmg_service != null) {
+      keys.addAll(SERVICE.keySet());
+      for (String param : data.ctmg_service.params.keySet()) {
+        for (String field : PARAM_FIELDS) {
+          keys.add(PARAMS + param + field);
+        }
+      }
+    }
+    for (String lookup : LOOKUPS.keySet()) {
+      if (getLookup(lookup) != null) {
+        keys.add(lookup);
+      }
+    }
+    keys.addAll(overrides.keySet());
+    keys.removeAll(removed);
+    return keys;
+  }
+
+  private String resolve(String name) {
+    Function<TriggerProcessData, String> field = PROCESS_DATA.get(name);
+    if (field != null) {
+      return field.apply(data);
+    }
+    if ("subscription.id".equals(name)) {
+      return data.ctmg_subscription == null ? null : data.ctmg_subscription.id;
+    }
+    if (data.ctmg_service == null) {
+      return null;
+    }
+    Function<TriggerProcessData, String> serviceField = SERVICE.get(name);
+    if (serviceField != null) {
+      return serviceField.apply(data);
+    }
+    return getParameter(name);
+  }
+
+  /**
+   * Resolves <code>service.params.&lt;id&gt;.value</code>, <code>.label</code> and <code>.id</code>.
+   */
+  private String getParameter(String name) {
+    String field = findParameterField(name);
+    if (field == null) {
+      return null;
+    }
+    ServiceParameter param = data.ctmg_service.params.get(getParameterId(name, field));
+    if (param == null) {
+      return null;
+    }
+    return ".value".equals(field) ? param.value : ".label".equals(field) ? param.label : param.id;
+  }
+
+  /** Returns the field a parameter property refers to, <code>null</code> if there is none. */
+  private String findParameterField(String name) {
+    if (!name.startsWith(PARAMS)) {
+      return null;
+    }
+    for (String field : PARAM_FIELDS) {
+      if (name.endsWith(field)
+          && data.ctmg_service.params.containsKey(getParameterId(name, field))) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  private static String getParameterId(String name, String field) {
+    return name.substring(PARAMS.length(), Math.max(PARAMS.length(), name.length() - field.length()));
+  }
+
+  /**
+   * Runs the lookup of the given key once, when it is first read. The lookups of the approver
+   * organization and of the admin credentials are independent of each other.
+   */
+  private String getLookup(String name) {
+    if (!lookups.containsKey(name)) {
+      lookups.put(name, LOOKUPS.get(name).apply(this));
+    }
+    return lookups.get(name);
+  }
+
+  private String lookupApproverOrgId() {
+    try {
+      return appDataService.getApproverOrgId(data.ctmg_trigger_orgid);
+    } catch (Exception e) {
+      logger.error(
+          "Failed to retrieve approver organization for organization " + data.ctmg_trigger_orgid,
+          e);
+      return null;
+    }
+  }
+
+  /** Loads the admin credentials once for both the user id and the password. */
+  private Credentials getCredentials() {
+    if (credentialsLoaded) {
+      return credentials;
+    }
+    credentialsLoaded = true;
+    String orgId = data.ctmg_organization == null ? null : data.ctmg_organization.id;
+    try {
+      if ("GrantClearance".equals(data.ctmg_trigger_id)) {
+        credentials = appDataService.loadControllerOwnerCredentials();
+      } else {
+        credentials = appDataService.loadOrgAdminCredentials(orgId);
+      }
+    } catch (Exception e) {
+      logger.error("Failed to retrieve org admin login for organization " + orgId, e);
+    }
+    return credentials;
+  }
+}
@@ -0,0 +1,217 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes finished tasks in the background. Tasks are removed periodically once they are older
+ * than the retention period of their status, and on request of an approver. Deletion happens in
+ * small chunks with a pause in between, so that no long running statement locks the task table.
+ * Optionally the deleted tasks are kept in the task_archive table.
+ */
+public class TaskPurgeService {
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskPurgeService.class);
+
+  static final String RETENTION_DAYS = "purge.retention.days.";
+  static final String INTERVAL_MINUTES = "purge.interval.minutes";
+  static final String CHUNK_SIZE = "purge.chunk.size";
+  static final String CHUNK_PAUSE_MILLIS = "purge.chunk.pause.millis";
+  static final String ARCHIVE = "purge.archive";
+
+  /** Session setting which keeps the task triggers from announcing each deleted task. */
+  static final String NOTIFY_SETTING = "approval.notify";
+
+  private static final TaskPurgeService INSTANCE = new TaskPurgeService();
+
+  private final DataAccessService das;
+  private final ApprovalConfig config;
+  private ScheduledExecutorService executor;
+
+  public TaskPurgeService() {
+    this(new DataAccessService(), ApprovalConfig.getInstance());
+  }
+
+  public TaskPurgeService(DataAccessService das, ApprovalConfig config) {
+    this.das = das;
+    this.config = config;
+  }
+
+  public static TaskPurgeService getInstance() {
+    return INSTANCE;
+  }
+
+  /** Starts the periodic purge of tasks which exceeded their retention period. */
+  public synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "approval-task-purge");
+              t.setDaemon(true);
+              return t;
+            });
+    long interval = config.getLong(INTERVAL_MINUTES, 60);
+    if (interval > 0) {
+      executor.scheduleWithFixedDelay(this::purgeExpired, 1, interval, TimeUnit.MINUTES);
+    }
+  }
+
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Queues the deletion of all tasks of an approver with the given status values.
+   *
+   * @return the number of deleted tasks once the deletion has finished
+   */
+  public synchronized Future<Integer> enqueue(int approverKey, List<Integer> statusKeys) {
+    start();
+    return executor.submit(
+        () -> {
+          int deleted = 0;
+          for (Integer statusKey : statusKeys) {
+            deleted += purge(Integer.valueOf(approverKey), statusKey.intValue(), null);
+          }
+          logger.info("Deleted " + deleted + " tasks of approver " + approverKey);
+          return Integer.valueOf(deleted);
+        });
+  }
+
+  /** Deletes the tasks of all approvers which exceeded the retention period of their status. */
+  void purgeExpired() {
+    for (Task.ApprovalStatus status : Task.ApprovalStatus.values()) {
+      int days = config.getInt(RETENTION_DAYS + status.name(), 0);
+      if (days <= 0) {
+        continue;
+      }
+      Timestamp olderThan =
+          new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+      try {
+        int deleted = purge(null, status.tkey, olderThan);
+        if (deleted > 0) {
+          logger.info("Deleted " + deleted + " tasks in status " + status + " after " + days + " days");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        logger.error("Failed to delete expired tasks in status " + status, e);
+      }
+    }
+  }
+
+  /**
+   * Deletes tasks chunk by chunk in ascending order of creation date and tkey, which the index on
+   * status and creation date serves and which confines each chunk to few partitions. Every chunk is
+   * a transaction of its own.
+   * The deleted tasks are not announced to the browsers one by one, they reload the task list.
+   *
+   * @param approverKey - the approver whose tasks are deleted, <code>null</code> for all approvers
+   * @param statusKey - the status of the tasks to delete
+   * @param olderThan - only tasks created before are deleted, <code>null</code> for all tasks
+   * @return the number of deleted tasks
+   */
+  int purge(Integer approverKey, int statusKey, Timestamp olderThan) throws Exception {
+    int chunkSize = Math.max(1, config.getInt(CHUNK_SIZE, 500));
+    long pause = config.getLong(CHUNK_PAUSE_MILLIS, 200);
+    String query = buildPurgeQuery(approverKey != null, olderThan != null);
+
+    int total = 0;
+    Timestamp lastCreated = new Timestamp(0);
+    int lastKey = 0;
+    try (Connection con = das.getDatasource().getConnection();
+        Statement settings = con.createStatement();
+        PreparedStatement stmt = con.prepareStatement(query)) {
+      settings.execute("set " + NOTIFY_SETTING + " = off");
+      try {
+        while (true) {
+          int idx = 1;
+          stmt.setInt(idx++, statusKey);
+          stmt.setTimestamp(idx++, lastCreated);
+          stmt.setInt(idx++, lastKey);
+          if (approverKey != null) {
+            stmt.setInt(idx++, approverKey.intValue());
+          }
+          if (olderThan != null) {
+            stmt.setTimestamp(idx++, olderThan);
+          }
+          stmt.setInt(idx++, chunkSize);
+
+          int deleted = 0;
+          try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+              Timestamp created = rs.getTimestamp("created");
+              int tkey = rs.getInt("tkey");
+              int order = created.compareTo(lastCreated);
+              if (order > 0 || order == 0 && tkey > lastKey) {
+                lastCreated = created;
+                lastKey = tkey;
+              }
+              ProcessDataCache.getInstance().invalidate(rs.getString("tkey"));
+              deleted++;
+            }
+          }
+          total += deleted;
+          if (deleted < chunkSize) {
+            break;
+          }
+          Thread.sleep(pause);
+        }
+      } finally {
+        // the connection goes back to the pool
+        settings.execute("reset " + NOTIFY_SETTING);
+      }
+    } catch (SQLException e) {
+      logger.error("Failed to delete tasks in status " + statusKey, e);
+      throw e;
+    }
+    return total;
+  }
+
+  String buildPurgeQuery(boolean byApprover, boolean byAge) {
+    StringBuilder chunk =
+        new StringBuilder(
+            "select tkey,created from task where status_tkey = ? and (created,tkey) > (?,?)");
+    if (byApprover) {
+      chunk.append(" and approver_tkey = ?");
+    }
+    if (byAge) {
+      chunk.append(" and created < ?");
+    }
+    chunk.append(" order by created,tkey limit ?");
+
+    if (config.getBoolean(ARCHIVE, false)) {
+      return "with del as (delete from task where (tkey,created) in ("
+          + chunk
+          + ") returning *) insert into task_archive (tkey,approver_tkey,status_tkey,created,data) select tkey,approver_tkey,status_tkey,created,to_jsonb(del) from del returning tkey,created";
+    }
+    return "delete from task where (tkey,created) in (" + chunk + ") returning tkey,created";
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.oscm.app.approval.i18n.Messages;
+
+/**
+ * Search text, filters and page for searching the tasks of an approver. The text is matched
+ * against the organization, requesting user, trigger name and the service, subscription and user
+ * email of the trigger process data.
+ */
+public class TaskSearchQuery {
+
+  /** Upper limit for the number of results which can be paged through. */
+  public static final int MAX_RESULTS = 10000;
+
+  public int approverKey;
+
+  /** Search text in web search syntax, empty to select by the filters only. */
+  public String text = "";
+
+  /** Keys of the status values to select, empty for all status values. */
+  public List<Integer> statusKeys = new ArrayList<>();
+
+  /** Name of the trigger to select, <code>null</code> for all triggers. */
+  public String triggerName;
+
+  /** Only tasks created at or after this time are selected, <code>null</code> for no limit. */
+  public Timestamp createdFrom;
+
+  /** Only tasks created before this time are selected, <code>null</code> for no limit. */
+  public Timestamp createdTo;
+
+  /** Language of the status names. */
+  public Locale locale = Messages.DEFAULT_LOCALE;
+
+  public int pageSize = TaskListQuery.DEFAULT_PAGE_SIZE;
+
+  /** Number of the page to read, starting with 0. */
+  public int page;
+
+  public boolean hasText() {
+    return text != null && !text.trim().isEmpty();
+  }
+
+  /** Sets the page size, limited to {@link TaskListQuery#MAX_PAGE_SIZE}. */
+  public void setPageSize(int pageSize) {
+    this.pageSize = Math.min(Math.max(pageSize, 1), TaskListQuery.MAX_PAGE_SIZE);
+  }
+
+  /**
+   * Sets the page to read.
+   *
+   * @throws IllegalArgumentException if the page is negative or beyond {@link #MAX_RESULTS}
+   */
+  public void setPage(int page) {
+    if (page < 0 || (long) page * pageSize >= MAX_RESULTS) {
+      throw new IllegalArgumentException("Invalid page: " + page);
+    }
+    this.page = page;
+  }
+
+  public int getOffset() {
+    return page * pageSize;
+  }
+}
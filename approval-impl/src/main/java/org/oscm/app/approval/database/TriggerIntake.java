@@ -0,0 +1,216 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.oscm.app.approval.triggers.ApprovalNotificationService;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.oscm.notification.intf.NotificationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable intake of the trigger callbacks. The notification service stores the arguments of a
+ * callback in the intake queue and returns to the marketplace at once. The workers of the queue
+ * process the stored triggers like a direct callback and retry the failed ones.
+ */
+public class TriggerIntake implements TriggerIntakeMXBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(TriggerIntake.class);
+
+  static final String QUEUE = "intake";
+  static final String ENABLED = "intake.enabled";
+
+  static final String OBJECT_NAME = "org.oscm.app.approval:type=TriggerIntake";
+
+  private static final TriggerIntake INSTANCE = new TriggerIntake();
+
+  private final ApprovalConfig config;
+  private final NotificationService handler;
+  private final RetryQueue queue;
+
+  public TriggerIntake() {
+    this(
+        new DataAccessService(),
+        ApprovalConfig.getInstance(),
+        new ApprovalNotificationService(null));
+  }
+
+  /** @param handler - processes the stored triggers */
+  public TriggerIntake(DataAccessService das, ApprovalConfig config, NotificationService handler) {
+    this.config = config;
+    this.handler = handler;
+    this.queue = new RetryQueue(QUEUE, QUEUE, das, config, this::process);
+  }
+
+  public static TriggerIntake getInstance() {
+    return INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return config.getBoolean(ENABLED, false);
+  }
+
+  /** Starts the workers and registers the metrics, if the intake is enabled. */
+  public synchronized void start() {
+    if (isEnabled() && queue.start("approval-trigger-intake-")) {
+      registerMBean();
+    }
+  }
+
+  public synchronized void stop() {
+    if (queue.stop()) {
+      unregisterMBean();
+    }
+  }
+
+  /** Stores a trigger callback with its arguments and wakes up a worker of this node. */
+  public void enqueue(String trigger, Object... args) throws Exception {
+    byte[] payload = serialize(args);
+    try {
+      queue.enqueue(trigger, payload, 0);
+    } catch (Exception e) {
+      logger.error("Failed to store trigger " + trigger, e);
+      throw e;
+    }
+  }
+
+  /** Processes a stored trigger. */
+  void process(RetryQueue.Entry entry) throws Exception {
+    dispatch(entry.name, deserialize(entry.payload));
+  }
+
+  /** Invokes the callback of the given trigger on the handler. */
+  void dispatch(String trigger, Object[] args) throws Exception {
+    Method method = findCallback(trigger);
+    try {
+      method.invoke(handler, args);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+
+  static Method findCallback(String trigger) {
+    for (Method method : NotificationService.class.getMethods()) {
+      if (method.getName().equals(trigger)) {
+        return method;
+      }
+    }
+    throw new IllegalArgumentException("Unknown trigger " + trigger);
+  }
+
+  static byte[] serialize(Object[] args) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(args);
+    }
+    return bytes.toByteArray();
+  }
+
+  static Object[] deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new TriggerInputStream(new ByteArrayInputStream(payload))) {
+      return (Object[]) in.readObject();
+    }
+  }
+
+  @Override
+  public long getQueueDepth() {
+    return queue.count("QUEUED");
+  }
+
+  @Override
+  public long getFailedTriggers() {
+    return queue.count("FAILED");
+  }
+
+  @Override
+  public long getProcessedTriggers() {
+    return queue.getProcessed();
+  }
+
+  @Override
+  public long getRetriedTriggers() {
+    return queue.getRetried();
+  }
+
+  @Override
+  public long getLastLatencyMillis() {
+    return queue.getLastLatencyMillis();
+  }
+
+  @Override
+  public long getAverageLatencyMillis() {
+    return queue.getAverageLatencyMillis();
+  }
+
+  @Override
+  public long getMaxLatencyMillis() {
+    return queue.getMaxLatencyMillis();
+  }
+
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (Exception e) {
+      logger.warn("Failed to register the trigger intake metrics", e);
+    }
+  }
+
+  private void unregisterMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      logger.warn("Failed to unregister the trigger intake metrics", e);
+    }
+  }
+
+  /** Reads only the JDK and marketplace classes the callback arguments consist of. */
+  private static class TriggerInputStream extends ObjectInputStream {
+
+    TriggerInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      String name = desc.getName().replaceFirst("^\\[+L?", "");
+      if (name.length() > 1 && !name.startsWith("java.") && !name.startsWith("org.oscm.")) {
+        throw new InvalidClassException(desc.getName(), "Unexpected class in stored trigger");
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
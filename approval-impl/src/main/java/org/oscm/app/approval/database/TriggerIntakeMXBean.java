@@ -0,0 +1,33 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+/** Metrics of the trigger intake, registered as org.oscm.app.approval:type=TriggerIntake. */
+public interface TriggerIntakeMXBean {
+
+  /** Number of stored triggers waiting to be processed, -1 if it cannot be read. */
+  long getQueueDepth();
+
+  /** Number of stored triggers which failed after the last attempt, -1 if it cannot be read. */
+  long getFailedTriggers();
+
+  /** Number of triggers processed by this node. */
+  long getProcessedTriggers();
+
+  /** Number of failed attempts of this node which are retried. */
+  long getRetriedTriggers();
+
+  /** Milliseconds from the intake to the end of processing of the last trigger. */
+  long getLastLatencyMillis();
+
+  /** Average milliseconds from the intake to the end of processing. */
+  long getAverageLatencyMillis();
+
+  /** Maximum milliseconds from the intake to the end of processing. */
+  long getMaxLatencyMillis();
+}
@@ -6,40 +6,101 @@
 package org.oscm.app.approval.i18n;
 
 import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Handles localized messages for the application.
+ * Handles localized messages for the application. The locale is passed with
+ * each call, so that concurrent requests and triggers of users with different
+ * languages do not interfere. The bundles of all shipped locales are loaded
+ * once, parsed message formats are cached per locale and key.
  */
 public class Messages {
 
     private static final String BUNDLE_NAME = "i18n.messages";
 
-    private static ResourceBundle RESOURCE_BUNDLE = ResourceBundle
-            .getBundle(BUNDLE_NAME);
+    /** Locale for users without a locale or with a locale which is not shipped. */
+    public static final Locale DEFAULT_LOCALE = Locale.ENGLISH;
+
+    private static final Locale[] SHIPPED_LOCALES = { Locale.ENGLISH,
+            Locale.GERMAN, Locale.JAPANESE };
+
+    private static final Map<String, ResourceBundle> BUNDLES = loadBundles();
+
+    private static final ConcurrentMap<Locale, ConcurrentMap<String, MessageFormat>> FORMATS = new ConcurrentHashMap<>();
 
     private Messages() {
         // do not allow instantiation
     }
 
+    private static Map<String, ResourceBundle> loadBundles() {
+        Map<String, ResourceBundle> bundles = new HashMap<>();
+        ResourceBundle.Control control = ResourceBundle.Control
+                .getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+        for (Locale locale : SHIPPED_LOCALES) {
+            bundles.put(locale.getLanguage(),
+                    ResourceBundle.getBundle(BUNDLE_NAME, locale, control));
+        }
+        return Collections.unmodifiableMap(bundles);
+    }
+
     /**
-     * Sets the locale for the used message bag.
+     * Returns the shipped locale for the given language tag, e.g.
+     * <code>de</code> or <code>ja-JP</code>, or {@link #DEFAULT_LOCALE} if
+     * there is none.
      */
-    public static void setLocale(String locale) {
-        if (locale != null) {
-            Locale loc = new Locale(locale);
-            RESOURCE_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME, loc);
+    public static Locale getLocale(String locale) {
+        if (locale == null || locale.trim().isEmpty()) {
+            return DEFAULT_LOCALE;
         }
+        return getLocale(Locale.forLanguageTag(locale.trim().replace('_', '-')));
     }
 
     /**
-     * Gets a message by the given key
+     * Returns the shipped locale with the language of the given locale, or
+     * {@link #DEFAULT_LOCALE} if there is none.
+     */
+    public static Locale getLocale(Locale locale) {
+        if (isShipped(locale)) {
+            return new Locale(locale.getLanguage());
+        }
+        return DEFAULT_LOCALE;
+    }
+
+    /**
+     * Returns <code>true</code> if messages are shipped for the language of
+     * the given locale.
+     */
+    public static boolean isShipped(Locale locale) {
+        return locale != null && BUNDLES.containsKey(locale.getLanguage());
+    }
+
+    /**
+     * Gets a message by the given key in the default locale
      */
     public static String get(String key) {
+        return get(DEFAULT_LOCALE, key);
+    }
+
+    /**
+     * Gets a parameterized message by the given key in the default locale
+     */
+    public static String get(String key, Object... args) {
+        return get(DEFAULT_LOCALE, key, args);
+    }
+
+    /**
+     * Gets a message by the given key
+     */
+    public static String get(Locale locale, String key) {
         try {
-            return RESOURCE_BUNDLE.getString(key);
+            return getBundle(locale).getString(key);
         } catch (MissingResourceException e) {
             return '!' + key + '!';
         }
@@ -48,14 +109,31 @@ public class Messages {
     /**
      * Gets a parameterized message by the given key
      */
-    public static String get(String key, Object... args) {
-        return MessageFormat.format(get(key), args);
+    public static String get(Locale locale, String key, Object... args) {
+        Locale shipped = getLocale(locale);
+        ConcurrentMap<String, MessageFormat> formats = FORMATS
+                .computeIfAbsent(shipped, l -> new ConcurrentHashMap<>());
+        MessageFormat format = formats.get(key);
+        if (format == null) {
+            String pattern;
+            try {
+                pattern = getBundle(shipped).getString(key);
+            } catch (MissingResourceException e) {
+                return '!' + key + '!';
+            }
+            format = new MessageFormat(pattern, shipped);
+            MessageFormat existing = formats.putIfAbsent(key, format);
+            if (existing != null) {
+                format = existing;
+            }
+        }
+        // message formats are not thread-safe
+        synchronized (format) {
+            return format.format(args, new StringBuffer(), null).toString();
+        }
     }
 
-    /**
-     * Gets a parameterized message by the given key
-     */
-    public static String get(String key, long... args) {
-        return MessageFormat.format(get(key), args);
+    private static ResourceBundle getBundle(Locale locale) {
+        return BUNDLES.get(getLocale(locale).getLanguage());
     }
 }
@@ -0,0 +1,274 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.remote;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.oscm.app.approval.util.TtlCache;
+import org.oscm.vo.VOOrganization;
+import org.oscm.vo.VOSubscription;
+import org.oscm.vo.VOSubscriptionDetails;
+import org.oscm.vo.VOUser;
+import org.oscm.vo.VOUserDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the organizations, subscriptions and user details which the triggers look up in BES, so
+ * that a burst of triggers of one customer calls BES once per entity. Each kind of entity has its
+ * own TTL and size. Entries which are read after the refresh time are reloaded in the background
+ * while the cached value is still served, and concurrent misses of the same entity share one call.
+ * Subscription keys are resolved to IDs with an index of the subscriptions of each organization,
+ * which is built with one list call and kept up to date with the subscriptions read by the
+ * triggers.
+ */
+public class BesCache implements BesCacheMXBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(BesCache.class);
+
+  static final String OBJECT_NAME = "org.oscm.app.approval:type=BesCache";
+
+  static final String ORGANIZATION = "bes.cache.organization";
+  static final String SUBSCRIPTION = "bes.cache.subscription";
+  static final String USER = "bes.cache.user";
+  static final String SUBSCRIPTION_INDEX = "bes.cache.subscription.index";
+
+  private static final BesCache INSTANCE = new BesCache(ApprovalConfig.getInstance());
+
+  private final ExecutorService refresher =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            Thread t = new Thread(r, "approval-bes-cache-refresh");
+            t.setDaemon(true);
+            return t;
+          });
+
+  private final TtlCache<String, VOOrganization> organizations;
+  private final TtlCache<String, VOSubscriptionDetails> subscriptions;
+  private final TtlCache<String, VOUserDetails> users;
+  private final TtlCache<String, Map<Long, String>> subscriptionIndex;
+
+  public static BesCache getInstance() {
+    return INSTANCE;
+  }
+
+  BesCache(ApprovalConfig config) {
+    organizations = createCache(config, ORGANIZATION, 600000, 480000, 1000);
+    // subscriptions change with the triggers themselves, so they are kept only briefly
+    subscriptions = createCache(config, SUBSCRIPTION, 30000, 0, 5000);
+    users = createCache(config, USER, 300000, 240000, 5000);
+    subscriptionIndex = createCache(config, SUBSCRIPTION_INDEX, 3600000, 1800000, 1000);
+  }
+
+  private <V> TtlCache<String, V> createCache(
+      ApprovalConfig config, String prefix, long ttl, long refresh, int size) {
+    return new TtlCache<>(
+        config.getLong(prefix + ".ttl.millis", ttl),
+        config.getInt(prefix + ".size", size),
+        config.getLong(prefix + ".refresh.millis", refresh),
+        refresher);
+  }
+
+  public void start() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (Exception e) {
+      logger.warn("Failed to register the BES cache statistics", e);
+    }
+  }
+
+  public void stop() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      logger.warn("Failed to unregister the BES cache statistics", e);
+    }
+    clear();
+  }
+
+  /** Returns the cached organization or looks it up with the given call. */
+  public VOOrganization getOrganization(String orgId, Callable<VOOrganization> call)
+      throws Exception {
+    return organizations.get(orgId, k -> call.call());
+  }
+
+  /**
+   * Returns the cached subscription details or looks them up with the given call.
+   *
+   * @param subscription the ID or key of the subscription
+   */
+  public VOSubscriptionDetails getSubscription(
+      String customerOrgId, Object subscription, Callable<VOSubscriptionDetails> call)
+      throws Exception {
+    String key =
+        customerOrgId + (subscription instanceof String ? "/id/" : "/key/") + subscription;
+    return subscriptions.get(key, k -> indexed(customerOrgId, call.call()));
+  }
+
+  private VOSubscriptionDetails indexed(String customerOrgId, VOSubscriptionDetails details) {
+    if (details != null) {
+      indexSubscription(customerOrgId, details);
+    }
+    return details;
+  }
+
+  /**
+   * Returns the ID of the subscription with the given key from the index of the organization. The
+   * index is built with the given call, which lists all subscriptions of the organization.
+   *
+   * @return the ID, or <code>null</code> if the subscription is not in the index
+   */
+  public String getSubscriptionId(
+      String customerOrgId, long subscriptionKey, Callable<List<VOSubscription>> call)
+      throws Exception {
+    Map<Long, String> index = subscriptionIndex.get(customerOrgId, k -> index(call.call()));
+    return index.get(Long.valueOf(subscriptionKey));
+  }
+
+  private static Map<Long, String> index(List<VOSubscription> subscriptions) {
+    Map<Long, String> index = new ConcurrentHashMap<>();
+    if (subscriptions != null) {
+      for (VOSubscription subscription : subscriptions) {
+        if (subscription.getSubscriptionId() != null) {
+          index.put(Long.valueOf(subscription.getKey()), subscription.getSubscriptionId());
+        }
+      }
+    }
+    return index;
+  }
+
+  /** Adds the subscription to the index of the organization, if the index has been built. */
+  public void indexSubscription(String customerOrgId, VOSubscription subscription) {
+    Map<Long, String> index = subscriptionIndex.getIfPresent(customerOrgId);
+    if (index != null && subscription.getKey() != 0 && subscription.getSubscriptionId() != null) {
+      index.put(Long.valueOf(subscription.getKey()), subscription.getSubscriptionId());
+    }
+  }
+
+  /** Drops the subscription index of the organization, so that it is built again on next use. */
+  public void invalidateSubscriptionIndex(String customerOrgId) {
+    subscriptionIndex.invalidate(customerOrgId);
+  }
+
+  /** Returns the cached details of the user or looks them up with the given call. */
+  public VOUserDetails getUserDetails(VOUser user, Callable<VOUserDetails> call)
+      throws Exception {
+    String key =
+        user.getKey() != 0
+            ? user.getOrganizationId() + "/key/" + user.getKey()
+            : user.getOrganizationId() + "/id/" + user.getUserId();
+    return users.get(key, k -> call.call());
+  }
+
+  @Override
+  public void clear() {
+    organizations.clear();
+    subscriptions.clear();
+    users.clear();
+    subscriptionIndex.clear();
+  }
+
+  @Override
+  public long getOrganizationHits() {
+    return organizations.getHitCount();
+  }
+
+  @Override
+  public long getOrganizationMisses() {
+    return organizations.getMissCount();
+  }
+
+  @Override
+  public long getOrganizationRefreshes() {
+    return organizations.getRefreshCount();
+  }
+
+  @Override
+  public int getOrganizationSize() {
+    return organizations.size();
+  }
+
+  @Override
+  public long getSubscriptionHits() {
+    return subscriptions.getHitCount();
+  }
+
+  @Override
+  public long getSubscriptionMisses() {
+    return subscriptions.getMissCount();
+  }
+
+  @Override
+  public long getSubscriptionRefreshes() {
+    return subscriptions.getRefreshCount();
+  }
+
+  @Override
+  public int getSubscriptionSize() {
+    return subscriptions.size();
+  }
+
+  @Override
+  public long getSubscriptionIndexHits() {
+    return subscriptionIndex.getHitCount();
+  }
+
+  @Override
+  public long getSubscriptionIndexMisses() {
+    return subscriptionIndex.getMissCount();
+  }
+
+  @Override
+  public long getSubscriptionIndexRefreshes() {
+    return subscriptionIndex.getRefreshCount();
+  }
+
+  @Override
+  public int getSubscriptionIndexSize() {
+    return subscriptionIndex.size();
+  }
+
+  @Override
+  public long getUserHits() {
+    return users.getHitCount();
+  }
+
+  @Override
+  public long getUserMisses() {
+    return users.getMissCount();
+  }
+
+  @Override
+  public long getUserRefreshes() {
+    return users.getRefreshCount();
+  }
+
+  @Override
+  public int getUserSize() {
+    return users.size();
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.remote;
+
+/** Statistics of the BES lookup cache, registered as org.oscm.app.approval:type=BesCache. */
+public interface BesCacheMXBean {
+
+  long getOrganizationHits();
+
+  long getOrganizationMisses();
+
+  long getOrganizationRefreshes();
+
+  int getOrganizationSize();
+
+  long getSubscriptionHits();
+
+  long getSubscriptionMisses();
+
+  long getSubscriptionRefreshes();
+
+  int getSubscriptionSize();
+
+  long getSubscriptionIndexHits();
+
+  /** Number of subscription indexes which were built, each with one list call to BES. */
+  long getSubscriptionIndexMisses();
+
+  long getSubscriptionIndexRefreshes();
+
+  /** Number of organizations with a subscription index. */
+  int getSubscriptionIndexSize();
+
+  long getUserHits();
+
+  long getUserMisses();
+
+  long getUserRefreshes();
+
+  int getUserSize();
+
+  /** Drops all cached lookups, e.g. after data was changed directly in BES. */
+  void clear();
+}
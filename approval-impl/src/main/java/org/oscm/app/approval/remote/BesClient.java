@@ -10,6 +10,15 @@ package org.oscm.app.approval.remote;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jws.WebService;
 import javax.xml.namespace.QName;
@@ -18,6 +27,7 @@ import javax.xml.ws.BindingProvider;
 import javax.xml.ws.Service;
 import javax.xml.ws.handler.Handler;
 
+import org.oscm.app.approval.util.ApprovalConfig;
 import org.oscm.app.dataaccess.AppDataService;
 import org.oscm.app.dataaccess.Credentials;
 import org.oscm.app.v2_0.SOAPSecurityHandler;
@@ -29,6 +39,111 @@ public class BesClient {
 
   private static final Logger logger = LoggerFactory.getLogger(BesClient.class);
 
+  static final String LOOKUP_THREADS = "bes.lookup.threads";
+  static final String LOOKUP_TIMEOUT_MILLIS = "bes.lookup.timeout.millis";
+
+  // request timeouts of the JAX-WS reference implementation and of CXF
+  static final String CONNECT_TIMEOUT = "com.sun.xml.ws.connect.timeout";
+  static final String REQUEST_TIMEOUT = "com.sun.xml.ws.request.timeout";
+  static final String CONNECTION_TIMEOUT = "javax.xml.ws.client.connectionTimeout";
+  static final String RECEIVE_TIMEOUT = "javax.xml.ws.client.receiveTimeout";
+
+  private static ThreadPoolExecutor lookups;
+
+  /**
+   * Runs a BES lookup in the background, so that the independent lookups of a trigger run
+   * concurrently. If all lookup threads are busy and the queue is full, the lookup runs in the
+   * calling thread. The lookup must finish within the configured lookup timeout from now, so the
+   * lookups which a trigger starts together share one deadline, in whatever order they are awaited.
+   */
+  public static <R> CompletableFuture<R> lookup(Callable<R> call) {
+    return lookup(call, System.currentTimeMillis() + getLookupTimeout());
+  }
+
+  static <R> CompletableFuture<R> lookup(Callable<R> call, long deadline) {
+    Lookup<R> lookup = new Lookup<>(deadline);
+    getLookupExecutor()
+        .execute(
+            () -> {
+              if (lookup.isDone()) {
+                // cancelled while queued
+                return;
+              }
+              try {
+                lookup.complete(call.call());
+              } catch (Throwable t) {
+                lookup.completeExceptionally(t);
+              }
+            });
+    return lookup;
+  }
+
+  /**
+   * Waits for the result of a lookup until its deadline. Other futures are awaited at most for the
+   * configured lookup timeout. A lookup which is still running when the deadline passed is
+   * cancelled, its web service call ends with the request timeout of the port.
+   *
+   * @throws Exception the exception of the lookup, or a TimeoutException
+   */
+  public static <R> R await(CompletableFuture<R> lookup) throws Exception {
+    long timeout =
+        lookup instanceof Lookup
+            ? ((Lookup<R>) lookup).deadline - System.currentTimeMillis()
+            : getLookupTimeout();
+    try {
+      return lookup.get(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    } catch (TimeoutException e) {
+      lookup.cancel(false);
+      throw new TimeoutException(
+          "BES lookup did not finish within " + getLookupTimeout() + " ms");
+    }
+  }
+
+  static long getLookupTimeout() {
+    return ApprovalConfig.getInstance().getLong(LOOKUP_TIMEOUT_MILLIS, 60000);
+  }
+
+  /** Result of a lookup, with the time by which it must be finished. */
+  private static class Lookup<R> extends CompletableFuture<R> {
+    final long deadline;
+
+    Lookup(long deadline) {
+      this.deadline = deadline;
+    }
+  }
+
+  private static synchronized ThreadPoolExecutor getLookupExecutor() {
+    if (lookups == null) {
+      int threads = Math.max(1, ApprovalConfig.getInstance().getInt(LOOKUP_THREADS, 16));
+      AtomicInteger number = new AtomicInteger();
+      lookups =
+          new ThreadPoolExecutor(
+              threads,
+              threads,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(threads * 4),
+              r -> {
+                Thread t = new Thread(r, "approval-bes-lookup-" + number.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+              },
+              new ThreadPoolExecutor.CallerRunsPolicy());
+      lookups.allowCoreThreadTimeOut(true);
+    }
+    return lookups;
+  }
+
+  /**
+   * Runs the web service call as administrator of the given organization. The call runs in the
+   * calling thread, which is a lookup thread if it was started with {@link #lookup(Callable)}.
+   */
   public static <T> Object runWebServiceAsOrganizationAdmin(String orgId, WebServiceTask<T> task)
       throws Exception {
     AppDataService das = new AppDataService();
@@ -36,18 +151,14 @@ public class BesClient {
     String webServiceWsdl = das.loadBesWebServiceWsdl();
     task.setWsdlUrl(webServiceWsdl);
     task.setAuthentication(cred.forWebService());
-    Object[] rc = new Object[1];
-
-    task.start();
-
-    while (rc[0] == null) {
-      rc[0] = task.getResult();
-      Thread.yield();
+    task.run();
+    Object rc = task.getResult();
+    if (rc instanceof Exception) {
+      // the credentials may have been changed, they are read again for the next call
+      AppDataService.invalidate(orgId);
+      throw (Exception) rc;
     }
-    if (rc[0] instanceof Exception) {
-      throw (Exception) rc[0];
-    }
-    return rc[0];
+    return rc;
   }
 
   /**
@@ -85,6 +196,16 @@ public class BesClient {
 
     BindingProvider bindingProvider = (BindingProvider) port;
 
+    // a call of a lookup which was given up must not occupy the lookup thread for longer
+    Map<String, Object> requestContext = bindingProvider.getRequestContext();
+    if (requestContext != null) {
+      Integer timeout = Integer.valueOf((int) Math.min(Integer.MAX_VALUE, getLookupTimeout()));
+      requestContext.put(CONNECT_TIMEOUT, timeout);
+      requestContext.put(REQUEST_TIMEOUT, timeout);
+      requestContext.put(CONNECTION_TIMEOUT, timeout);
+      requestContext.put(RECEIVE_TIMEOUT, timeout);
+    }
+
     Binding binding = bindingProvider.getBinding();
     List<Handler> handlerChain = binding.getHandlerChain();
     if (handlerChain == null) {
@@ -0,0 +1,62 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.servlet;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.oscm.app.approval.database.AutoApprovalScheduler;
+import org.oscm.app.approval.database.ProcessDataCache;
+import org.oscm.app.approval.database.SchemaUpdater;
+import org.oscm.app.approval.database.TaskChangeFeed;
+import org.oscm.app.approval.database.TaskPartitionManager;
+import org.oscm.app.approval.database.TaskPurgeService;
+import org.oscm.app.approval.database.TriggerIntake;
+import org.oscm.app.approval.remote.BesCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Prepares the approval tool when the web application is started. */
+public class ApprovalContextListener implements ServletContextListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(ApprovalContextListener.class);
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    try {
+      createSchemaUpdater().update();
+    } catch (Exception e) {
+      // the code requires the current schema, so the deployment fails and is retried on the next
+      // start
+      logger.error("Approval database update failed", e);
+      throw new IllegalStateException("Approval database update failed", e);
+    }
+    TaskPartitionManager.getInstance().start();
+    TaskPurgeService.getInstance().start();
+    TaskChangeFeed.getInstance().start();
+    BesCache.getInstance().start();
+    ProcessDataCache.getInstance().start();
+    TriggerIntake.getInstance().start();
+    AutoApprovalScheduler.getInstance().start();
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    AutoApprovalScheduler.getInstance().stop();
+    TriggerIntake.getInstance().stop();
+    ProcessDataCache.getInstance().stop();
+    BesCache.getInstance().stop();
+    TaskChangeFeed.getInstance().stop();
+    TaskPurgeService.getInstance().stop();
+    TaskPartitionManager.getInstance().stop();
+  }
+
+  protected SchemaUpdater createSchemaUpdater() {
+    return new SchemaUpdater();
+  }
+}
@@ -10,7 +10,11 @@ package org.oscm.app.approval.servlet;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -18,6 +22,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.oscm.app.approval.auth.User;
+import org.oscm.app.approval.i18n.Messages;
 import org.oscm.app.approval.servlet.ServiceParams.MODE;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,7 +66,8 @@ public abstract class ServiceBase extends HttpServlet {
       String[] path = splitPath(req.getPathInfo());
 
       // Invoke service method
-      ServiceParams params = new ServiceParams(mode, path, req.getParameterMap());
+      ServiceParams params =
+          new ServiceParams(mode, path, req.getParameterMap(), getHeaders(req), getLocale(req));
       User approver = (User) req.getSession().getAttribute("user");
       result = doService(params, req.getReader(), approver);
 
@@ -87,6 +93,29 @@ public abstract class ServiceBase extends HttpServlet {
   public abstract ServiceResult doService(
       ServiceParams params, BufferedReader reader, User user) throws Exception;
 
+  /** Returns the first of the preferred locales of the client for which messages are shipped */
+  protected Locale getLocale(HttpServletRequest req) {
+    Enumeration<Locale> locales = req.getLocales();
+    while (locales != null && locales.hasMoreElements()) {
+      Locale locale = locales.nextElement();
+      if (Messages.isShipped(locale)) {
+        return locale;
+      }
+    }
+    return Messages.DEFAULT_LOCALE;
+  }
+
+  /** Returns the request headers with lower case names */
+  protected Map<String, String> getHeaders(HttpServletRequest req) {
+    Map<String, String> headers = new HashMap<>();
+    Enumeration<String> names = req.getHeaderNames();
+    while (names != null && names.hasMoreElements()) {
+      String name = names.nextElement();
+      headers.put(name.toLowerCase(Locale.ENGLISH), req.getHeader(name));
+    }
+    return headers;
+  }
+
   /** Split given path info into segments */
   protected String[] splitPath(String path) {
     List<String> list = new ArrayList<String>();
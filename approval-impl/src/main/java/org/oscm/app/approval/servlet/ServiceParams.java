@@ -6,8 +6,12 @@
 package org.oscm.app.approval.servlet;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
 import java.util.Map;
 
+import org.oscm.app.approval.i18n.Messages;
+
 /**
  * Defines the service parameters for the REST API call
  */
@@ -19,14 +23,42 @@ public class ServiceParams {
     private MODE mode;
     private String[] path;
     private Map<?, ?> parameters;
+    private Map<String, String> headers;
+    private Locale locale;
 
     /**
      * Constructor
      */
     public ServiceParams(MODE mode, String[] path, Map<?, ?> parameters) {
+        this(mode, path, parameters, Collections.<String, String> emptyMap());
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param headers
+     *            - the request headers with lower case names
+     */
+    public ServiceParams(MODE mode, String[] path, Map<?, ?> parameters,
+            Map<String, String> headers) {
+        this(mode, path, parameters, headers, Messages.DEFAULT_LOCALE);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param headers
+     *            - the request headers with lower case names
+     * @param locale
+     *            - the preferred locale of the client
+     */
+    public ServiceParams(MODE mode, String[] path, Map<?, ?> parameters,
+            Map<String, String> headers, Locale locale) {
         this.mode = mode;
         this.path = path;
         this.parameters = parameters;
+        this.headers = headers;
+        this.locale = Messages.getLocale(locale);
     }
 
     /**
@@ -68,6 +100,22 @@ public class ServiceParams {
         return "";
     }
 
+    /**
+     * Returns the specified request header or ""
+     */
+    public String getHeader(String name) {
+        String value = headers.get(name.toLowerCase(Locale.ENGLISH));
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Returns the shipped locale which matches the preferred locale of the
+     * client best
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
     /**
      * Returns a set with all parameter keys
      */
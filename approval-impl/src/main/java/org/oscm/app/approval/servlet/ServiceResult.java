@@ -6,14 +6,22 @@
 package org.oscm.app.approval.servlet;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.oscm.app.approval.util.JsonResult;
+import org.oscm.app.approval.util.JsonStreamer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
 /**
  * Reflects the result of a service call.
  */
@@ -27,6 +35,8 @@ public class ServiceResult {
     private int httpStatus = HttpServletResponse.SC_OK;
     private String htmlOutput;
     private JsonResult jsonResult;
+    private JsonStreamer jsonStreamer;
+    private Map<String, String> headers = new LinkedHashMap<>();
 
     public void setError(int httpStatusCode, Throwable t) {
         setError(httpStatusCode, t.getMessage());
@@ -36,6 +46,7 @@ public class ServiceResult {
         this.httpStatus = httpStatusCode;
 
         jsonResult = null;
+        jsonStreamer = null;
         JsonResult json = getJson();
         json.begin();
         json.add("status", text);
@@ -46,8 +57,24 @@ public class ServiceResult {
         this.httpStatus = httpStatusCode;
     }
 
+    public int getStatus() {
+        return httpStatus;
+    }
+
+    /**
+     * Sets a header which is sent with the result.
+     */
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
     public JsonResult getJson() {
         htmlOutput = null;
+        jsonStreamer = null;
         if (jsonResult == null) {
             jsonResult = new JsonResult();
         }
@@ -56,9 +83,24 @@ public class ServiceResult {
 
     public void setHTMLOutput(String out) {
         jsonResult = null;
+        jsonStreamer = null;
         htmlOutput = out;
     }
 
+    /**
+     * Sets a streamer which writes the JSON result directly to the response
+     * when the result is sent.
+     */
+    public void setJsonStream(JsonStreamer streamer) {
+        jsonResult = null;
+        htmlOutput = null;
+        jsonStreamer = streamer;
+    }
+
+    public JsonStreamer getJsonStream() {
+        return jsonStreamer;
+    }
+
     /**
      * Returns cached status information to caller.
      */
@@ -66,8 +108,13 @@ public class ServiceResult {
         logger.debug("ServiceResult.sendResult() HTTP response status code: "
                 + httpStatus);
         response.setStatus(httpStatus);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            response.setHeader(header.getKey(), header.getValue());
+        }
         try {
-            if (jsonResult != null) {
+            if (jsonStreamer != null) {
+                sendJsonStream(response);
+            } else if (jsonResult != null) {
                 sendJsonResult(response);
             } else if (htmlOutput != null) {
                 sendHtmlResult(response);
@@ -112,4 +159,38 @@ public class ServiceResult {
         }
     }
 
+    private void sendJsonStream(HttpServletResponse response)
+            throws IOException {
+
+        logger.debug("JSON-OUT: <stream>");
+        response.setContentType("application/json; charset=UTF-8");
+        response.setHeader("cache-control",
+                "private, max-age=0, no-cache, no-store");
+        response.setHeader("pragma", "no-cache");
+        response.setCharacterEncoding("UTF-8");
+
+        try (OutputStream out = response.getOutputStream()) {
+            writeJsonStream(out);
+        }
+    }
+
+    /**
+     * Runs the JSON streamer on the given output stream. Since the response
+     * is already committed at this point, a failure can only be logged and
+     * leaves an incomplete document.
+     */
+    public void writeJsonStream(OutputStream out) throws IOException {
+        try (JsonGenerator g = new JsonFactory().createGenerator(out,
+                JsonEncoding.UTF8)) {
+            // an interrupted stream must not be completed to a valid document
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            jsonStreamer.write(g);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("ServiceResult.writeJsonStream()", e);
+            throw new IOException(e);
+        }
+    }
+
 }
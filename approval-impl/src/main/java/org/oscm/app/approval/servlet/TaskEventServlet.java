@@ -0,0 +1,273 @@
+/**
+ * ******************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.servlet;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.oscm.app.approval.auth.User;
+import org.oscm.app.approval.database.ApproverRegistry;
+import org.oscm.app.approval.database.DataAccessService;
+import org.oscm.app.approval.database.TaskChangeFeed;
+import org.oscm.app.approval.database.TaskEvent;
+import org.oscm.app.approval.database.TaskEventHandler;
+import org.oscm.app.approval.json.JSONMapper;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the changes of the approver's tasks to the browser as server-sent events. The request is
+ * kept open asynchronously, so waiting browsers do not hold a request thread. Each change is sent
+ * as event <code>task</code> with the fields of the task list and the operation (INSERT, UPDATE or
+ * DELETE).
+ *
+ * <p>The events are written with non-blocking output: each stream queues its events and the
+ * container writes them whenever the connection can take more data, so a slow browser never blocks
+ * the thread passing the changes. A stream whose queue is full is closed, the browser reconnects
+ * and reads the task list again.
+ */
+@WebServlet(
+    name = "taskEventServlet",
+    urlPatterns = {"/task/events"},
+    asyncSupported = true)
+public class TaskEventServlet extends HttpServlet {
+  private static final long serialVersionUID = 2739471850274638153L;
+  private static final Logger logger = LoggerFactory.getLogger(TaskEventServlet.class);
+
+  /** The browser reconnects after this time, which bounds the life of a lost connection. */
+  static final long STREAM_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+  /** Comments sent in between keep proxies from closing idle streams. */
+  static final long HEARTBEAT_SECONDS = 25;
+
+  static final String QUEUE_SIZE = "events.queue.size";
+
+  private final transient Set<EventStream> streams = ConcurrentHashMap.newKeySet();
+  private transient ScheduledExecutorService heartbeat;
+  private int queueSize = 100;
+
+  @Override
+  public void init() {
+    queueSize = ApprovalConfig.getInstance().getInt(QUEUE_SIZE, 100);
+    heartbeat =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "approval-task-events-heartbeat");
+              t.setDaemon(true);
+              return t;
+            });
+    heartbeat.scheduleWithFixedDelay(
+        this::sendHeartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void destroy() {
+    if (heartbeat != null) {
+      heartbeat.shutdownNow();
+    }
+    for (EventStream stream : streams) {
+      stream.close();
+    }
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    User user = (User) req.getSession().getAttribute("user");
+    int approverKey;
+    try {
+      approverKey = getApproverRegistry().getApproverKey(user.getOrgId(), createDataAccessService());
+    } catch (Exception e) {
+      logger.error("Failed to determine the approver of organization " + user.getOrgId(), e);
+      resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      return;
+    }
+
+    resp.setContentType("text/event-stream");
+    resp.setCharacterEncoding("UTF-8");
+    resp.setHeader("Cache-Control", "no-cache");
+    // keeps nginx and similar proxies from buffering the stream
+    resp.setHeader("X-Accel-Buffering", "no");
+
+    AsyncContext async = req.startAsync();
+    async.setTimeout(STREAM_TIMEOUT_MILLIS);
+    ServletOutputStream out = resp.getOutputStream();
+    EventStream stream = new EventStream(approverKey, async, out, queueSize);
+    async.addListener(stream);
+    streams.add(stream);
+    // lets the browser know the stream is open, written as soon as the output is ready
+    stream.send(": connected\n\n");
+    out.setWriteListener(stream);
+    getTaskChangeFeed().subscribe(approverKey, stream);
+  }
+
+  void sendHeartbeat() {
+    for (EventStream stream : streams) {
+      try {
+        stream.send(": heartbeat\n\n");
+      } catch (IOException e) {
+        // already closed
+      }
+    }
+  }
+
+  int getStreamCount() {
+    return streams.size();
+  }
+
+  protected TaskChangeFeed getTaskChangeFeed() {
+    return TaskChangeFeed.getInstance();
+  }
+
+  protected ApproverRegistry getApproverRegistry() {
+    return ApproverRegistry.getInstance();
+  }
+
+  protected DataAccessService createDataAccessService() {
+    return new DataAccessService();
+  }
+
+  /**
+   * The open event stream of one browser. Events are queued and written by the container when the
+   * output is ready, writing never blocks.
+   */
+  class EventStream implements TaskEventHandler, AsyncListener, WriteListener {
+
+    private final ObjectWriter eventWriter = JSONMapper.writerFor(TaskEvent.class);
+    private final int approverKey;
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final BlockingQueue<byte[]> queue;
+    private boolean listening;
+    private boolean closed;
+
+    EventStream(int approverKey, AsyncContext async, ServletOutputStream out, int queueSize) {
+      this.approverKey = approverKey;
+      this.async = async;
+      this.out = out;
+      this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    @Override
+    public void handle(TaskEvent event) throws IOException {
+      send("event: task\ndata: " + eventWriter.writeValueAsString(event) + "\n\n");
+    }
+
+    /**
+     * Queues the message and writes as much of the queue as the connection takes without blocking.
+     *
+     * @throws IOException if the stream is closed or was closed because its queue is full
+     */
+    void send(String message) throws IOException {
+      synchronized (this) {
+        if (closed) {
+          throw new IOException("Event stream closed");
+        }
+      }
+      if (!queue.offer(message.getBytes(StandardCharsets.UTF_8))) {
+        logger.warn("Closing event stream of approver " + approverKey + ", the browser falls behind");
+        close();
+        throw new IOException("Event stream overflow");
+      }
+      try {
+        drain();
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    /** Writes the queued messages while the output is ready, the container calls back otherwise. */
+    private synchronized void drain() throws IOException {
+      // the output must not be checked before the container has taken the write listener
+      while (listening && !closed && out.isReady()) {
+        byte[] message = queue.poll();
+        if (message == null) {
+          return;
+        }
+        out.write(message);
+        if (out.isReady()) {
+          out.flush();
+        }
+      }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+      synchronized (this) {
+        listening = true;
+      }
+      try {
+        drain();
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    void close() {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+      }
+      queue.clear();
+      streams.remove(this);
+      getTaskChangeFeed().unsubscribe(approverKey, this);
+      try {
+        async.complete();
+      } catch (IllegalStateException e) {
+        // already completed by the container
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      logger.debug("Event stream of approver " + approverKey + " failed", t);
+      close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      // not restarted
+    }
+  }
+}
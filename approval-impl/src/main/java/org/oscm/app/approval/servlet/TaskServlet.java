@@ -7,15 +7,27 @@
  */
 package org.oscm.app.approval.servlet;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.oscm.app.approval.auth.User;
+import org.oscm.app.approval.database.ApproverRegistry;
 import org.oscm.app.approval.database.DataAccessService;
 import org.oscm.app.approval.database.Task;
+import org.oscm.app.approval.database.TaskCursor;
+import org.oscm.app.approval.database.TaskFacets;
+import org.oscm.app.approval.database.TaskListQuery;
+import org.oscm.app.approval.database.TaskProjection;
+import org.oscm.app.approval.database.TaskPurgeService;
+import org.oscm.app.approval.database.TaskSearchQuery;
 import org.oscm.app.approval.i18n.Messages;
+import org.oscm.app.approval.json.JSONFieldExtractor;
+import org.oscm.app.approval.json.JSONMapper;
 import org.oscm.app.approval.remote.BesClient;
 import org.oscm.app.approval.remote.WebServiceTask;
 import org.oscm.app.approval.servlet.ServiceParams.MODE;
+import org.oscm.app.approval.util.ApprovalConfig;
 import org.oscm.app.approval.util.JsonResult;
+import org.oscm.app.approval.util.TtlCache;
 import org.oscm.app.connector.framework.IProcess;
 import org.oscm.app.connector.framework.ProcessException;
 import org.oscm.app.dataaccess.AppDataService;
@@ -32,10 +44,21 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Servlet for managing approval tasks. Used by approvers that login to a web application to manage
@@ -46,26 +69,47 @@ public class TaskServlet extends ServiceBase {
   private static final long serialVersionUID = -52842913766597556L;
   private static final Logger logger = LoggerFactory.getLogger(TaskServlet.class);
 
+  /** Time a delete request waits for the purge before it is answered as accepted. */
+  static final long DELETE_WAIT_MILLIS = 2000;
+
+  static final String BULK_RESULT_OK = "OK";
+  static final String BULK_RESULT_NOT_FOUND = "NOT_FOUND";
+  static final String BULK_RESULT_FAILED = "FAILED";
+  static final String BULK_RESULT_TIMEOUT = "TIMEOUT";
+
+  /** Maximum number of BES lookup threads notifying the triggers of one bulk request. */
+  static final String BULK_NOTIFY_LANES = "bulk.notify.threads";
+
+  static final String SUMMARY_CACHE_TTL = "summary.cache.ttl.millis";
+  static final int SUMMARY_CACHE_SIZE = 10000;
+
+  /** Task counts per status of the approvers, shared by all requests of this node. */
+  private static final TtlCache<Integer, Map<Integer, Long>> summaryCache =
+      new TtlCache<>(
+          ApprovalConfig.getInstance().getLong(SUMMARY_CACHE_TTL, 5000), SUMMARY_CACHE_SIZE);
+
   @Override
   public ServiceResult doService(ServiceParams params, BufferedReader reader, User user)
       throws Exception {
     ServiceResult result = new ServiceResult();
     DataAccessService das = createDataAccessService();
-    if (!das.doesApproverExistsInDB(user.getOrgId())) {
-      das.createApprover(user.getOrgId());
-    }
+    int approverKey = getApproverRegistry().getApproverKey(user.getOrgId(), das);
 
     if (params.getMode() == MODE.GET) {
-      executeGet(params, user.getOrgId(), result, das);
+      executeGet(params, user.getOrgId(), approverKey, result, das);
     } else if (params.getMode() == MODE.POST) {
-      executePost(params, reader, result, das);
+      executePost(params, reader, approverKey, result, das);
     }
 
     return result;
   }
 
   private void executePost(
-      ServiceParams params, BufferedReader reader, ServiceResult result, DataAccessService das)
+      ServiceParams params,
+      BufferedReader reader,
+      int approverKey,
+      ServiceResult result,
+      DataAccessService das)
       throws Exception {
     StringBuilder sb = new StringBuilder();
     String line;
@@ -83,33 +127,63 @@ public class TaskServlet extends ServiceBase {
     logger.debug("command: " + command + " HTTP POST request content: " + content);
 
     // Convert json input into Map
-    ObjectMapper mapper = new ObjectMapper();
+    ObjectMapper mapper = JSONMapper.getMapper();
     Map<String, String> resultData = new HashMap<>();
 
-    if (!"start_process".equals(command)) {
+    boolean bulk = "bulk_approve".equals(command) || "bulk_reject".equals(command);
+    if (!"start_process".equals(command) && !bulk) {
       resultData = createResultData(content, mapper);
     }
 
     if ("save".equals(command)) {
       Task task = createTask();
       task.tkey = resultData.get("tkey");
+      task.created = resultData.get("created");
       task.comment = resultData.get("comment");
       das.saveTask(task);
     } else if ("approve".equals(command)) {
       String tkey = resultData.get("tkey");
-      das.updateTaskStatus(tkey, resultData.get("comment"), Task.ApprovalStatus.APPROVED);
-      notifyCTMGTrigger(tkey, true);
+      String created = resultData.get("created");
+      if (!das.updateTaskStatus(
+          tkey, created, resultData.get("comment"), Task.ApprovalStatus.APPROVED)) {
+        result.setError(
+            HttpServletResponse.SC_CONFLICT,
+            Messages.get(params.getLocale(), "error.task.conflict", tkey));
+        return;
+      }
+      getSummaryCache().invalidate(Integer.valueOf(approverKey));
+      notifyCTMGTrigger(tkey, created, true);
     } else if ("reject".equals(command)) {
       String tkey = resultData.get("tkey");
-      das.updateTaskStatus(tkey, resultData.get("comment"), Task.ApprovalStatus.REJECTED);
-      notifyCTMGTrigger(tkey, false);
+      String created = resultData.get("created");
+      if (!das.updateTaskStatus(
+          tkey, created, resultData.get("comment"), Task.ApprovalStatus.REJECTED)) {
+        result.setError(
+            HttpServletResponse.SC_CONFLICT,
+            Messages.get(params.getLocale(), "error.task.conflict", tkey));
+        return;
+      }
+      getSummaryCache().invalidate(Integer.valueOf(approverKey));
+      notifyCTMGTrigger(tkey, created, false);
+    } else if (bulk) {
+      List<Task> tasks;
+      try {
+        tasks = createBulkTasks(content, mapper);
+      } catch (IOException | NumberFormatException e) {
+        logger.error("Invalid bulk request content", e);
+        result.setError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+      executeBulk(tasks, "bulk_approve".equals(command), approverKey, result, das);
     } else if ("start_process".equals(command)) {
       Task task = createTask();
       task.description = content;
-      String mailSubject = Messages.get("mail_approval.subject");
+      // the mail goes to the requesting user
+      Locale locale = Messages.getLocale(JSONFieldExtractor.extract(content, "ctmg_user.locale"));
+      String mailSubject = Messages.get(locale, "mail_approval.subject");
       AppDataService appDas = createAppDataService();
       String webuiLink = appDas.getApprovalUrl();
-      String mailBody = Messages.get("mail_approval.text", webuiLink);
+      String mailBody = Messages.get(locale, "mail_approval.text", webuiLink);
 
       Map<String, String> data = task.getTriggerProcessData();
       data.put("mail.subject", mailSubject);
@@ -119,23 +193,192 @@ public class TaskServlet extends ServiceBase {
         excecuteProcess(process, data);
       } catch (Exception e) {
         logger.error("Process execution failed for process " + process, e);
-        String errmsg = Messages.get("error.process.execution", process);
+        String errmsg = Messages.get(params.getLocale(), "error.process.execution", process);
 
         result.setError(HttpServletResponse.SC_BAD_REQUEST, errmsg);
       }
     } else if ("grant_clearance".equals(command)) {
       String tkey = resultData.get("tkey");
-      Task task = das.getTask(tkey);
+      Task task = das.getTask(tkey, resultData.get("created"), TaskProjection.PAYLOAD, true);
+      // only the request which changes the status continues the provisioning
+      if (task.tkey == null
+          || !das.compareAndSetTaskStatus(
+              task, task.comment, Task.ApprovalStatus.CLEARANCE_GRANTED)) {
+        result.setError(
+            HttpServletResponse.SC_CONFLICT,
+            Messages.get(params.getLocale(), "error.task.conflict", tkey));
+        return;
+      }
+      getSummaryCache().invalidate(Integer.valueOf(approverKey));
       Map<String, String> data = task.getTriggerProcessData();
-      excecuteProcess("ClearanceGranted.xml", data);
+      try {
+        excecuteProcess("ClearanceGranted.xml", data);
+      } catch (Exception e) {
+        logger.error("Process execution failed for granted clearance of task " + tkey, e);
+        resetClearance(task, approverKey, das);
+        throw e;
+      }
     } else {
       logger.error("Unknown command: " + command);
-      String errmsg = Messages.get("error.unknown.operation", command);
+      String errmsg = Messages.get(params.getLocale(), "error.unknown.operation", command);
 
       result.setError(HttpServletResponse.SC_BAD_REQUEST, errmsg);
     }
   }
 
+  /**
+   * Sets a task whose clearance was granted back to waiting for clearance, so the clearance can be
+   * granted again. Only resets the status if it was not changed since it was granted.
+   *
+   * @param task - the task as read before the clearance was granted
+   */
+  void resetClearance(Task task, int approverKey, DataAccessService das) throws Exception {
+    Task granted = new Task();
+    granted.tkey = task.tkey;
+    granted.created = task.created;
+    granted.status_tkey = Integer.toString(Task.ApprovalStatus.CLEARANCE_GRANTED.tkey);
+    granted.version = task.version + 1;
+    if (das.compareAndSetTaskStatus(
+        granted, task.comment, Task.ApprovalStatus.WAITING_FOR_CLEARANCE)) {
+      getSummaryCache().invalidate(Integer.valueOf(approverKey));
+      logger.info("Clearance of task " + task.tkey + " was reset");
+    } else {
+      logger.error("Clearance of task " + task.tkey + " could not be reset");
+    }
+  }
+
+  /**
+   * Reads the tasks of a bulk request given as <code>[{"tkey":"1","created":"...","comment":"..."}]
+   * </code>, the creation date is optional.
+   */
+  List<Task> createBulkTasks(String content, ObjectMapper mapper) throws IOException {
+    List<Map<String, String>> entries =
+        mapper.readValue(
+            content,
+            mapper
+                .getTypeFactory()
+                .constructCollectionType(
+                    List.class,
+                    mapper.getTypeFactory().constructMapType(Map.class, String.class, String.class)));
+    Map<String, Task> tasks = new LinkedHashMap<>();
+    for (Map<String, String> entry : entries) {
+      Task task = new Task();
+      task.tkey = Integer.toString(Integer.parseInt(entry.get("tkey")));
+      task.created = entry.get("created");
+      task.comment = entry.get("comment");
+      tasks.putIfAbsent(task.tkey, task);
+    }
+    return new ArrayList<>(tasks.values());
+  }
+
+  /**
+   * Approves or rejects all given tasks with one database batch and notifies the CT-MG triggers of
+   * the changed tasks in parallel. The result holds the outcome for each task.
+   */
+  void executeBulk(
+      List<Task> tasks,
+      boolean approve,
+      int approverKey,
+      ServiceResult result,
+      DataAccessService das)
+      throws Exception {
+    Task.ApprovalStatus status =
+        approve ? Task.ApprovalStatus.APPROVED : Task.ApprovalStatus.REJECTED;
+    int[] counts = das.batchUpdateTaskStatus(tasks, approverKey, status);
+    getSummaryCache().invalidate(Integer.valueOf(approverKey));
+
+    Map<String, String> outcome = new HashMap<>();
+    Map<String, String> errors = new HashMap<>();
+    List<Task> changed = new ArrayList<>();
+    for (int i = 0; i < tasks.size(); i++) {
+      Task task = tasks.get(i);
+      if (counts[i] == 0) {
+        outcome.put(task.tkey, BULK_RESULT_NOT_FOUND);
+      } else {
+        changed.add(task);
+      }
+    }
+
+    // the notifications run in a few lanes on the shared BES lookup threads, so that a large bulk
+    // request leaves lookup threads for the triggers, and the lanes share one deadline
+    Map<String, Task> triggerTasks = das.getTriggerTasks(changed);
+    List<Task> pending = new ArrayList<>();
+    for (Task task : tasks) {
+      Task triggerTask = triggerTasks.get(task.tkey);
+      if (triggerTask != null && !outcome.containsKey(task.tkey)) {
+        triggerTask.comment = task.comment;
+        pending.add(task);
+      } else {
+        outcome.putIfAbsent(task.tkey, BULK_RESULT_NOT_FOUND);
+      }
+    }
+    int laneCount =
+        Math.min(
+            pending.size(), Math.max(1, ApprovalConfig.getInstance().getInt(BULK_NOTIFY_LANES, 4)));
+    Map<String, Boolean> notified = new ConcurrentHashMap<>();
+    Map<String, Exception> failures = new ConcurrentHashMap<>();
+    AtomicBoolean givenUp = new AtomicBoolean();
+    List<CompletableFuture<Object>> lanes = new ArrayList<>();
+    for (int lane = 0; lane < laneCount; lane++) {
+      List<Task> laneTasks = new ArrayList<>();
+      for (int i = lane; i < pending.size(); i += laneCount) {
+        laneTasks.add(pending.get(i));
+      }
+      lanes.add(
+          BesClient.lookup(
+              () -> {
+                for (Task task : laneTasks) {
+                  if (givenUp.get()) {
+                    break;
+                  }
+                  try {
+                    notifyCTMGTrigger(triggerTasks.get(task.tkey), approve);
+                    notified.put(task.tkey, Boolean.TRUE);
+                  } catch (Exception e) {
+                    failures.put(task.tkey, e);
+                  }
+                }
+                return null;
+              }));
+    }
+    String timeout = null;
+    for (CompletableFuture<Object> lane : lanes) {
+      try {
+        BesClient.await(lane);
+      } catch (TimeoutException e) {
+        givenUp.set(true);
+        timeout = e.getMessage();
+      }
+    }
+    for (Task task : pending) {
+      Exception failure = failures.get(task.tkey);
+      if (notified.containsKey(task.tkey)) {
+        outcome.put(task.tkey, BULK_RESULT_OK);
+      } else if (failure != null) {
+        logger.error("Failed to notify CT-MG trigger of task " + task.tkey, failure);
+        outcome.put(task.tkey, BULK_RESULT_FAILED);
+        errors.put(task.tkey, failure.getMessage());
+      } else {
+        logger.error("Notification of CT-MG trigger of task " + task.tkey + " timed out");
+        outcome.put(task.tkey, BULK_RESULT_TIMEOUT);
+        errors.put(task.tkey, timeout);
+      }
+    }
+
+    JsonResult json = result.getJson();
+    json.beginArray();
+    for (Task task : tasks) {
+      json.begin();
+      json.add("tkey", task.tkey);
+      json.add("result", outcome.get(task.tkey));
+      if (errors.containsKey(task.tkey)) {
+        json.add("message", errors.get(task.tkey));
+      }
+      json.end();
+    }
+    json.endArray();
+  }
+
   protected Task createTask() {
     return new Task();
   }
@@ -151,61 +394,80 @@ public class TaskServlet extends ServiceBase {
   }
 
   private void executeGet(
-      ServiceParams params, String approverOrg, ServiceResult result, DataAccessService das)
+      ServiceParams params,
+      String approverOrg,
+      int approverKey,
+      ServiceResult result,
+      DataAccessService das)
       throws Exception {
     String command = params.getParameter("cmd");
     if ("tasklist".equals(command)) {
-      boolean show_notifications = Boolean.parseBoolean(params.getParameter("show_notifications"));
-      boolean show_finished_tasks =
-          Boolean.parseBoolean(params.getParameter("show_finished_tasks"));
-      boolean show_open_tasks = Boolean.parseBoolean(params.getParameter("show_open_tasks"));
-      boolean show_granted_clearances =
+      TaskListQuery query = new TaskListQuery();
+      query.orgId = approverOrg;
+      query.approverKey = approverKey;
+      query.locale = params.getLocale();
+      query.show_notifications = Boolean.parseBoolean(params.getParameter("show_notifications"));
+      query.show_finished_tasks = Boolean.parseBoolean(params.getParameter("show_finished_tasks"));
+      query.show_open_tasks = Boolean.parseBoolean(params.getParameter("show_open_tasks"));
+      query.show_granted_clearances =
           Boolean.parseBoolean(params.getParameter("show_granted_clearances"));
-      boolean show_open_clearances =
+      query.show_open_clearances =
           Boolean.parseBoolean(params.getParameter("show_open_clearances"));
+      String sinceDays = params.getParameter("since_days");
+      if (!sinceDays.isEmpty()) {
+        try {
+          long days = Long.parseLong(sinceDays);
+          query.createdSince =
+              new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+        } catch (NumberFormatException e) {
+          logger.error("Invalid task list period", e);
+          result.setError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+          return;
+        }
+      }
+      String pageSize = params.getParameter("page_size");
+      if (!pageSize.isEmpty()) {
+        try {
+          int size = Integer.parseInt(pageSize);
+          query.setPageSize(size > 0 ? size : TaskListQuery.DEFAULT_PAGE_SIZE);
+          query.cursor = TaskCursor.decode(params.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+          logger.error("Invalid task list page request", e);
+          result.setError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+          return;
+        }
+      }
 
-      List<Task> tasklist =
-          das.getTaskList(
-              approverOrg,
-              show_notifications,
-              show_finished_tasks,
-              show_open_tasks,
-              show_granted_clearances,
-              show_open_clearances);
-
-      logger.debug("command: " + command + " #tasks: " + tasklist.size());
-      JsonResult json = result.getJson();
-      json.beginArray();
-      for (Task task : tasklist) {
-        json.begin();
-        json.add("tkey", task.tkey);
-        json.add("triggername", task.triggername);
-        json.add("orgid", task.orgid);
-        json.add("orgname", task.orgname);
-        json.add("requestinguser", task.requestinguser);
-        json.add("status", task.status);
-        json.add("status_tkey", task.status_tkey);
-        json.end();
+      logger.debug("command: " + command + " page_size: " + query.pageSize);
+      result.setJsonStream(g -> writeTaskList(g, query, das));
+    } else if ("search".equals(command)) {
+      TaskSearchQuery query;
+      try {
+        query = createSearchQuery(params, approverKey);
+      } catch (IllegalArgumentException | DateTimeException e) {
+        logger.error("Invalid task search request", e);
+        result.setError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
       }
-      json.endArray();
-    } else if ("open".equals(command)) {
-      String tkey = params.getParameter("tkey");
-      logger.debug("command: " + command + " tkey: " + tkey);
-      Task task = das.getTask(tkey);
-      JsonResult json = result.getJson();
-      json.begin();
-      json.add("comment", task.comment);
-      json.add("created", task.created);
-      json.add("orgid", task.orgid);
-      json.add("orgname", task.orgname);
-      json.add("requestinguser", task.requestinguser);
-      json.add("description", task.description);
-      json.add("status", task.status);
-      json.end();
-    } else if ("details".equals(command)) {
+      logger.debug("command: " + command + " text: " + query.text);
+      result.setJsonStream(g -> writeSearchResult(g, query, das));
+    } else if ("open".equals(command) || "details".equals(command)) {
       String tkey = params.getParameter("tkey");
-      logger.debug("command: " + command + " tkey: " + tkey);
-      Task task = das.getTask(tkey);
+      String created = params.getParameter("created");
+      logger.debug("command: " + command + " tkey: " + tkey + " created: " + created);
+      String ifNoneMatch = params.getHeader("If-None-Match");
+      if (!ifNoneMatch.isEmpty()) {
+        Task header = das.getTask(tkey, created, TaskProjection.HEADER, false);
+        if (ifNoneMatch.equals(header.getETag())) {
+          result.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+          result.setHeader("ETag", header.getETag());
+          return;
+        }
+      }
+      Task task = das.getTask(tkey, created, TaskProjection.PAYLOAD, false);
+      if (task.getETag() != null) {
+        result.setHeader("ETag", task.getETag());
+      }
       JsonResult json = result.getJson();
       json.begin();
       json.add("comment", task.comment);
@@ -224,16 +486,183 @@ public class TaskServlet extends ServiceBase {
           Boolean.parseBoolean(params.getParameter("delete_finished_tasks"));
       boolean delete_granted_clearances =
           Boolean.parseBoolean(params.getParameter("delete_granted_clearances"));
-      das.deleteApprovedTasks(
-          approverOrg, delete_notifications, delete_finished_tasks, delete_granted_clearances);
+      List<Integer> statusKeys = new ArrayList<>();
+      if (delete_notifications) {
+        statusKeys.add(Integer.valueOf(Task.ApprovalStatus.NOTIFICATION.tkey));
+      }
+      if (delete_finished_tasks) {
+        statusKeys.add(Integer.valueOf(Task.ApprovalStatus.APPROVED.tkey));
+        statusKeys.add(Integer.valueOf(Task.ApprovalStatus.REJECTED.tkey));
+      }
+      if (delete_granted_clearances) {
+        statusKeys.add(Integer.valueOf(Task.ApprovalStatus.CLEARANCE_GRANTED.tkey));
+      }
+      Future<Integer> purge = getTaskPurgeService().enqueue(approverKey, statusKeys);
+      try {
+        purge.get(DELETE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // the tasks are deleted in the background
+        result.setStatus(HttpServletResponse.SC_ACCEPTED);
+      }
+      getSummaryCache().invalidate(Integer.valueOf(approverKey));
+    } else if ("summary".equals(command)) {
+      logger.debug("command: " + command);
+      Map<Integer, Long> counts =
+          getSummaryCache().get(Integer.valueOf(approverKey), key -> das.getTaskCounts(key));
+      JsonResult json = result.getJson();
+      json.begin();
+      json.add("open_tasks", count(counts, Task.ApprovalStatus.WAITING_FOR_APPROVAL));
+      json.add("open_clearances", count(counts, Task.ApprovalStatus.WAITING_FOR_CLEARANCE));
+      json.add("notifications", count(counts, Task.ApprovalStatus.NOTIFICATION));
+      json.add(
+          "finished_tasks",
+          count(counts, Task.ApprovalStatus.APPROVED) + count(counts, Task.ApprovalStatus.REJECTED));
+      json.add("granted_clearances", count(counts, Task.ApprovalStatus.CLEARANCE_GRANTED));
+      json.end();
     } else {
       logger.error("Unknown command: " + command);
-      String errmsg = Messages.get("error.unknown.operation", command);
+      String errmsg = Messages.get(params.getLocale(), "error.unknown.operation", command);
 
       result.setError(HttpServletResponse.SC_BAD_REQUEST, errmsg);
     }
   }
 
+  /**
+   * Reads the search request. The creation period is given by the dates <code>created_from</code>
+   * and <code>created_to</code> (both inclusive) in ISO format, the status filter as comma
+   * separated status keys.
+   */
+  TaskSearchQuery createSearchQuery(ServiceParams params, int approverKey) {
+    TaskSearchQuery query = new TaskSearchQuery();
+    query.approverKey = approverKey;
+    query.locale = params.getLocale();
+    query.text = params.getParameter("q");
+    for (String status : params.getParameter("status").split(",")) {
+      if (!status.trim().isEmpty()) {
+        query.statusKeys.add(Integer.valueOf(status.trim()));
+      }
+    }
+    String trigger = params.getParameter("triggername");
+    if (!trigger.isEmpty()) {
+      query.triggerName = trigger;
+    }
+    String from = params.getParameter("created_from");
+    if (!from.isEmpty()) {
+      query.createdFrom = Timestamp.valueOf(LocalDate.parse(from).atStartOfDay());
+    }
+    String to = params.getParameter("created_to");
+    if (!to.isEmpty()) {
+      query.createdTo = Timestamp.valueOf(LocalDate.parse(to).plusDays(1).atStartOfDay());
+    }
+    String pageSize = params.getParameter("page_size");
+    if (!pageSize.isEmpty()) {
+      query.setPageSize(Integer.parseInt(pageSize));
+    }
+    String page = params.getParameter("page");
+    if (!page.isEmpty()) {
+      query.setPage(Integer.parseInt(page));
+    }
+    return query;
+  }
+
+  /**
+   * Writes the tasks of the requested search result page together with the facet counts, e.g.
+   * <code>{"tasks":[...],"more":false,"total":2,"facets":{"status":{"1":2},"triggername":{...}}}
+   * </code>.
+   */
+  void writeSearchResult(JsonGenerator g, TaskSearchQuery query, DataAccessService das)
+      throws Exception {
+    g.writeStartObject();
+    g.writeArrayFieldStart("tasks");
+    boolean more =
+        das.searchTasks(
+            query,
+            task -> {
+              g.writeStartObject();
+              g.writeStringField("tkey", task.tkey);
+              g.writeStringField("triggername", task.triggername);
+              g.writeStringField("orgid", task.orgid);
+              g.writeStringField("orgname", task.orgname);
+              g.writeStringField("requestinguser", task.requestinguser);
+              g.writeStringField("created", task.created);
+              g.writeStringField("status", task.status);
+              g.writeStringField("status_tkey", task.status_tkey);
+              g.writeEndObject();
+            });
+    g.writeEndArray();
+    g.writeBooleanField("more", more);
+
+    TaskFacets facets = das.getSearchFacets(query);
+    g.writeNumberField("total", facets.getTotal());
+    g.writeObjectFieldStart("facets");
+    g.writeObjectFieldStart("status");
+    for (Map.Entry<Integer, Long> entry : facets.status.entrySet()) {
+      g.writeNumberField(entry.getKey().toString(), entry.getValue().longValue());
+    }
+    g.writeEndObject();
+    g.writeObjectFieldStart("triggername");
+    for (Map.Entry<String, Long> entry : facets.triggername.entrySet()) {
+      g.writeNumberField(String.valueOf(entry.getKey()), entry.getValue().longValue());
+    }
+    g.writeEndObject();
+    g.writeEndObject();
+    g.writeEndObject();
+  }
+
+  private static long count(Map<Integer, Long> counts, Task.ApprovalStatus status) {
+    Long n = counts.get(Integer.valueOf(status.tkey));
+    return n == null ? 0 : n.longValue();
+  }
+
+  static TtlCache<Integer, Map<Integer, Long>> getSummaryCache() {
+    return summaryCache;
+  }
+
+  /**
+   * Writes the task list while it is read from the database. Without paging the result is a plain
+   * array of all tasks, with paging it is an object holding the tasks of the page and the cursor
+   * for the next page, if there is one.
+   */
+  void writeTaskList(JsonGenerator g, TaskListQuery query, DataAccessService das)
+      throws Exception {
+    if (query.isPaged()) {
+      g.writeStartObject();
+      g.writeArrayFieldStart("tasks");
+    } else {
+      g.writeStartArray();
+    }
+    TaskCursor next =
+        das.streamTaskList(
+            query,
+            task -> {
+              g.writeStartObject();
+              g.writeStringField("tkey", task.tkey);
+              g.writeStringField("triggername", task.triggername);
+              g.writeStringField("orgid", task.orgid);
+              g.writeStringField("orgname", task.orgname);
+              g.writeStringField("requestinguser", task.requestinguser);
+              g.writeStringField("created", task.created);
+              g.writeStringField("status", task.status);
+              g.writeStringField("status_tkey", task.status_tkey);
+              g.writeEndObject();
+            });
+    g.writeEndArray();
+    if (query.isPaged()) {
+      if (next != null) {
+        g.writeStringField("next_cursor", next.encode());
+      }
+      g.writeEndObject();
+    }
+  }
+
+  protected TaskPurgeService getTaskPurgeService() {
+    return TaskPurgeService.getInstance();
+  }
+
+  protected ApproverRegistry getApproverRegistry() {
+    return ApproverRegistry.getInstance();
+  }
+
   protected DataAccessService createDataAccessService() {
     return new DataAccessService();
   }
@@ -248,14 +677,19 @@ public class TaskServlet extends ServiceBase {
     process.execute(inputData);
   }
 
-  protected void notifyCTMGTrigger(String tkey, boolean approve) throws Exception {
-    logger.debug("tkey: " + tkey + " approve: " + approve);
+  protected void notifyCTMGTrigger(String tkey, String created, boolean approve) throws Exception {
+    logger.debug("tkey: " + tkey + " created: " + created + " approve: " + approve);
     DataAccessService das = createDataAccessService();
-    Task task = das.getTask(tkey);
+    // the status was just changed, a replica may not know it yet
+    Task task = das.getTask(tkey, created, TaskProjection.PAYLOAD, true);
     String orgid = task.orgid;
     notifyCTMGTrigger(task, tkey, orgid, approve);
   }
 
+  protected void notifyCTMGTrigger(Task task, boolean approve) throws Exception {
+    notifyCTMGTrigger(task, task.tkey, task.orgid, approve);
+  }
+
   private void notifyCTMGTrigger(final Task task, String triggerkey, String orgid, boolean approve)
       throws ProcessException {
     logger.debug("triggerkey: " + triggerkey + "orgid: " + orgid + " approve: " + approve);
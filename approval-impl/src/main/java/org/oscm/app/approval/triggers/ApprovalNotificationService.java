@@ -7,18 +7,21 @@
  */
 package org.oscm.app.approval.triggers;
 
-import java.net.MalformedURLException;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.jws.WebParam;
 import javax.jws.WebService;
 
+import org.oscm.app.approval.database.TriggerIntake;
+import org.oscm.app.approval.remote.BesCache;
 import org.oscm.app.approval.remote.BesClient;
 import org.oscm.app.approval.remote.WebServiceTask;
 import org.oscm.app.connector.framework.ProcessException;
-import org.oscm.app.v2_0.exceptions.ConfigurationException;
 import org.oscm.intf.AccountService;
 import org.oscm.intf.SubscriptionService;
 import org.oscm.notification.intf.NotificationService;
@@ -48,8 +51,41 @@ public class ApprovalNotificationService implements NotificationService {
 
   private static final Logger log = LoggerFactory.getLogger(ApprovalNotificationService.class);
 
+  private final TriggerIntake intake;
+
+  public ApprovalNotificationService() {
+    this(TriggerIntake.getInstance());
+  }
+
+  /** @param intake - stores the triggers if enabled, <code>null</code> processes them directly */
+  public ApprovalNotificationService(TriggerIntake intake) {
+    this.intake = intake;
+  }
+
+  /**
+   * Stores the trigger in the intake if it is enabled, it is then processed in the background. If
+   * the trigger cannot be stored it is processed directly.
+   *
+   * @return <code>true</code> if the trigger has been stored
+   */
+  protected boolean enqueue(String trigger, Object... args) {
+    if (intake == null || !intake.isEnabled()) {
+      return false;
+    }
+    try {
+      intake.enqueue(trigger, args);
+      return true;
+    } catch (Exception e) {
+      log.error("Failed to store trigger " + trigger + ", processing it directly", e);
+      return false;
+    }
+  }
+
   @Override
   public void billingPerformed(String xmlBillingData) {
+    if (enqueue("billingPerformed", xmlBillingData)) {
+      return;
+    }
     log.debug("");
     try {
       ApprovalTask task = createApprovalTask("billingPerformed");
@@ -67,12 +103,15 @@ public class ApprovalNotificationService implements NotificationService {
 
   @Override
   public void onActivateProduct(VOTriggerProcess process, VOService product) {
+    if (enqueue("onActivateProduct", process, product)) {
+      return;
+    }
     log.debug("product: " + product.getNameToDisplay());
     try {
-      ApprovalTask task = createApprovalTask("onActivateProduct", process, product);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onActivateProduct", process, product);
+      task.add("ctmg_organization", BesClient.await(org));
       task.startApprovalProcess();
     } catch (Throwable t) {
       log.error("", t);
@@ -91,18 +130,22 @@ public class ApprovalNotificationService implements NotificationService {
       String subscriptionId,
       List<VOUsageLicense> usersToBeAdded,
       List<VOUser> usersToBeRevoked) {
+    if (enqueue("onAddRevokeUser", process, subscriptionId, usersToBeAdded, usersToBeRevoked)) {
+      return;
+    }
     log.debug("subscriptionId: " + subscriptionId);
     try {
       log.debug("onAddRevokeUser() subscriptionId:" + subscriptionId);
 
-      // // Get subscription and service by given id
+      // the organization and user details are looked up while the subscription is read
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      CompletableFuture<VOUserDetails> user = getUserDetailsAsync(process.getUser());
       VOSubscriptionDetails subscription = getSubscription(subscriptionId, orgId);
       VOService service = subscription.getSubscribedService();
 
-      ApprovalTask task = createApprovalTask("onAddRevokeUser", process, service);
-      task.add("ctmg_organization", org);
+      ApprovalTask task = createApprovalTask("onAddRevokeUser", process, service, user);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_subscription", subscription);
       task.addUsageLicense("ctmg_usersAdded", usersToBeAdded);
       task.addUsers("ctmg_usersRevoked", usersToBeRevoked);
@@ -117,12 +160,15 @@ public class ApprovalNotificationService implements NotificationService {
 
   @Override
   public void onAddSupplier(VOTriggerProcess process, String supplierId) {
+    if (enqueue("onAddSupplier", process, supplierId)) {
+      return;
+    }
     log.debug("supplierId: " + supplierId);
     try {
-      ApprovalTask task = createApprovalTask("onAddSupplier", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onAddSupplier", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_supplier_id", supplierId);
       task.startApprovalProcess();
     } catch (Throwable t) {
@@ -135,14 +181,31 @@ public class ApprovalNotificationService implements NotificationService {
     return new ApprovalTask(trigger, process);
   }
 
+  protected ApprovalTask createApprovalTask(
+      String trigger,
+      VOTriggerProcess process,
+      VOService product,
+      CompletableFuture<VOUserDetails> userDetails)
+      throws Exception {
+    return new ApprovalTask(trigger, process, product, userDetails);
+  }
+
+  /** Starts the lookup of the details of the given user. */
+  protected CompletableFuture<VOUserDetails> getUserDetailsAsync(VOUser user) {
+    return BesClient.lookup(() -> ApprovalTask.getUserDetails(user));
+  }
+
   @Override
   public void onDeactivateProduct(VOTriggerProcess process, VOService product) {
+    if (enqueue("onDeactivateProduct", process, product)) {
+      return;
+    }
     log.debug("product: " + product.getNameToDisplay());
     try {
-      ApprovalTask task = createApprovalTask("onDeactivateProduct", process, product);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onDeactivateProduct", process, product);
+      task.add("ctmg_organization", BesClient.await(org));
       task.startApprovalProcess();
     } catch (Throwable t) {
       log.error("", t);
@@ -153,17 +216,21 @@ public class ApprovalNotificationService implements NotificationService {
   @Override
   public void onModifySubscription(
       VOTriggerProcess process, VOSubscription subscription, List<VOParameter> parameters) {
+    if (enqueue("onModifySubscription", process, subscription, parameters)) {
+      return;
+    }
     try {
       log.debug("subscriptionId:" + subscription.getSubscriptionId());
 
-      // Get subscription and service by given id
+      // the organization and user details are looked up while the subscription is read
       String orgId = process.getUser().getOrganizationId();
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      CompletableFuture<VOUserDetails> user = getUserDetailsAsync(process.getUser());
       VOSubscriptionDetails subscriptionDetails = getSubscription(orgId, subscription.getKey());
       VOService service = subscriptionDetails.getSubscribedService();
 
-      ApprovalTask task = createApprovalTask("onModifySubscription", process, service);
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      ApprovalTask task = createApprovalTask("onModifySubscription", process, service, user);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_subscription", subscriptionDetails);
       task.addParams("ctmg_params", parameters);
       task.startApprovalProcess();
@@ -180,12 +247,15 @@ public class ApprovalNotificationService implements NotificationService {
       VOOrganization organization,
       VOUserDetails user,
       Properties properties) {
+    if (enqueue("onRegisterCustomer", process, organization, user, properties)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onRegisterCustomer", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onRegisterCustomer", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_org", organization);
       task.add("ctmg_customer", user);
       task.startApprovalProcess();
@@ -201,12 +271,15 @@ public class ApprovalNotificationService implements NotificationService {
       VOUserDetails user,
       List<UserRoleType> roles,
       String marketplaceId) {
+    if (enqueue("onRegisterUserInOwnOrganization", process, user, roles, marketplaceId)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onRegisterUserInOwnOrganization", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onRegisterUserInOwnOrganization", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_newuser", user);
       task.add("ctmg_mid", marketplaceId);
       task.startApprovalProcess();
@@ -218,13 +291,16 @@ public class ApprovalNotificationService implements NotificationService {
 
   @Override
   public void onRemoveSupplier(VOTriggerProcess process, String supplierId) {
+    if (enqueue("onRemoveSupplier", process, supplierId)) {
+      return;
+    }
     log.debug("supplierId: " + supplierId);
     try {
+      String orgId = process.getUser().getOrganizationId();
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
       ApprovalTask task = createApprovalTask("onRemoveSupplier", process);
       task.add("ctmg_supplier_id", supplierId);
-      String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      task.add("ctmg_organization", BesClient.await(org));
       task.startApprovalProcess();
     } catch (Throwable t) {
       log.error("", t);
@@ -235,13 +311,16 @@ public class ApprovalNotificationService implements NotificationService {
   @Override
   public void onSaveCustomerPaymentConfiguration(
       VOTriggerProcess process, VOOrganizationPaymentConfiguration configuration) {
+    if (enqueue("onSaveCustomerPaymentConfiguration", process, configuration)) {
+      return;
+    }
     log.debug("");
     try {
+      String orgId = process.getUser().getOrganizationId();
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
       ApprovalTask task = createApprovalTask("onSaveCustomerPaymentConfiguration", process);
       task.add("ctmg_org", configuration.getOrganization());
-      String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      task.add("ctmg_organization", BesClient.await(org));
       task.startApprovalProcess();
     } catch (Throwable t) {
       log.error("", t);
@@ -252,12 +331,15 @@ public class ApprovalNotificationService implements NotificationService {
   @Override
   public void onSaveDefaultPaymentConfiguration(
       VOTriggerProcess process, Set<VOPaymentType> configuration) {
+    if (enqueue("onSaveDefaultPaymentConfiguration", process, configuration)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onSaveDefaultPaymentConfiguration", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onSaveDefaultPaymentConfiguration", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.startApprovalProcess();
     } catch (Throwable t) {
       log.error("", t);
@@ -268,12 +350,15 @@ public class ApprovalNotificationService implements NotificationService {
   @Override
   public void onSaveServiceDefaultPaymentConfiguration(
       VOTriggerProcess process, Set<VOPaymentType> configuration) {
+    if (enqueue("onSaveServiceDefaultPaymentConfiguration", process, configuration)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onSaveServiceDefaultPaymentConfiguration", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onSaveServiceDefaultPaymentConfiguration", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.startApprovalProcess();
     } catch (Throwable t) {
       log.error("", t);
@@ -284,12 +369,15 @@ public class ApprovalNotificationService implements NotificationService {
   @Override
   public void onSaveServicePaymentConfiguration(
       VOTriggerProcess process, VOServicePaymentConfiguration configuration) {
+    if (enqueue("onSaveServicePaymentConfiguration", process, configuration)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onSaveServicePaymentConfiguration", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onSaveServicePaymentConfiguration", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.startApprovalProcess();
     } catch (Throwable t) {
       log.error("", t);
@@ -303,13 +391,16 @@ public class ApprovalNotificationService implements NotificationService {
       VOSubscription subscription,
       VOService product,
       List<VOUsageLicense> users) {
+    if (enqueue("onSubscribeToProduct", process, subscription, product, users)) {
+      return;
+    }
     log.debug("product: " + product.getNameToDisplay());
 
     try {
-      ApprovalTask task = createApprovalTask("onSubscribeToProduct", process, product);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onSubscribeToProduct", process, product);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_subscription", subscription);
       task.startApprovalProcess();
     } catch (Throwable t) {
@@ -324,12 +415,15 @@ public class ApprovalNotificationService implements NotificationService {
       VOService product,
       List<VOUsageLicense> usersToBeAdded,
       VONotification notification) {
+    if (enqueue("onSubscriptionCreation", process, product, usersToBeAdded, notification)) {
+      return;
+    }
     log.debug("product: " + product.getNameToDisplay());
     try {
-      ApprovalTask task = createApprovalTask("onSubscriptionCreation", process, product);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onSubscriptionCreation", process, product);
+      task.add("ctmg_organization", BesClient.await(org));
       task.addUsageLicense("ctmg_users", usersToBeAdded);
       task.addProps("ctmg_props", notification.getProperties());
       task.startApprovalProcess();
@@ -342,12 +436,15 @@ public class ApprovalNotificationService implements NotificationService {
   @Override
   public void onSubscriptionModification(
       VOTriggerProcess process, List<VOParameter> parameter, VONotification notification) {
+    if (enqueue("onSubscriptionModification", process, parameter, notification)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onSubscriptionModification", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onSubscriptionModification", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.addParams("ctmg_params", parameter);
       task.addProps("ctmg_props", notification.getProperties());
       task.startApprovalProcess();
@@ -359,12 +456,15 @@ public class ApprovalNotificationService implements NotificationService {
 
   @Override
   public void onSubscriptionTermination(VOTriggerProcess process, VONotification notification) {
+    if (enqueue("onSubscriptionTermination", process, notification)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onSubscriptionTermination", process);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      ApprovalTask task = createApprovalTask("onSubscriptionTermination", process);
+      task.add("ctmg_organization", BesClient.await(org));
       task.addProps("ctmg_props", notification.getProperties());
       task.startApprovalProcess();
     } catch (Throwable t) {
@@ -375,9 +475,15 @@ public class ApprovalNotificationService implements NotificationService {
 
   @Override
   public void onUnsubscribeFromProduct(VOTriggerProcess process, String subscriptionId) {
+    if (enqueue("onUnsubscribeFromProduct", process, subscriptionId)) {
+      return;
+    }
     log.debug("subscriptionId: " + subscriptionId);
     try {
+      // the organization and user details are looked up while the subscription is read
       String orgId = process.getUser().getOrganizationId();
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      CompletableFuture<VOUserDetails> user = getUserDetailsAsync(process.getUser());
       VOService service = null;
       VOSubscriptionDetails subscription = null;
 
@@ -389,9 +495,8 @@ public class ApprovalNotificationService implements NotificationService {
         service = subscription.getSubscribedService();
       }
 
-      ApprovalTask task = createApprovalTask("onUnsubscribeFromProduct", process, service);
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      ApprovalTask task = createApprovalTask("onUnsubscribeFromProduct", process, service, user);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_subscription", subscription);
       task.startApprovalProcess();
     } catch (Throwable t) {
@@ -403,12 +508,16 @@ public class ApprovalNotificationService implements NotificationService {
   @Override
   public void onUpgradeSubscription(
       VOTriggerProcess process, VOSubscription subscription, VOService product) {
+    if (enqueue("onUpgradeSubscription", process, subscription, product)) {
+      return;
+    }
     log.debug("");
     try {
-      ApprovalTask task = createApprovalTask("onUpgradeSubscription", process, product);
       String orgId = process.getUser().getOrganizationId();
-      VOOrganization org = getOrganization(orgId);
-      task.add("ctmg_organization", org);
+      CompletableFuture<VOOrganization> org = BesClient.lookup(() -> getOrganization(orgId));
+      BesCache.getInstance().indexSubscription(orgId, subscription);
+      ApprovalTask task = createApprovalTask("onUpgradeSubscription", process, product);
+      task.add("ctmg_organization", BesClient.await(org));
       task.add("ctmg_subscription", subscription);
       task.startApprovalProcess();
     } catch (Throwable t) {
@@ -419,6 +528,9 @@ public class ApprovalNotificationService implements NotificationService {
 
   @Override
   public void onCancelAction(@WebParam(name = "actionKey") long arg0) {
+    if (enqueue("onCancelAction", arg0)) {
+      return;
+    }
     log.debug("actionKey: " + arg0);
     try {
       ApprovalTask task = createApprovalTask("onCancelAction");
@@ -432,29 +544,35 @@ public class ApprovalNotificationService implements NotificationService {
 
   protected VOOrganization getOrganization(final String orgId) throws Exception {
     log.debug("orgId: " + orgId);
-    return (VOOrganization)
-        BesClient.runWebServiceAsOrganizationAdmin(
-            orgId, getOrganizationDataWSCall(AccountService.class, orgId));
+    return BesCache.getInstance()
+        .getOrganization(
+            orgId,
+            () ->
+                (VOOrganization)
+                    BesClient.runWebServiceAsOrganizationAdmin(
+                        orgId, getOrganizationDataWSCall(AccountService.class, orgId)));
   }
 
   protected VOSubscriptionDetails getSubscription(
       final String subscriptionId, final String customerOrgId) throws Exception {
     log.debug("subscriptionId: " + subscriptionId + " / customerOrgId: " + customerOrgId);
 
-    return (VOSubscriptionDetails)
-        BesClient.runWebServiceAsOrganizationAdmin(
+    return BesCache.getInstance()
+        .getSubscription(
             customerOrgId,
-            createSubscriptionDetailsByIdWSCall(SubscriptionService.class, subscriptionId));
+            subscriptionId,
+            () -> getSubscriptionDetails(customerOrgId, subscriptionId));
   }
 
   protected VOSubscriptionDetails getSubscription(final String orgid, final long subscriptionKey)
       throws ProcessException {
 
     try {
-      return (VOSubscriptionDetails)
-          BesClient.runWebServiceAsOrganizationAdmin(
+      return BesCache.getInstance()
+          .getSubscription(
               orgid,
-              createSubscriptionDetailsWSCall(SubscriptionService.class, subscriptionKey, orgid));
+              Long.valueOf(subscriptionKey),
+              () -> loadSubscription(orgid, subscriptionKey));
     } catch (ProcessException e) {
       throw e;
     } catch (Exception e) {
@@ -462,28 +580,88 @@ public class ApprovalNotificationService implements NotificationService {
     }
   }
 
-  <T> WebServiceTask<T> createSubscriptionDetailsWSCall(
-      Class<T> serv, long subscriptionKey, String customerOrgId)
-      throws MalformedURLException, ConfigurationException {
-    return new WebServiceTask<T>(serv) {
+  /**
+   * Reads the subscription with the ID found in the subscription index of the organization. If the
+   * index was taken from the cache and does not know the key or is outdated, e.g. because the
+   * subscription was renamed, it is built again once.
+   *
+   * @throws ProcessException if the organization has no subscription with the key
+   */
+  VOSubscriptionDetails loadSubscription(String orgId, long subscriptionKey) throws Exception {
+    BesCache cache = BesCache.getInstance();
+    AtomicBoolean built = new AtomicBoolean();
+    Callable<List<VOSubscription>> list =
+        () -> {
+          built.set(true);
+          return getSubscriptions(orgId);
+        };
+    String subscriptionId = cache.getSubscriptionId(orgId, subscriptionKey, list);
+    VOSubscriptionDetails details =
+        findSubscription(orgId, subscriptionKey, subscriptionId, built.get());
+    if (details == null && !built.get()) {
+      log.debug("Rebuilding the subscription index of organization " + orgId);
+      cache.invalidateSubscriptionIndex(orgId);
+      subscriptionId = cache.getSubscriptionId(orgId, subscriptionKey, list);
+      details = findSubscription(orgId, subscriptionKey, subscriptionId, true);
+    }
+    if (details == null) {
+      throw new ProcessException(
+          "Subscription " + subscriptionKey + " of organization " + orgId + " not found",
+          ProcessException.BAD_RESPONSE);
+    }
+    return details;
+  }
 
-      @Override
-      public Object execute(T svc) throws Exception {
+  /**
+   * Reads the subscription with the given ID.
+   *
+   * @param current - <code>true</code> if the ID was just listed by BES, a failing lookup is then
+   *     passed on
+   * @return the details, or <code>null</code> if the ID is unknown or now names another
+   *     subscription
+   */
+  private VOSubscriptionDetails findSubscription(
+      String orgId, long subscriptionKey, String subscriptionId, boolean current)
+      throws Exception {
+    if (subscriptionId == null) {
+      return null;
+    }
+    try {
+      VOSubscriptionDetails details = getSubscriptionDetails(orgId, subscriptionId);
+      if (details != null && details.getKey() == subscriptionKey) {
+        return details;
+      }
+    } catch (Exception e) {
+      if (current) {
+        throw e;
+      }
+      log.debug("Subscription " + subscriptionId + " not found: " + e.getMessage());
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected List<VOSubscription> getSubscriptions(String customerOrgId) throws Exception {
+    log.debug("customerOrgId: " + customerOrgId);
+    return (List<VOSubscription>)
+        BesClient.runWebServiceAsOrganizationAdmin(
+            customerOrgId, createSubscriptionsWSCall(SubscriptionService.class));
+  }
 
-        log.debug("subscriptionKey: " + subscriptionKey + " / customerOrgId: " + customerOrgId);
+  protected VOSubscriptionDetails getSubscriptionDetails(
+      String customerOrgId, String subscriptionId) throws Exception {
+    return (VOSubscriptionDetails)
+        BesClient.runWebServiceAsOrganizationAdmin(
+            customerOrgId,
+            createSubscriptionDetailsByIdWSCall(SubscriptionService.class, subscriptionId));
+  }
 
+  <T> WebServiceTask<T> createSubscriptionsWSCall(Class<T> service) {
+    return new WebServiceTask<T>(service) {
+      @Override
+      public Object execute(T svc) throws Exception {
         SubscriptionService subSvc = (SubscriptionService) svc;
-        List<VOSubscription> listSub = subSvc.getSubscriptionsForOrganization();
-        String subscriptionId = "";
-        for (VOSubscription subscr : listSub) {
-          if (subscr.getKey() == subscriptionKey) {
-            log.debug("Found subscription " + subscr.getSubscriptionId());
-            subscriptionId = subscr.getSubscriptionId();
-            break;
-          }
-        }
-
-        return subSvc.getSubscriptionDetails(subscriptionId);
+        return subSvc.getSubscriptionsForOrganization();
       }
     };
   }
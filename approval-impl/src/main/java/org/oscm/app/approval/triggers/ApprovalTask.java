@@ -9,13 +9,15 @@ package org.oscm.app.approval.triggers;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 
+import org.oscm.app.approval.database.AutoApprovalScheduler;
 import org.oscm.app.approval.database.Task;
 import org.oscm.app.approval.i18n.Messages;
 import org.oscm.app.approval.json.ServiceParameter;
+import org.oscm.app.approval.remote.BesCache;
 import org.oscm.app.approval.remote.BesClient;
 import org.oscm.app.approval.remote.WebServiceTask;
 import org.oscm.app.approval.util.JsonResult;
@@ -57,7 +59,8 @@ public class ApprovalTask {
 
   private JsonResult json;
 
-  private static ExecutorService executor = Executors.newFixedThreadPool(1);
+  /** Language of the mails, the one of the requesting user. */
+  private Locale locale = Messages.DEFAULT_LOCALE;
 
   VOTriggerProcess process = null;
   VOService service = null;
@@ -93,6 +96,23 @@ public class ApprovalTask {
    */
   public ApprovalTask(String trigger, VOTriggerProcess process, VOService service)
       throws Exception {
+    this(trigger, process, service, null);
+  }
+
+  /**
+   * This constructor is used for triggers whose user details are looked up concurrently with the
+   * other lookups of the trigger.
+   *
+   * @param trigger The name of the trigger
+   * @param pendingUserDetails The lookup of the user details of the process, <code>null</code> to
+   *     look them up here
+   */
+  public ApprovalTask(
+      String trigger,
+      VOTriggerProcess process,
+      VOService service,
+      CompletableFuture<VOUserDetails> pendingUserDetails)
+      throws Exception {
     this.process = process;
     this.service = service;
     this.triggerId = trigger;
@@ -121,8 +141,11 @@ public class ApprovalTask {
       json.add("ctmg_suspend_process", process.getTriggerDefinition().isSuspendProcess());
 
       try {
-        userDetails = getUserDetails(process.getUser());
-        Messages.setLocale(userDetails.getLocale());
+        userDetails =
+            pendingUserDetails == null
+                ? getUserDetails(process.getUser())
+                : BesClient.await(pendingUserDetails);
+        locale = Messages.getLocale(userDetails.getLocale());
         add("ctmg_user", userDetails);
       } catch (Exception e) {
         log.error(e.getLocalizedMessage());
@@ -163,27 +186,26 @@ public class ApprovalTask {
     log.debug("autoApprove: " + autoApprove + "  isSuspendProcess: " + isSuspendProcess);
 
     if (autoApprove && isSuspendProcess) {
-      // the auto-approval must be done within a thread, because the call
+      // the auto-approval must be done later, because the call
       // must first return to CT-MG before the trigger can be approved
-      AutoApprovalThread thread = new AutoApprovalThread(orgId, triggerKey);
-      executor.submit(thread);
+      AutoApprovalScheduler.getInstance().schedule(orgId, triggerKey);
     } else if ("onGrantClearance".equals(triggerId)) {
       String mailSubject = process.getTriggerDefinition().getName();
       AppDataService das = new AppDataService();
       String webuiLink = das.getApprovalUrl();
-      String mailBody = Messages.get("mail_approval.text", webuiLink);
+      String mailBody = Messages.get(locale, "mail_approval.text", webuiLink);
       excecuteProcess("ClearanceRequest.xml", mailSubject, mailBody);
     } else if (isSuspendProcess) {
       String mailSubject = process.getTriggerDefinition().getName();
       AppDataService das = new AppDataService();
       String webuiLink = das.getApprovalUrl();
-      String mailBody = Messages.get("mail_approval.text", webuiLink);
+      String mailBody = Messages.get(locale, "mail_approval.text", webuiLink);
       excecuteProcess("ApprovalRequest.xml", mailSubject, mailBody);
     } else {
       String mailSubject = process.getTriggerDefinition().getName();
       AppDataService das = new AppDataService();
       String webuiLink = das.getApprovalUrl();
-      String mailBody = Messages.get("mail_approval.text", webuiLink);
+      String mailBody = Messages.get(locale, "mail_approval.text", webuiLink);
       excecuteProcess("NotificationRequest.xml", mailSubject, mailBody);
     }
   }
@@ -351,14 +373,18 @@ public class ApprovalTask {
     return null;
   }
 
-  private VOUserDetails getUserDetails(final VOUser user) throws Exception {
+  static VOUserDetails getUserDetails(final VOUser user) throws Exception {
     String customerOrgId = user.getOrganizationId();
-    return (VOUserDetails)
-        BesClient.runWebServiceAsOrganizationAdmin(
-            customerOrgId, createGetUserDetailsWSCall(IdentityService.class, user));
+    return BesCache.getInstance()
+        .getUserDetails(
+            user,
+            () ->
+                (VOUserDetails)
+                    BesClient.runWebServiceAsOrganizationAdmin(
+                        customerOrgId, createGetUserDetailsWSCall(IdentityService.class, user)));
   }
 
-  <T> WebServiceTask<T> createGetUserDetailsWSCall(Class<T> serv, final VOUser user)
+  static <T> WebServiceTask<T> createGetUserDetailsWSCall(Class<T> serv, final VOUser user)
       throws Exception {
     return new WebServiceTask<T>(serv) {
 
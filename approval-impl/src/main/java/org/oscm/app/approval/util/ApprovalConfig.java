@@ -0,0 +1,80 @@
+/********************************************************************************
+ *
+ * Copyright FUJITSU LIMITED 2020
+ *
+ *******************************************************************************/
+package org.oscm.app.approval.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Settings of the approval tool, read from the bss-app-approval.properties
+ * file which also configures the process activities.
+ */
+public class ApprovalConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ApprovalConfig.class);
+
+    public static final String RESOURCE = "bss-app-approval.properties";
+
+    private static ApprovalConfig instance;
+
+    private final Properties props;
+
+    public ApprovalConfig(Properties props) {
+        this.props = props;
+    }
+
+    public static synchronized ApprovalConfig getInstance() {
+        if (instance == null) {
+            instance = new ApprovalConfig(load());
+        }
+        return instance;
+    }
+
+    private static Properties load() {
+        Properties props = new Properties();
+        try (InputStream in = ApprovalConfig.class.getClassLoader()
+                .getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                props.load(in);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read " + RESOURCE, e);
+        }
+        return props;
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = props.getProperty(key);
+        return (value == null || value.trim().isEmpty()) ? defaultValue
+                : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value " + value + " for " + key
+                    + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
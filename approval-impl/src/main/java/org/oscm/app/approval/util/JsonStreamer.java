@@ -0,0 +1,17 @@
+/********************************************************************************
+ *
+ * Copyright FUJITSU LIMITED 2020
+ *
+ *******************************************************************************/
+package org.oscm.app.approval.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes a JSON document directly to the response. Used for results which are too large to be
+ * built in memory with {@link JsonResult}.
+ */
+public interface JsonStreamer {
+
+    void write(JsonGenerator g) throws Exception;
+}
@@ -10,6 +10,7 @@
 package org.oscm.app.approval.util;
 
 import java.math.BigDecimal;
+import java.util.Locale;
 
 import org.oscm.app.approval.i18n.Messages;
 import org.oscm.app.approval.json.PriceModel;
@@ -24,28 +25,38 @@ public class PriceText {
   static final String LABEL_PRICE_MODEL_PER_USER = "priceModel.text.perUser";
   static final String LABEL_PRICE_MODEL_SEE_DETAILS = "priceModel.text.seeDetails";
 
+  /** Returns the price text in the default locale. */
   public static String from(PriceModel priceModel) {
+    return from(priceModel, Messages.DEFAULT_LOCALE);
+  }
+
+  /** Returns the price text in the given locale. */
+  public static String from(PriceModel priceModel, Locale locale) {
     if (PriceModelType.FREE_OF_CHARGE.name().equalsIgnoreCase(priceModel.type)) {
-      return getText(LABEL_PRICE_MODEL_FREE, null);
+      return getText(locale, LABEL_PRICE_MODEL_FREE, null);
     }
     String[] result = new String[] {"", "", ""};
     if (isSet(priceModel.pricePerPeriod)) {
-      result[0] = getText(LABEL_PRICE_MODEL_PRICE, priceModel.currency, priceModel.pricePerPeriod);
-      result[1] = getText(LABEL_PRICE_MODEL_PER_SUB, getPeriodText(priceModel.period));
+      result[0] =
+          getText(locale, LABEL_PRICE_MODEL_PRICE, priceModel.currency, priceModel.pricePerPeriod);
+      result[1] =
+          getText(locale, LABEL_PRICE_MODEL_PER_SUB, getPeriodText(locale, priceModel.period));
 
     } else if (isSet(priceModel.pricePerUser)) {
-      result[0] = getText(LABEL_PRICE_MODEL_PRICE, priceModel.currency, priceModel.pricePerUser);
-      result[1] = getText(LABEL_PRICE_MODEL_PER_USER, getPeriodText(priceModel.period));
+      result[0] =
+          getText(locale, LABEL_PRICE_MODEL_PRICE, priceModel.currency, priceModel.pricePerUser);
+      result[1] =
+          getText(locale, LABEL_PRICE_MODEL_PER_USER, getPeriodText(locale, priceModel.period));
     } else if (isSet(priceModel.oneTimeFee)) {
-      return getText(LABEL_PRICE_MODEL_PRICE, priceModel.currency, priceModel.oneTimeFee);
+      return getText(locale, LABEL_PRICE_MODEL_PRICE, priceModel.currency, priceModel.oneTimeFee);
     } else {
-      return getText(LABEL_PRICE_MODEL_SEE_DETAILS);
+      return getText(locale, LABEL_PRICE_MODEL_SEE_DETAILS);
     }
-    return getText(LABEL_PRICE_MODEL_PRICE_AND_UNIT, result[0], result[1]);
+    return getText(locale, LABEL_PRICE_MODEL_PRICE_AND_UNIT, result[0], result[1]);
   }
 
-  static final String getPeriodText(String period) {
-    return getText("PricingPeriod." + period);
+  static final String getPeriodText(Locale locale, String period) {
+    return getText(locale, "PricingPeriod." + period);
   }
 
   static boolean isSet(String val) {
@@ -55,7 +66,7 @@ public class PriceText {
     return 1 == new BigDecimal(val).compareTo(BigDecimal.ZERO);
   }
 
-  private static String getText(String key, Object... objects) {
-    return Messages.get(key, objects);
+  private static String getText(Locale locale, String key, Object... objects) {
+    return Messages.get(locale, key, objects);
   }
 }
@@ -0,0 +1,211 @@
+/********************************************************************************
+ *
+ * Copyright FUJITSU LIMITED 2020
+ *
+ *******************************************************************************/
+package org.oscm.app.approval.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe cache whose entries expire a fixed time after they were
+ * loaded. If the cache is full, expired entries are removed first and then
+ * arbitrary ones. Optionally, entries read shortly before they expire are
+ * reloaded in the background, so that frequently used keys never wait for
+ * the loader. Concurrent misses of the same key wait for a single load.
+ */
+public class TtlCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TtlCache.class);
+
+    /**
+     * Loads the value of a key which is not cached.
+     */
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    static class Entry<V> {
+        final V value;
+        final long loaded;
+        final long expires;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(V value, long loaded, long expires) {
+            this.value = value;
+            this.loaded = loaded;
+            this.expires = expires;
+        }
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxSize;
+    private final long refreshMillis;
+    private final Executor refresher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public TtlCache(long ttlMillis, int maxSize) {
+        this(ttlMillis, maxSize, 0, null);
+    }
+
+    /**
+     * @param refreshMillis
+     *            - age after which a read entry is reloaded in the background,
+     *            0 or not less than the TTL to only load on expiry
+     * @param refresher
+     *            - runs the background reloads
+     */
+    public TtlCache(long ttlMillis, int maxSize, long refreshMillis,
+            Executor refresher) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+        this.refreshMillis = refreshMillis;
+        this.refresher = refresher;
+    }
+
+    /**
+     * Returns the cached value of the key or loads it. If the key is already
+     * being loaded by another thread, its result is used.
+     */
+    public V get(K key, Loader<K, V> loader) throws Exception {
+        long now = currentTimeMillis();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expires > now) {
+            hits.incrementAndGet();
+            if (isRefreshDue(entry, now)
+                    && entry.refreshing.compareAndSet(false, true)) {
+                refresher.execute(() -> refresh(key, entry, loader));
+            }
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            V value = loader.load(key);
+            put(key, value, now);
+            load.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> load) throws Exception {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw (Error) e.getCause();
+        }
+    }
+
+    private boolean isRefreshDue(Entry<V> entry, long now) {
+        return refresher != null && refreshMillis > 0
+                && refreshMillis < ttlMillis
+                && now - entry.loaded >= refreshMillis;
+    }
+
+    private void refresh(K key, Entry<V> old, Loader<K, V> loader) {
+        try {
+            V value = loader.load(key);
+            refreshes.incrementAndGet();
+            if (value != null) {
+                long now = currentTimeMillis();
+                // an entry invalidated in the meantime is not brought back
+                entries.replace(key, old,
+                        new Entry<>(value, now, now + ttlMillis));
+            }
+        } catch (Exception e) {
+            // the old value is used until it expires and is loaded on demand
+            logger.warn("Background refresh of " + key + " failed", e);
+            old.refreshing.set(false);
+        }
+    }
+
+    private void put(K key, V value, long now) {
+        if (ttlMillis > 0 && value != null) {
+            if (entries.size() >= maxSize && !entries.containsKey(key)) {
+                evict(now);
+            }
+            entries.put(key, new Entry<>(value, now, now + ttlMillis));
+        }
+    }
+
+    /**
+     * Returns the cached value of the key without loading it, or
+     * <code>null</code> if it is not cached or expired.
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expires > currentTimeMillis()) {
+            return entry.value;
+        }
+        return null;
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of reads which were not served from the cache,
+     * including those which waited for the load of another thread.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of values reloaded in the background.
+     */
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(e -> e.expires <= now);
+        while (!entries.isEmpty() && entries.size() >= maxSize) {
+            K any = entries.keySet().iterator().next();
+            entries.remove(any);
+        }
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -7,29 +7,95 @@
  */
 package org.oscm.app.dataaccess;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.oscm.app.approval.controller.ApprovalInstanceAccess;
 import org.oscm.app.approval.controller.ApprovalInstanceAccess.BasicSettings;
 import org.oscm.app.approval.controller.ApprovalInstanceAccess.ClientData;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.oscm.app.approval.util.TtlCache;
 import org.oscm.app.v2_0.data.Setting;
 import org.oscm.app.v2_0.exceptions.APPlatformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** */
+/**
+ * Reads the approval settings of the APP controller. The settings are cached process-wide, so that
+ * the credentials and approver organization of a customer are not looked up again for every call.
+ */
 public class AppDataService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AppDataService.class);
-  private BasicSettings settings;
+
+  static final String CACHE_TTL = "settings.cache.ttl.millis";
+  static final String CACHE_REFRESH = "settings.cache.refresh.millis";
+  static final String CACHE_SIZE = "settings.cache.size";
+
+  private static final String CONTROLLER = "";
+
+  private static final ExecutorService refresher =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            Thread t = new Thread(r, "approval-settings-refresh");
+            t.setDaemon(true);
+            return t;
+          });
+
+  private static final TtlCache<String, ClientData> customerSettings = createCache();
+  private static final TtlCache<String, BasicSettings> basicSettings = createCache();
+
+  private static <V> TtlCache<String, V> createCache() {
+    ApprovalConfig config = ApprovalConfig.getInstance();
+    return new TtlCache<>(
+        config.getLong(CACHE_TTL, 300000),
+        config.getInt(CACHE_SIZE, 1000),
+        config.getLong(CACHE_REFRESH, 240000),
+        refresher);
+  }
+
+  /** Drops the cached settings of the customer organization, e.g. after its credentials changed. */
+  public static void invalidate(String orgId) {
+    customerSettings.invalidate(orgId);
+  }
+
+  /** Drops all cached settings. */
+  public static void invalidateAll() {
+    customerSettings.clear();
+    basicSettings.clear();
+  }
 
   ClientData getCustomerSettings(String org) throws APPlatformException {
-    return new ApprovalInstanceAccess().getCustomerSettings(org);
+    ClientData data = cached(customerSettings, org, o -> loadCustomerSettings(o));
+    if (!data.isSet()) {
+      // settings which are not configured yet are read again on the next call
+      customerSettings.invalidate(org);
+    }
+    return data;
   }
 
   BasicSettings getBasicSettings() throws APPlatformException {
-    if (settings == null) {
-      settings = new ApprovalInstanceAccess().getBasicSettings();
+    return cached(basicSettings, CONTROLLER, k -> loadBasicSettings());
+  }
+
+  ClientData loadCustomerSettings(String org) throws APPlatformException {
+    LOGGER.debug("Loading approval settings of organization " + org);
+    return new ApprovalInstanceAccess().getCustomerSettings(org);
+  }
+
+  BasicSettings loadBasicSettings() throws APPlatformException {
+    return new ApprovalInstanceAccess().getBasicSettings();
+  }
+
+  private static <V> V cached(TtlCache<String, V> cache, String key, TtlCache.Loader<String, V> loader)
+      throws APPlatformException {
+    try {
+      return cache.get(key, loader);
+    } catch (APPlatformException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
     }
-    return settings;
   }
 
   public Credentials loadControllerOwnerCredentials() throws Exception {
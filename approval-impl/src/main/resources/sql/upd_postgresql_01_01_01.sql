@@ -42,7 +42,14 @@ INSERT INTO status VALUES (6,'NOTIFICATION');
 INSERT INTO status VALUES (7,'WAITING_FOR_CLEARANCE');
 INSERT INTO status VALUES (8,'CLEARANCE_GRANTED');
 
-GRANT ALL PRIVILEGES ON TABLE "task"  TO approvaluser;
-GRANT ALL PRIVILEGES ON TABLE "status"  TO approvaluser;
-GRANT ALL PRIVILEGES ON TABLE "version"  TO approvaluser;
-GRANT ALL PRIVILEGES ON TABLE "approver"  TO approvaluser;
\ No newline at end of file
+-- The role exists in the CT-MG database, but not in an embedded database created for tests
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_roles WHERE rolname = 'approvaluser') THEN
+		GRANT ALL PRIVILEGES ON TABLE "task"  TO approvaluser;
+		GRANT ALL PRIVILEGES ON TABLE "status"  TO approvaluser;
+		GRANT ALL PRIVILEGES ON TABLE "version"  TO approvaluser;
+		GRANT ALL PRIVILEGES ON TABLE "approver"  TO approvaluser;
+	END IF;
+END
+$$;
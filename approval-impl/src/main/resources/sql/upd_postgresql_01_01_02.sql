@@ -0,0 +1,17 @@
+-- Task list, delete and lookup always filter on approver and status and sort by creation date.
+CREATE INDEX IF NOT EXISTS task_approver_status_created_idx ON task (approver_tkey, status_tkey, created DESC, tkey DESC);
+
+CREATE INDEX IF NOT EXISTS task_status_idx ON task (status_tkey);
+
+-- The updates run as the role owning the tables. Tables and sequences it creates later, like the
+-- monthly partitions of task, are granted to the role of the approval tool right away.
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_roles WHERE rolname = 'approvaluser') THEN
+		ALTER DEFAULT PRIVILEGES GRANT ALL PRIVILEGES ON TABLES TO approvaluser;
+		ALTER DEFAULT PRIVILEGES GRANT ALL PRIVILEGES ON SEQUENCES TO approvaluser;
+		GRANT ALL PRIVILEGES ON SEQUENCE task_tkey_seq TO approvaluser;
+		GRANT ALL PRIVILEGES ON SEQUENCE approver_tkey_seq TO approvaluser;
+	END IF;
+END
+$$;
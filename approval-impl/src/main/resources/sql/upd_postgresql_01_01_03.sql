@@ -0,0 +1,4 @@
+-- The trigger key is the numeric key of the trigger process in OSCM.
+ALTER TABLE task ALTER COLUMN triggerkey TYPE bigint USING triggerkey::bigint;
+
+CREATE INDEX IF NOT EXISTS task_triggerkey_idx ON task (triggerkey);
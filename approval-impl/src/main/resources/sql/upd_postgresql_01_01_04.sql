@@ -0,0 +1,24 @@
+-- Tasks removed by the purge service are kept here if purge.archive is enabled.
+CREATE TABLE IF NOT EXISTS task_archive (
+	tkey int primary key,
+	approver_tkey int NOT NULL,
+	status_tkey int NOT NULL,
+	created timestamp,
+	archived timestamp NOT NULL DEFAULT current_timestamp,
+	data jsonb NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS task_archive_approver_idx ON task_archive (approver_tkey, archived);
+
+-- The purge service deletes the tasks of a status in chunks ordered by creation date and tkey.
+CREATE INDEX IF NOT EXISTS task_status_created_idx ON task (status_tkey, created, tkey);
+
+DROP INDEX IF EXISTS task_status_idx;
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_roles WHERE rolname = 'approvaluser') THEN
+		GRANT ALL PRIVILEGES ON TABLE task_archive TO approvaluser;
+	END IF;
+END
+$$;
@@ -0,0 +1,59 @@
+-- Range partitioning of task by month of creation. Partitions are named task_pYYYYMM,
+-- TaskPartitionManager creates future partitions and drops expired ones.
+ALTER TABLE task RENAME TO task_old;
+
+UPDATE task_old SET created = current_timestamp WHERE created IS NULL;
+
+CREATE TABLE task (LIKE task_old INCLUDING DEFAULTS) PARTITION BY RANGE (created);
+
+ALTER TABLE task ALTER COLUMN created SET NOT NULL;
+ALTER TABLE task ALTER COLUMN created SET DEFAULT current_timestamp;
+
+-- the primary key of a partitioned table must contain the partition key, lookups by tkey use its prefix
+ALTER TABLE task ADD CONSTRAINT task_pkey_created PRIMARY KEY (tkey, created);
+
+CREATE TABLE task_default PARTITION OF task DEFAULT;
+
+DO $$
+DECLARE
+	m date;
+BEGIN
+	FOR m IN SELECT generate_series(
+			date_trunc('month', coalesce((SELECT min(created) FROM task_old), current_timestamp)),
+			date_trunc('month', current_timestamp) + interval '3 months',
+			interval '1 month')::date
+	LOOP
+		EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF task FOR VALUES FROM (%L) TO (%L)',
+			'task_p' || to_char(m, 'YYYYMM'), m, (m + interval '1 month')::date);
+	END LOOP;
+END $$;
+
+INSERT INTO task SELECT * FROM task_old;
+
+ALTER SEQUENCE task_tkey_seq OWNED BY task.tkey;
+
+DROP TABLE task_old;
+
+ALTER TABLE task ADD CONSTRAINT task_status_fk FOREIGN KEY (status_tkey) REFERENCES status (tkey);
+ALTER TABLE task ADD CONSTRAINT task_approver_fk FOREIGN KEY (approver_tkey) REFERENCES approver (tkey);
+
+CREATE INDEX IF NOT EXISTS task_approver_status_created_idx ON task (approver_tkey, status_tkey, created DESC, tkey DESC);
+CREATE INDEX IF NOT EXISTS task_triggerkey_idx ON task (triggerkey);
+CREATE INDEX IF NOT EXISTS task_status_created_idx ON task (status_tkey, created, tkey);
+
+-- The recreated table and its partitions get the privileges of the baseline script again.
+DO $$
+DECLARE
+	p name;
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_roles WHERE rolname = 'approvaluser') THEN
+		GRANT ALL PRIVILEGES ON TABLE task TO approvaluser;
+		GRANT ALL PRIVILEGES ON SEQUENCE task_tkey_seq TO approvaluser;
+		FOR p IN SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+				WHERE i.inhparent = to_regclass('task')
+		LOOP
+			EXECUTE format('GRANT ALL PRIVILEGES ON TABLE %I TO approvaluser', p);
+		END LOOP;
+	END IF;
+END
+$$;
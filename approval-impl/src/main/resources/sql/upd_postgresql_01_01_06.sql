@@ -0,0 +1,24 @@
+-- The trigger process data is stored as jsonb. Descriptions which are no valid JSON are kept as
+-- JSON string.
+CREATE OR REPLACE FUNCTION approval_to_jsonb(v text) RETURNS jsonb AS $$
+BEGIN
+	RETURN v::jsonb;
+EXCEPTION WHEN others THEN
+	RETURN to_jsonb(v);
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+ALTER TABLE task ALTER COLUMN description TYPE jsonb USING approval_to_jsonb(nullif(description, ''));
+
+DROP FUNCTION approval_to_jsonb(text);
+
+-- Frequently read fields of the trigger process data, kept up to date by the database.
+ALTER TABLE task ADD COLUMN user_locale character varying(255) GENERATED ALWAYS AS (description #>> '{ctmg_user,locale}') STORED;
+ALTER TABLE task ADD COLUMN user_email character varying(255) GENERATED ALWAYS AS (description #>> '{ctmg_user,email}') STORED;
+ALTER TABLE task ADD COLUMN service_id character varying(255) GENERATED ALWAYS AS (description #>> '{ctmg_service,id}') STORED;
+ALTER TABLE task ADD COLUMN subscription_id character varying(255) GENERATED ALWAYS AS (description #>> '{ctmg_subscription,id}') STORED;
+ALTER TABLE task ADD COLUMN price_type character varying(255) GENERATED ALWAYS AS (description #>> '{ctmg_service,price,type}') STORED;
+ALTER TABLE task ADD COLUMN trigger_id character varying(255) GENERATED ALWAYS AS (description ->> 'ctmg_trigger_id') STORED;
+
+CREATE INDEX IF NOT EXISTS task_service_id_idx ON task (service_id);
+CREATE INDEX IF NOT EXISTS task_subscription_id_idx ON task (subscription_id);
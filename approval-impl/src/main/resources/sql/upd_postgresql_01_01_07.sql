@@ -0,0 +1,50 @@
+-- Number of tasks per approver and status, maintained by triggers in the writing transaction.
+CREATE TABLE IF NOT EXISTS task_counts (
+	approver_tkey int NOT NULL,
+	status_tkey int NOT NULL,
+	n bigint NOT NULL DEFAULT 0,
+	PRIMARY KEY (approver_tkey, status_tkey)
+);
+
+CREATE OR REPLACE FUNCTION task_counts_update() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP IN ('UPDATE', 'DELETE') THEN
+		UPDATE task_counts SET n = n - 1
+			WHERE approver_tkey = OLD.approver_tkey AND status_tkey = OLD.status_tkey;
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') THEN
+		INSERT INTO task_counts (approver_tkey, status_tkey, n)
+			VALUES (NEW.approver_tkey, NEW.status_tkey, 1)
+			ON CONFLICT (approver_tkey, status_tkey) DO UPDATE SET n = task_counts.n + 1;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER task_counts_insert_delete AFTER INSERT OR DELETE ON task
+	FOR EACH ROW EXECUTE FUNCTION task_counts_update();
+
+CREATE TRIGGER task_counts_status_update AFTER UPDATE OF status_tkey, approver_tkey ON task
+	FOR EACH ROW WHEN (OLD.status_tkey IS DISTINCT FROM NEW.status_tkey OR OLD.approver_tkey IS DISTINCT FROM NEW.approver_tkey)
+	EXECUTE FUNCTION task_counts_update();
+
+-- Recounts all tasks, needed after partitions were dropped. The lock makes concurrent writers
+-- wait, so that no change gets lost between counting and replacing the counts.
+CREATE OR REPLACE FUNCTION task_counts_rebuild() RETURNS void AS $$
+BEGIN
+	LOCK TABLE task_counts IN EXCLUSIVE MODE;
+	DELETE FROM task_counts;
+	INSERT INTO task_counts (approver_tkey, status_tkey, n)
+		SELECT approver_tkey, status_tkey, count(*) FROM task GROUP BY approver_tkey, status_tkey;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT task_counts_rebuild();
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_roles WHERE rolname = 'approvaluser') THEN
+		GRANT ALL PRIVILEGES ON TABLE task_counts TO approvaluser;
+	END IF;
+END
+$$;
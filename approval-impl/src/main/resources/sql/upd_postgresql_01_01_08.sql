@@ -0,0 +1,16 @@
+-- Full text search over the tasks. Organization and user weigh more than the trigger name and
+-- the fields of the trigger process data. Generated columns cannot refer to each other, so the
+-- process data fields are extracted once more.
+ALTER TABLE task ADD COLUMN search tsvector GENERATED ALWAYS AS (
+	setweight(to_tsvector('simple', coalesce(orgname, '') || ' ' || coalesce(requestinguser, '')), 'A') ||
+	setweight(to_tsvector('simple', coalesce(triggername, '')), 'B') ||
+	setweight(to_tsvector('simple',
+		coalesce(description #>> '{ctmg_service,id}', '') || ' ' ||
+		coalesce(description #>> '{ctmg_subscription,id}', '') || ' ' ||
+		coalesce(description #>> '{ctmg_user,email}', '')), 'C')
+) STORED;
+
+CREATE INDEX IF NOT EXISTS task_search_idx ON task USING gin (search);
+
+-- Trigger name filter and facet within the tasks of an approver
+CREATE INDEX IF NOT EXISTS task_approver_trigger_created_idx ON task (approver_tkey, triggername, created);
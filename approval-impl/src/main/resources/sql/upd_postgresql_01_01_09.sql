@@ -0,0 +1,4 @@
+-- Version of the task for compare-and-set status transitions. A transition only succeeds if the
+-- task still has the status and version read before, so concurrent approvals of the same task
+-- cannot both succeed.
+ALTER TABLE task ADD COLUMN IF NOT EXISTS version integer NOT NULL DEFAULT 0;
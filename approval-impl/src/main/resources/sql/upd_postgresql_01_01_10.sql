@@ -0,0 +1,32 @@
+-- Change feed of the task list. Every new, deleted or changed task is announced on the channel
+-- approval_task with the fields shown in the task list, so that the approval tool can push the
+-- change to the browsers of the approver.
+CREATE OR REPLACE FUNCTION task_notify() RETURNS trigger AS $$
+DECLARE
+	r task%ROWTYPE;
+BEGIN
+	IF TG_OP = 'DELETE' THEN
+		r := OLD;
+	ELSE
+		r := NEW;
+	END IF;
+	PERFORM pg_notify('approval_task', json_build_object(
+		'op', TG_OP,
+		'tkey', r.tkey::text,
+		'approver_tkey', r.approver_tkey,
+		'status_tkey', r.status_tkey::text,
+		'triggername', r.triggername,
+		'orgid', r.orgid,
+		'orgname', r.orgname,
+		'requestinguser', r.requestinguser)::text);
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS task_notify_insert_delete ON task;
+CREATE TRIGGER task_notify_insert_delete AFTER INSERT OR DELETE ON task
+	FOR EACH ROW EXECUTE FUNCTION task_notify();
+
+DROP TRIGGER IF EXISTS task_notify_update ON task;
+CREATE TRIGGER task_notify_update AFTER UPDATE OF status_tkey, approver_tkey, triggername, orgname, requestinguser ON task
+	FOR EACH ROW EXECUTE FUNCTION task_notify();
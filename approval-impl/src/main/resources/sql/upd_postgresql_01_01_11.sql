@@ -0,0 +1,15 @@
+-- The trigger payloads are stored as jsonb, which is already a parsed binary format. Large
+-- payloads are kept in TOAST and compressed there. From PostgreSQL 14 on, lz4 compresses and
+-- decompresses them faster than the default pglz. The statements are executed dynamically, so
+-- that older servers, which do not know the syntax, skip them.
+DO $$
+BEGIN
+	IF current_setting('server_version_num')::int >= 140000 THEN
+		EXECUTE 'ALTER TABLE task ALTER COLUMN description SET COMPRESSION lz4';
+		EXECUTE 'ALTER TABLE task_archive ALTER COLUMN data SET COMPRESSION lz4';
+	END IF;
+EXCEPTION
+	WHEN feature_not_supported THEN
+		RAISE NOTICE 'lz4 compression is not available, the default compression is kept';
+END;
+$$;
@@ -0,0 +1,21 @@
+-- Outbox of the trigger intake. The notification service stores the arguments of a trigger
+-- callback here and returns at once, workers of the approval tool process the entries later.
+CREATE TABLE IF NOT EXISTS trigger_intake (
+	tkey bigserial primary key,
+	trigger varchar(255) NOT NULL,
+	payload bytea NOT NULL,
+	received timestamp NOT NULL DEFAULT current_timestamp,
+	status varchar(16) NOT NULL DEFAULT 'QUEUED',
+	attempts int NOT NULL DEFAULT 0,
+	next_attempt timestamp NOT NULL DEFAULT current_timestamp,
+	last_error text
+);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_roles WHERE rolname = 'approvaluser') THEN
+		GRANT ALL PRIVILEGES ON TABLE trigger_intake TO approvaluser;
+		GRANT ALL PRIVILEGES ON SEQUENCE trigger_intake_tkey_seq TO approvaluser;
+	END IF;
+END
+$$;
@@ -0,0 +1,10 @@
+-- The trigger_intake table becomes the retry queue of the approval tool. It holds the entries of
+-- the trigger intake and of the pending auto-approvals of suspended triggers, which are told apart
+-- by the queue column.
+ALTER TABLE trigger_intake ADD COLUMN IF NOT EXISTS queue varchar(32) NOT NULL DEFAULT 'intake';
+
+-- The workers claim the queued entries of their queue which are due.
+CREATE INDEX IF NOT EXISTS trigger_intake_queue_due_idx ON trigger_intake (queue, next_attempt) WHERE status = 'QUEUED';
+
+-- An auto-approval is stored once per trigger, its key is the name of the entry.
+CREATE UNIQUE INDEX IF NOT EXISTS trigger_intake_autoapproval_key ON trigger_intake (trigger) WHERE queue = 'autoapproval';
@@ -0,0 +1,52 @@
+-- The primary key (tkey, created) of the partitioned task table does not keep tkey unique. Each
+-- partition gets a unique index on tkey, TaskPartitionManager adds it to new partitions.
+DO $$
+DECLARE
+	p name;
+BEGIN
+	FOR p IN SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+			WHERE i.inhparent = to_regclass('task')
+	LOOP
+		EXECUTE format('CREATE UNIQUE INDEX IF NOT EXISTS %I ON %I (tkey)', p || '_tkey_key', p);
+	END LOOP;
+END $$;
+
+-- Rejects a tkey which already exists in another partition. Keys drawn from task_tkey_seq never
+-- collide, the guard protects against keys which are given explicitly.
+CREATE OR REPLACE FUNCTION task_tkey_guard() RETURNS trigger AS $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM task WHERE tkey = NEW.tkey AND tableoid <> NEW.tableoid) THEN
+		RAISE EXCEPTION 'duplicate task key %', NEW.tkey USING ERRCODE = 'unique_violation';
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS task_tkey_guard ON task;
+CREATE TRIGGER task_tkey_guard AFTER INSERT OR UPDATE OF tkey, created ON task
+	FOR EACH ROW EXECUTE FUNCTION task_tkey_guard();
+
+-- Announces the creation date of a changed task, the approval tool passes it back when reading or
+-- changing the task.
+CREATE OR REPLACE FUNCTION task_notify() RETURNS trigger AS $$
+DECLARE
+	r task%ROWTYPE;
+BEGIN
+	IF TG_OP = 'DELETE' THEN
+		r := OLD;
+	ELSE
+		r := NEW;
+	END IF;
+	PERFORM pg_notify('approval_task', json_build_object(
+		'op', TG_OP,
+		'tkey', r.tkey::text,
+		'approver_tkey', r.approver_tkey,
+		'status_tkey', r.status_tkey::text,
+		'triggername', r.triggername,
+		'orgid', r.orgid,
+		'orgname', r.orgname,
+		'requestinguser', r.requestinguser,
+		'created', r.created::text)::text);
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,27 @@
+-- Bulk deletes of the purge set approval.notify to off for their session, their tasks are not
+-- announced one by one. Dropped partitions do not fire the row triggers at all.
+CREATE OR REPLACE FUNCTION task_notify() RETURNS trigger AS $$
+DECLARE
+	r task%ROWTYPE;
+BEGIN
+	IF current_setting('approval.notify', true) = 'off' THEN
+		RETURN NULL;
+	END IF;
+	IF TG_OP = 'DELETE' THEN
+		r := OLD;
+	ELSE
+		r := NEW;
+	END IF;
+	PERFORM pg_notify('approval_task', json_build_object(
+		'op', TG_OP,
+		'tkey', r.tkey::text,
+		'approver_tkey', r.approver_tkey,
+		'status_tkey', r.status_tkey::text,
+		'triggername', r.triggername,
+		'orgid', r.orgid,
+		'orgname', r.orgname,
+		'requestinguser', r.requestinguser,
+		'created', r.created::text)::text);
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
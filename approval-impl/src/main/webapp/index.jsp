@@ -33,9 +33,11 @@
 	var delete_granted_clearances = false;
 
 	var selectedTask;
+	var selectedCreated;
 
 	$(document).ready(function() {
 		loadTaskList();
+		listenForTaskEvents();
 	});
 
 	function enableButton(id) {
@@ -204,7 +206,8 @@
 
 	function showTaskDetails() {
 		console.log('showTaskDetails()  tkey: ' + selectedTask);
-		var json = httpGet('task?cmd=details&tkey=' + selectedTask);
+		var json = httpGetCached('task?cmd=details&tkey=' + selectedTask
+				+ '&created=' + encodeURIComponent(selectedCreated));
 		var task = jQuery.parseJSON(json);
 		var description = jQuery.parseJSON(task.description);
 		var params = [ 'OPERATING_SYSTEM', 'TEMPLATENAME',
@@ -296,11 +299,13 @@
 		$('#filter_dialog').dialog('open');
 	}
 
-	function showTask(tkey) {
+	function showTask(tkey, created) {
 		selectedTask = tkey;
+		selectedCreated = created;
 		console.log('showTask()  tkey: ' + tkey);
 
-		var json = httpGet('task?cmd=open&tkey=' + tkey);
+		var json = httpGetCached('task?cmd=open&tkey=' + tkey + '&created='
+				+ encodeURIComponent(created));
 		var task = jQuery.parseJSON(json);
 		var description = jQuery.parseJSON(task.description);
 		var table = $("#details_table");
@@ -412,7 +417,8 @@
 			return;
 		}
 		var comment = $('textarea#comment').val();
-		var json = '{"tkey":"' + selectedTask + '","comment":"' + comment
+		var json = '{"tkey":"' + selectedTask + '","created":"'
+				+ selectedCreated + '","comment":"' + comment
 				+ '"}';
 		var response = httpPost('task?cmd=save', json);
 		if (response == '') {
@@ -435,7 +441,8 @@
 			return;
 		}
 		var comment = $('textarea#comment').val();
-		var json = '{"tkey":"' + selectedTask + '","comment":"' + comment
+		var json = '{"tkey":"' + selectedTask + '","created":"'
+				+ selectedCreated + '","comment":"' + comment
 				+ '"}';
 		var response = httpPost('task?cmd=approve', json);
 		if (response == '') {
@@ -459,7 +466,8 @@
 			return;
 		}
 		var comment = $('textarea#comment').val();
-		var json = '{"tkey":"' + selectedTask + '","comment":"' + comment
+		var json = '{"tkey":"' + selectedTask + '","created":"'
+				+ selectedCreated + '","comment":"' + comment
 				+ '"}';
 		var response = httpPost('task?cmd=reject', json);
 		if (response == '') {
@@ -484,7 +492,8 @@
 		}
 
 		var comment = $('textarea#comment').val();
-		var json = '{"tkey":"' + selectedTask + '","comment":"' + comment
+		var json = '{"tkey":"' + selectedTask + '","created":"'
+				+ selectedCreated + '","comment":"' + comment
 				+ '"}';
 		var response = httpPost('task?cmd=grant_clearance', json);
 		if (response == '') {
@@ -556,14 +565,21 @@
 		disableButtons();
 		clearTaskView();
 		selectedTask = '';
+		selectedCreated = '';
 
 		$("table#task_table").find('tbody').children().remove();
-		var json = httpGet('task?cmd=tasklist&show_notifications='
-				+ show_notifications + '&show_finished_tasks='
-				+ show_finished_tasks + '&show_open_tasks=' + show_open_tasks
-				+ '&show_granted_clearances=' + show_granted_clearances
-				+ '&show_open_clearances=' + show_open_clearances);
-		var taskArray = jQuery.parseJSON(json);
+		var taskArray;
+		var searchText = $.trim($('input#task_search').val());
+		if (searchText.length > 0) {
+			taskArray = searchTasks(searchText);
+		} else {
+			var json = httpGet('task?cmd=tasklist&show_notifications='
+					+ show_notifications + '&show_finished_tasks='
+					+ show_finished_tasks + '&show_open_tasks=' + show_open_tasks
+					+ '&show_granted_clearances=' + show_granted_clearances
+					+ '&show_open_clearances=' + show_open_clearances);
+			taskArray = jQuery.parseJSON(json);
+		}
 
 		if (taskArray.length == 0) {
 			var message = "<fmt:message key='info.no_tasks_assigned'/><br>";
@@ -576,35 +592,124 @@
 		}
 
 		for ( var i in taskArray) {
-			var task = taskArray[i];
-			var row = $("<tr>");
-			row.data('tkey', task.tkey);
-			var col1 = $("<td>");
-			var icon = getStatusIcon(task.status_tkey);
-			col1.append().html(icon);
-			var col2 = $("<td>");
-			col2.append().html(task.triggername);
-			var col3 = $("<td>");
-			col3.append().html(task.requestinguser);
-			row.append(col1);
-			row.append(col2);
-			row.append(col3);
-			$('table#task_table').find('tbody').append(row);
+			$('table#task_table').find('tbody').append(
+					createTaskRow(taskArray[i]));
+		}
+	}
+
+	function createTaskRow(task) {
+		var row = $("<tr>");
+		row.data('tkey', task.tkey);
+		row.data('created', task.created);
+		var col1 = $("<td>");
+		var icon = getStatusIcon(task.status_tkey);
+		col1.append().html(icon);
+		var col2 = $("<td>");
+		col2.append().html(task.triggername);
+		var col3 = $("<td>");
+		col3.append().html(task.requestinguser);
+		row.append(col1);
+		row.append(col2);
+		row.append(col3);
 
-			row.hover(function() {
-				$(this).addClass('hover');
-			}, function() {
-				$(this).removeClass('hover');
-			});
+		row.hover(function() {
+			$(this).addClass('hover');
+		}, function() {
+			$(this).removeClass('hover');
+		});
 
-			row.click(function() {
-				$("table#task_table").find('tbody').children().removeClass(
-						'selected');
-				$(this).addClass('selected');
-				var tkey = $(this).data('tkey');
-				showTask(tkey);
-			});
+		row.click(function() {
+			$("table#task_table").find('tbody').children().removeClass(
+					'selected');
+			$(this).addClass('selected');
+			var tkey = $(this).data('tkey');
+			showTask(tkey, $(this).data('created'));
+		});
+		return row;
+	}
+
+	function isStatusShown(status_tkey) {
+		switch (parseInt(status_tkey)) {
+		case 1:
+			return show_open_tasks;
+		case 4:
+		case 5:
+			return show_finished_tasks;
+		case 6:
+			return show_notifications;
+		case 7:
+			return show_open_clearances;
+		case 8:
+			return show_granted_clearances;
 		}
+		return false;
+	}
+
+	// updates the task list with a change pushed by the server
+	function applyTaskEvent(event) {
+		if ($.trim($('input#task_search').val()).length > 0) {
+			// search results are only refreshed on request
+			return;
+		}
+		var tbody = $("table#task_table").find('tbody');
+		var existing = tbody.children().filter(function() {
+			return $(this).data('tkey') == event.tkey;
+		});
+		if (event.op == 'DELETE' || !isStatusShown(event.status_tkey)) {
+			existing.remove();
+			return;
+		}
+		var row = createTaskRow(event);
+		if (existing.length > 0) {
+			if (existing.hasClass('selected')) {
+				row.addClass('selected');
+			}
+			existing.replaceWith(row);
+		} else {
+			// replaces the hint that no tasks are assigned
+			tbody.children().filter(function() {
+				return $(this).data('tkey') === undefined;
+			}).remove();
+			tbody.prepend(row);
+		}
+		if (selectedTask == event.tkey) {
+			showTask(event.tkey, event.created);
+		}
+	}
+
+	function listenForTaskEvents() {
+		if (typeof (EventSource) === 'undefined') {
+			return;
+		}
+		var source = new EventSource('task/events');
+		source.addEventListener('task', function(e) {
+			applyTaskEvent(jQuery.parseJSON(e.data));
+		});
+	}
+
+	function searchTasks(text) {
+		var status = [];
+		if (show_open_tasks) {
+			status.push(1);
+		}
+		if (show_finished_tasks) {
+			status.push(4, 5);
+		}
+		if (show_notifications) {
+			status.push(6);
+		}
+		if (show_open_clearances) {
+			status.push(7);
+		}
+		if (show_granted_clearances) {
+			status.push(8);
+		}
+		if (status.length == 0) {
+			return [];
+		}
+		var json = httpGet('task?cmd=search&q=' + encodeURIComponent(text)
+				+ '&status=' + status.join(',') + '&page_size=500');
+		return jQuery.parseJSON(json).tasks;
 	}
 
 	function deleteTasks() {
@@ -680,6 +785,27 @@
 		return xmlHttp.responseText;
 	}
 
+	// responses by URL, revalidated with their ETag
+	var responseCache = {};
+
+	function httpGetCached(theUrl) {
+		var cached = responseCache[theUrl];
+		var xmlHttp = new XMLHttpRequest();
+		xmlHttp.open("GET", theUrl, false);
+		if (cached) {
+			xmlHttp.setRequestHeader("If-None-Match", cached.etag);
+		}
+		xmlHttp.send(null);
+		if (xmlHttp.status == 304 && cached) {
+			return cached.response;
+		}
+		var etag = xmlHttp.getResponseHeader("ETag");
+		if (xmlHttp.status == 200 && etag) {
+			responseCache[theUrl] = { etag : etag, response : xmlHttp.responseText };
+		}
+		return xmlHttp.responseText;
+	}
+
 	$(function() {
 		$('#error_dialog').dialog({
 			autoOpen : false,
@@ -853,7 +979,12 @@
 			<h4>
 				<fmt:message key='title.tasklist' />
 			</h4>
-			<div style="position: relative; width: 100%; height: 535px;"
+			<div style="width: 100%; padding-bottom: 4px;">
+				<input id="task_search" type="text" size="30"
+					placeholder="<fmt:message key='label.search'/>"
+					onkeydown="if (event.keyCode == 13) { loadTaskList(); }" />
+			</div>
+			<div style="position: relative; width: 100%; height: 505px;"
 				class="scrollingtable">
 				<!-- style="position: relative; width: 95%; height: 85%;"  -->
 				<table id="task_table" class="pointer" width="100%">
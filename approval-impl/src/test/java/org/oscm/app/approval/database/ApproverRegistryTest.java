@@ -0,0 +1,42 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ApproverRegistryTest {
+
+  @Mock DataAccessService das;
+
+  @Test
+  public void testGetApproverKey() throws Exception {
+    // given
+    ApproverRegistry registry = new ApproverRegistry();
+    doReturn(7).when(das).registerApprover("org1");
+    doReturn(8).when(das).registerApprover("org2");
+
+    // when
+    registry.getApproverKey("org1", das);
+    int result1 = registry.getApproverKey("org1", das);
+    int result2 = registry.getApproverKey("org2", das);
+
+    // then
+    assertEquals(7, result1);
+    assertEquals(8, result2);
+    verify(das, times(1)).registerApprover("org1");
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.oscm.intf.TriggerService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AutoApprovalSchedulerTest {
+
+  @Mock DataAccessService das;
+  @Mock DataSource ds;
+  @Mock Connection con;
+  @Mock PreparedStatement ps;
+
+  Properties props = new Properties();
+  AutoApprovalScheduler scheduler;
+
+  @Before
+  public void setUp() throws Exception {
+    props.setProperty("autoapproval.delay.millis", "500");
+    scheduler = spy(new AutoApprovalScheduler(das, new ApprovalConfig(props)));
+  }
+
+  @Test
+  public void schedule() throws Exception {
+    // given
+    doReturn(ds).when(das).getDatasource();
+    doReturn(con).when(ds).getConnection();
+    doReturn(ps).when(con).prepareStatement(anyString());
+
+    // when
+    scheduler.schedule("customer", 12000);
+
+    // then
+    verify(con).prepareStatement(RetryQueue.INSERT);
+    verify(ps).setString(1, "autoapproval");
+    verify(ps).setString(2, "12000");
+    verify(ps).setBytes(3, "customer".getBytes(UTF_8));
+    verify(ps).setLong(4, 500);
+  }
+
+  @Test
+  public void schedule_notStored() throws Exception {
+    // given
+    doThrow(new SQLException("database not available")).when(das).getDatasource();
+
+    // when
+    scheduler.schedule("customer", 12000);
+  }
+
+  @Test
+  public void process() throws Exception {
+    // given
+    doNothing().when(scheduler).approve("customer", 12000);
+
+    // when
+    scheduler.process(new RetryQueue.Entry(5, "12000", "customer".getBytes(UTF_8), 1));
+
+    // then
+    verify(scheduler).approve("customer", 12000);
+  }
+
+  @Test
+  public void testCreateApproveActionWSCall() throws Exception {
+    // given
+    TriggerService triggerService = mock(TriggerService.class);
+    // when
+    String result =
+        (String)
+            scheduler
+                .createApproveActionWSCall(TriggerService.class, 12000)
+                .execute(triggerService);
+    // then
+    assertEquals("OK", result);
+    verify(triggerService).approveAction(12000);
+  }
+
+  @Test(expected = Exception.class)
+  public void testCreateApproveActionWSCallThrowException() throws Exception {
+    // when
+    scheduler.createApproveActionWSCall(TriggerService.class, 12000).execute(null);
+  }
+}
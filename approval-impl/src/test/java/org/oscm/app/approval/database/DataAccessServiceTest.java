@@ -11,10 +11,17 @@ package org.oscm.app.approval.database;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalMatchers.not;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -25,10 +32,12 @@ import java.sql.ResultSet;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import javax.sql.DataSource;
 
@@ -38,10 +47,12 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.oscm.app.approval.util.ApprovalConfig;
 import org.oscm.vo.VOOrganization;
 import org.oscm.vo.VOTriggerDefinition;
 import org.oscm.vo.VOTriggerProcess;
 import org.oscm.vo.VOUser;
+import org.postgresql.ds.PGPoolingDataSource;
 
 /** @author worf */
 @RunWith(MockitoJUnitRunner.class)
@@ -106,6 +117,19 @@ public class DataAccessServiceTest {
     assertEquals(1, result);
   }
 
+  @Test
+  public void testRegisterApprover() throws Exception {
+    // given
+    doReturn(3).when(rs).getInt("tkey");
+
+    // when
+    int result = dataService.registerApprover("orgId");
+
+    // then
+    assertEquals(3, result);
+    verify(ps, times(1)).executeQuery();
+  }
+
   @Test
   public void testCreateApprovalTask() throws Exception {
     // given
@@ -123,17 +147,30 @@ public class DataAccessServiceTest {
   }
 
   @Test
-  public void testDeleteApprovedTasks() throws Exception {
+  public void testBatchUpdateTaskStatus() throws Exception {
+    // given
+    Task task1 = new Task();
+    task1.tkey = "1";
+    Task task2 = new Task();
+    task2.tkey = "2";
+    doReturn(new int[] {1, 0}).when(ps).executeBatch();
+
     // when
-    dataService.deleteApprovedTasks("", true, true, true);
+    int[] result =
+        dataService.batchUpdateTaskStatus(
+            Arrays.asList(task1, task2), 3, Task.ApprovalStatus.APPROVED);
 
     // then
-    verify(ps, times(1)).executeUpdate();
+    assertEquals(2, result.length);
+    verify(ps, times(2)).addBatch();
+    verify(ps, never()).executeUpdate();
+    verify(con, times(1)).commit();
   }
 
   @Test
   public void testGetTaskList() throws Exception {
     // given
+    doReturn(Timestamp.valueOf("2020-10-01 12:00:00")).when(rs).getTimestamp("created");
     doReturn(1).when(rs).getInt("status_tkey");
     doReturn("trigger").when(rs).getString("triggername");
     doReturn("orgid").when(rs).getString("orgid");
@@ -150,6 +187,262 @@ public class DataAccessServiceTest {
     assertEquals("user", result.get(0).requestinguser);
   }
 
+  @Test
+  public void testStreamTaskList_paged() throws Exception {
+    // given
+    Timestamp created = Timestamp.valueOf("2020-10-01 12:00:00.123456");
+    when(rs.next()).thenReturn(true, true, false);
+    doReturn(1).when(rs).getInt("status_tkey");
+    doReturn(5).when(rs).getInt("tkey");
+    doReturn(created).when(rs).getTimestamp("created");
+    TaskListQuery query = new TaskListQuery();
+    query.orgId = "orgId";
+    query.show_open_tasks = true;
+    query.setPageSize(1);
+    List<Task> tasks = new ArrayList<>();
+
+    // when
+    TaskCursor next = dataService.streamTaskList(query, tasks::add);
+
+    // then
+    assertEquals(1, tasks.size());
+    assertEquals(5, next.getTkey());
+    assertEquals(created, next.getCreated());
+    verify(ps).setInt(3, 2);
+    verify(ps).setFetchSize(DataAccessService.TASKLIST_FETCH_SIZE);
+  }
+
+  @Test
+  public void testStreamTaskList_lastPage() throws Exception {
+    // given
+    doReturn(Timestamp.valueOf("2020-10-01 12:00:00")).when(rs).getTimestamp("created");
+    TaskListQuery query = new TaskListQuery();
+    query.orgId = "orgId";
+    query.show_finished_tasks = true;
+    query.setPageSize(10);
+    query.cursor = new TaskCursor(Timestamp.valueOf("2020-10-01 12:00:00"), 9);
+    List<Task> tasks = new ArrayList<>();
+
+    // when
+    TaskCursor next = dataService.streamTaskList(query, tasks::add);
+
+    // then
+    assertEquals(1, tasks.size());
+    assertNull(next);
+    verify(ps).setTimestamp(4, query.cursor.getCreated());
+    verify(ps).setTimestamp(5, query.cursor.getCreated());
+    verify(ps).setInt(6, 9);
+    verify(ps).setInt(7, 11);
+  }
+
+  @Test
+  public void testStreamTaskList_noStatus() throws Exception {
+    // given
+    reset(ds, rs);
+    TaskListQuery query = new TaskListQuery();
+    query.orgId = "orgId";
+
+    // when
+    TaskCursor next = dataService.streamTaskList(query, task -> fail());
+
+    // then
+    assertNull(next);
+    verify(ds, never()).getConnection();
+  }
+
+  @Test
+  public void testGetTask_readReplica() throws Exception {
+    // given
+    DataSource replica = mock(DataSource.class);
+    Connection replicaCon = mock(Connection.class);
+    doReturn(replica).when(dataService).getReadDatasource();
+    doReturn(replicaCon).when(replica).getConnection();
+    doReturn(ps).when(replicaCon).prepareStatement(anyString());
+    doReturn("7").when(rs).getString("tkey");
+
+    // when
+    dataService.getTask("7", TaskProjection.LOCALE);
+    dataService.getTask("7", TaskProjection.LOCALE, true);
+
+    // then
+    verify(replica, times(1)).getConnection();
+    verify(ds, times(1)).getConnection();
+  }
+
+  @Test
+  public void testGetTaskCounts() throws Exception {
+    // given
+    when(rs.next()).thenReturn(true, true, false);
+    when(rs.getInt("status_tkey")).thenReturn(1, 4);
+    when(rs.getLong("n")).thenReturn(3L, 12L);
+
+    // when
+    Map<Integer, Long> counts = dataService.getTaskCounts(5);
+
+    // then
+    verify(ps, times(1)).setInt(1, 5);
+    assertEquals(Long.valueOf(3), counts.get(1));
+    assertEquals(Long.valueOf(12), counts.get(4));
+    assertEquals(2, counts.size());
+  }
+
+  @Test
+  public void testSearchTasks() throws Exception {
+    // given
+    doReturn(Timestamp.valueOf("2020-10-01 12:00:00")).when(rs).getTimestamp("created");
+    TaskSearchQuery query = new TaskSearchQuery();
+    query.approverKey = 5;
+    query.text = " smith ";
+    query.statusKeys.add(1);
+    query.triggerName = "SUBSCRIBE_TO_SERVICE";
+    query.setPageSize(1);
+    when(rs.next()).thenReturn(true, true, false);
+    doReturn("7").when(rs).getString("tkey");
+    List<Task> tasks = new ArrayList<>();
+
+    // when
+    boolean more = dataService.searchTasks(query, tasks::add);
+
+    // then
+    assertTrue(more);
+    assertEquals(1, tasks.size());
+    verify(con).prepareStatement(contains("t.search @@ q.query"));
+    verify(ps).setString(1, "smith");
+    verify(ps).setInt(2, 5);
+    verify(ps).setInt(3, 1);
+    verify(ps).setString(4, "SUBSCRIBE_TO_SERVICE");
+    verify(ps).setInt(5, 2);
+    verify(ps).setInt(6, 0);
+  }
+
+  @Test
+  public void testSearchTasks_withoutText() throws Exception {
+    // given
+    TaskSearchQuery query = new TaskSearchQuery();
+    query.approverKey = 5;
+    when(rs.next()).thenReturn(false);
+
+    // when
+    boolean more = dataService.searchTasks(query, task -> {});
+
+    // then
+    assertFalse(more);
+    verify(con).prepareStatement(not(contains("tsquery")));
+    verify(ps).setInt(1, 5);
+  }
+
+  @Test
+  public void testGetSearchFacets() throws Exception {
+    // given
+    TaskSearchQuery query = new TaskSearchQuery();
+    query.approverKey = 5;
+    query.text = "smith";
+    query.statusKeys.add(1);
+    when(rs.next()).thenReturn(true, true, true, false);
+    when(rs.getInt("trigger_facet")).thenReturn(0, 0, 1);
+    when(rs.getInt("status_tkey")).thenReturn(1, 4);
+    doReturn("SUBSCRIBE_TO_SERVICE").when(rs).getString("triggername");
+    when(rs.getLong("n")).thenReturn(2L, 3L, 5L);
+
+    // when
+    TaskFacets facets = dataService.getSearchFacets(query);
+
+    // then
+    assertEquals(5, facets.getTotal());
+    assertEquals(Long.valueOf(5), facets.triggername.get("SUBSCRIBE_TO_SERVICE"));
+    verify(con).prepareStatement(not(contains("t.status_tkey in")));
+  }
+
+  @Test
+  public void testGetDataSourceProvider_jndi() {
+    // given
+    DataAccessService.setDataSourceProvider(null);
+
+    // when
+    DataSourceProvider provider = DataAccessService.getDataSourceProvider();
+
+    // then
+    assertTrue(provider instanceof JndiDataSourceProvider);
+  }
+
+  @Test
+  public void testCreateDataSourceProvider_jndi() {
+    // when
+    DataSourceProvider provider =
+        DataAccessService.createDataSourceProvider(new ApprovalConfig(new Properties()));
+
+    // then
+    assertTrue(provider instanceof JndiDataSourceProvider);
+  }
+
+  @Test
+  public void testCreateDataSourceProvider_jdbc() throws Exception {
+    // given
+    Properties props = new Properties();
+    props.put(DataAccessService.DATASOURCE_PROVIDER, "jdbc");
+    props.put(DataAccessService.DATABASE_URL, "jdbc:postgresql://localhost:5433/approvaldb");
+    props.put(DataAccessService.DATASOURCE_POOL_SIZE, "8");
+
+    // when
+    DataSourceProvider provider =
+        DataAccessService.createDataSourceProvider(new ApprovalConfig(props));
+
+    // then
+    assertTrue(provider instanceof JdbcDataSourceProvider);
+    DataSource ds = provider.getDataSource("ApprovalDS");
+    assertSame(ds, provider.getDataSource("ApprovalDS-ReadOnly"));
+    PGPoolingDataSource pool = (PGPoolingDataSource) ds;
+    assertEquals("localhost", pool.getServerName());
+    assertEquals(5433, pool.getPortNumber());
+    assertEquals("approvaldb", pool.getDatabaseName());
+    assertEquals(8, pool.getMaxConnections());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateDataSourceProvider_jdbcInvalidUrl() {
+    // given
+    Properties props = new Properties();
+    props.put(DataAccessService.DATASOURCE_PROVIDER, "jdbc");
+    props.put(DataAccessService.DATABASE_URL, "jdbc:mysql://localhost/approvaldb");
+
+    // when
+    DataAccessService.createDataSourceProvider(new ApprovalConfig(props));
+  }
+
+  @Test
+  public void testSetDataSourceProvider() throws Exception {
+    // given
+    DataSource replica = mock(DataSource.class);
+    DataAccessService das = new DataAccessService();
+
+    // when
+    DataAccessService.setDataSourceProvider(name -> replica);
+    try {
+      // then
+      assertSame(replica, das.getDatasource());
+      assertSame(replica, das.getReadDatasource());
+    } finally {
+      DataAccessService.setDataSourceProvider(null);
+    }
+  }
+
+  @Test
+  public void testGetTask_header() throws Exception {
+    // given
+    doReturn("1").when(rs).getString("triggerkey");
+    doReturn("7").when(rs).getString("tkey");
+    doReturn("815").when(rs).getString("row_version");
+    doReturn(new Timestamp(0)).when(rs).getTimestamp("created");
+
+    // when
+    Task result = dataService.getTask("7", TaskProjection.HEADER);
+
+    // then
+    assertEquals("\"7-815\"", result.getETag());
+    verify(rs, never()).getString("description");
+    verify(rs, never()).getString("comment");
+  }
+
   @Test
   public void testGetTask() throws Exception {
     // given
@@ -159,9 +452,6 @@ public class DataAccessServiceTest {
     Date date = dateFormat.parse("12/08/2020");
     long time = date.getTime();
     new Timestamp(time);
-    Map<String, String> data = new HashMap<>();
-    data.put("user.locale", "en");
-
     doReturn("trigger").when(rs).getString("triggername");
     doReturn("orgid").when(rs).getString("orgid");
     doReturn("orgname").when(rs).getString("orgname");
@@ -171,12 +461,16 @@ public class DataAccessServiceTest {
     doReturn("comment").when(rs).getString("comment");
     doReturn("tkey").when(rs).getString("tkey");
     doReturn(new Timestamp(time)).when(rs).getTimestamp("created");
+    doReturn("en").when(rs).getString("user_locale");
+    doReturn("svc").when(rs).getString("service_id");
     doReturn(task).when(dataService).createTask();
-    doReturn(data).when(task).getTriggerProcessData();
     // when
     Task result = dataService.getTask("1");
 
     // then
+    verify(task, never()).getTriggerProcessData();
+    assertEquals("en", result.user_locale);
+    assertEquals("svc", result.service_id);
     assertEquals("orgid", result.orgid);
     assertEquals("trigger", result.triggername);
     assertEquals("orgname", result.orgname);
@@ -199,10 +493,103 @@ public class DataAccessServiceTest {
 
   @Test
   public void testUpdateTaskStatus() throws Exception {
+    // given
+    doReturn("1").when(rs).getString("tkey");
+    doReturn("1").when(rs).getString("triggerkey");
+    doReturn("1").when(rs).getString("status_tkey");
+    doReturn(3).when(rs).getInt("version");
+    doReturn(new Timestamp(0)).when(rs).getTimestamp("created");
+    doReturn(1).when(ps).executeUpdate();
+
     // when
-    dataService.updateTaskStatus("1", "", Task.ApprovalStatus.APPROVED);
+    boolean updated = dataService.updateTaskStatus("1", "", Task.ApprovalStatus.APPROVED);
 
     // then
-    verify(ps, times(1)).executeUpdate();
+    assertTrue(updated);
+    verify(con).prepareStatement(contains("where tkey = ? and status_tkey = ? and version = ?"));
+    verify(ps).setInt(1, Task.ApprovalStatus.APPROVED.tkey);
+    verify(ps).setInt(4, Task.ApprovalStatus.WAITING_FOR_APPROVAL.tkey);
+    verify(ps).setInt(5, 3);
+    verify(con).prepareStatement(contains("and version = ? and created = ?"));
+    verify(ps).setTimestamp(6, new Timestamp(0));
+  }
+
+  @Test
+  public void testGetTask_created() throws Exception {
+    // given
+    when(rs.next()).thenReturn(false);
+
+    // when
+    dataService.getTask("7", "2020-11-05 10:15:00.123", TaskProjection.LOCALE, true);
+
+    // then
+    verify(con).prepareStatement(contains("where t.tkey = ? and t.created = ?"));
+    verify(ps).setInt(1, 7);
+    verify(ps).setTimestamp(2, Timestamp.valueOf("2020-11-05 10:15:00.123"));
+  }
+
+  @Test
+  public void testGetTriggerTasks_created() throws Exception {
+    // given
+    when(rs.next()).thenReturn(false);
+    Task first = new Task();
+    first.tkey = "1";
+    first.created = "2020-11-05 10:15:00.123";
+    Task second = new Task();
+    second.tkey = "2";
+    second.created = "2020-12-01 08:00:00.0";
+
+    // when
+    dataService.getTriggerTasks(Arrays.asList(first, second));
+
+    // then
+    verify(con).prepareStatement(contains("t.tkey in (?,?) and t.created in (?,?)"));
+    verify(ps).setTimestamp(3, Timestamp.valueOf("2020-11-05 10:15:00.123"));
+    verify(ps).setTimestamp(4, Timestamp.valueOf("2020-12-01 08:00:00.0"));
+  }
+
+  @Test
+  public void testUpdateTaskStatus_notFound() throws Exception {
+    // given
+    when(rs.next()).thenReturn(false);
+
+    // when
+    boolean updated = dataService.updateTaskStatus("1", "", Task.ApprovalStatus.APPROVED);
+
+    // then
+    assertFalse(updated);
+    verify(ps, never()).executeUpdate();
+  }
+
+  @Test
+  public void testCompareAndSetTaskStatus_conflict() throws Exception {
+    // given
+    Task task = new Task();
+    task.tkey = "1";
+    task.status_tkey = "1";
+    doReturn(0).when(ps).executeUpdate();
+
+    // when
+    boolean updated =
+        dataService.compareAndSetTaskStatus(task, "", Task.ApprovalStatus.REJECTED);
+
+    // then
+    assertFalse(updated);
+  }
+
+  @Test
+  public void testCompareAndSetTaskStatus_illegalTransition() throws Exception {
+    // given
+    Task task = new Task();
+    task.tkey = "1";
+    task.status_tkey = Integer.toString(Task.ApprovalStatus.APPROVED.tkey);
+
+    // when
+    boolean updated =
+        dataService.compareAndSetTaskStatus(task, "", Task.ApprovalStatus.REJECTED);
+
+    // then
+    assertFalse(updated);
+    verify(ds, never()).getConnection();
   }
 }
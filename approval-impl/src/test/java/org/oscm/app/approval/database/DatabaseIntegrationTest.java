@@ -0,0 +1,175 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the SQL of the approval tool against a real PostgreSQL database, which is set up from the
+ * update scripts. With <code>mvn test -Pembedded-postgres</code> an embedded PostgreSQL is started
+ * for the test. Otherwise the JDBC URL of a test database must be given, e.g. <code>
+ * -Dapproval.test.database.url=jdbc:postgresql://localhost:5432/approvaltest
+ * -Dapproval.test.database.user=postgres</code>, or the test is skipped.
+ */
+public class DatabaseIntegrationTest {
+
+  private static final String URL = System.getProperty("approval.test.database.url", "");
+  private static final String EMBEDDED_POSTGRES =
+      "io.zonky.test.db.postgres.embedded.EmbeddedPostgres";
+
+  private static Closeable postgres;
+  private static JdbcDataSourceProvider external;
+  private static DataAccessService das;
+
+  @BeforeClass
+  public static void setUpDatabase() throws Exception {
+    if (URL.isEmpty()) {
+      DataSource ds = startEmbeddedPostgres();
+      DataAccessService.setDataSourceProvider(name -> ds);
+    } else {
+      external =
+          new JdbcDataSourceProvider(
+              URL,
+              System.getProperty("approval.test.database.user"),
+              System.getProperty("approval.test.database.password"),
+              4);
+      DataAccessService.setDataSourceProvider(external);
+    }
+    das = new DataAccessService();
+    new SchemaUpdater(das).update();
+  }
+
+  /** The embedded PostgreSQL is only on the class path with the embedded-postgres profile. */
+  private static DataSource startEmbeddedPostgres() throws Exception {
+    Class<?> embedded;
+    try {
+      embedded = Class.forName(EMBEDDED_POSTGRES);
+    } catch (ClassNotFoundException e) {
+      Assume.assumeTrue(
+          "No test database, run with -Pembedded-postgres or -Dapproval.test.database.url", false);
+      return null;
+    }
+    postgres = (Closeable) embedded.getMethod("start").invoke(null);
+    return (DataSource) embedded.getMethod("getPostgresDatabase").invoke(postgres);
+  }
+
+  @AfterClass
+  public static void tearDownDatabase() throws Exception {
+    DataAccessService.setDataSourceProvider(null);
+    if (external != null) {
+      external.close();
+    }
+    if (postgres != null) {
+      postgres.close();
+    }
+  }
+
+  @Test
+  public void taskLifecycle() throws Exception {
+    // given
+    int approverKey = das.registerApprover("it-org-" + System.nanoTime());
+    String tkey = insertTask(approverKey, Task.ApprovalStatus.WAITING_FOR_APPROVAL);
+
+    // when
+    das.updateTaskStatus(tkey, "ok", Task.ApprovalStatus.APPROVED);
+
+    // then
+    Task task = das.getTask(tkey, TaskProjection.PAYLOAD, true);
+    assertEquals("ok", task.comment);
+    Map<Integer, Long> counts = das.getTaskCounts(approverKey);
+    assertEquals(Long.valueOf(1), counts.get(Task.ApprovalStatus.APPROVED.tkey));
+  }
+
+  @Test
+  public void searchTasks() throws Exception {
+    // given
+    int approverKey = das.registerApprover("it-search-" + System.nanoTime());
+    insertTask(approverKey, Task.ApprovalStatus.WAITING_FOR_APPROVAL);
+    TaskSearchQuery query = new TaskSearchQuery();
+    query.approverKey = approverKey;
+    query.text = "supplier";
+
+    // when
+    boolean more = das.searchTasks(query, task -> assertEquals("it trigger", task.triggername));
+    TaskFacets facets = das.getSearchFacets(query);
+
+    // then
+    assertFalse(more);
+    assertEquals(1, facets.getTotal());
+  }
+
+  @Test
+  public void taskKeyUniqueAcrossPartitions() throws Exception {
+    // given
+    int approverKey = das.registerApprover("it-unique-" + System.nanoTime());
+    String tkey = insertTask(approverKey, Task.ApprovalStatus.WAITING_FOR_APPROVAL);
+
+    // when
+    try (Connection con = das.getDatasource().getConnection();
+        PreparedStatement stmt =
+            con.prepareStatement(
+                "insert into task (tkey,triggerkey,triggername,orgid,orgname,requestinguser,description,created,status_tkey,approver_tkey) select tkey,triggerkey,triggername,orgid,orgname,requestinguser,description,timestamp '2000-01-01',status_tkey,approver_tkey from task where tkey = ?")) {
+      stmt.setInt(1, Integer.parseInt(tkey));
+      stmt.executeUpdate();
+      fail();
+    } catch (SQLException e) {
+      // then
+      assertEquals("23505", e.getSQLState());
+    }
+  }
+
+  @Test
+  public void getTaskByCreationDate() throws Exception {
+    // given
+    int approverKey = das.registerApprover("it-created-" + System.nanoTime());
+    String tkey = insertTask(approverKey, Task.ApprovalStatus.WAITING_FOR_APPROVAL);
+    Task header = das.getTask(tkey, TaskProjection.HEADER, true);
+
+    // when
+    boolean updated =
+        das.updateTaskStatus(tkey, header.created, "ok", Task.ApprovalStatus.APPROVED);
+
+    // then
+    assertTrue(updated);
+    assertEquals(tkey, das.getTask(tkey, header.created, TaskProjection.HEADER, true).tkey);
+  }
+
+  private String insertTask(int approverKey, Task.ApprovalStatus status) throws Exception {
+    String query =
+        "insert into task (triggerkey,triggername,orgid,orgname,requestinguser,description,created,status_tkey,approver_tkey) values (1,'it trigger','customer','Supplier Inc.','user',cast(? as jsonb),?,?,?) returning tkey";
+    try (Connection con = das.getDatasource().getConnection();
+        PreparedStatement stmt = con.prepareStatement(query)) {
+      stmt.setString(1, "{\"ctmg_user\":{\"locale\":\"en\"}}");
+      stmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+      stmt.setInt(3, status.tkey);
+      stmt.setInt(4, approverKey);
+      try (ResultSet rs = stmt.executeQuery()) {
+        rs.next();
+        return rs.getString("tkey");
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.oscm.app.approval.json.TriggerProcessData;
+
+public class ProcessDataCacheTest {
+
+  @Test
+  public void get_hit() {
+    // given
+    ProcessDataCache cache = new ProcessDataCache(10, 1024);
+    ProcessDataCache.Entry entry = entry("{}");
+    cache.put("1", entry);
+
+    // when
+    ProcessDataCache.Entry result = cache.get("1", "{}");
+
+    // then
+    assertSame(entry, result);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void get_otherDescription() {
+    // given
+    ProcessDataCache cache = new ProcessDataCache(10, 1024);
+    cache.put("1", entry("{}"));
+
+    // when
+    ProcessDataCache.Entry result = cache.get("1", "{\"a\":1}");
+
+    // then
+    assertNull(result);
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void put_evictsLeastRecentlyUsed() {
+    // given
+    ProcessDataCache cache = new ProcessDataCache(2, 1024);
+    cache.put("1", entry("{}"));
+    cache.put("2", entry("{}"));
+    cache.get("1", "{}");
+
+    // when
+    cache.put("3", entry("{}"));
+
+    // then
+    assertNotNull(cache.get("1", "{}"));
+    assertNull(cache.get("2", "{}"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void put_boundedByBytes() {
+    // given
+    ProcessDataCache cache = new ProcessDataCache(10, 10 * ProcessDataCache.BYTES_PER_CHAR);
+    cache.put("1", entry("12345"));
+
+    // when
+    cache.put("2", entry("123456"));
+
+    // then
+    assertEquals(1, cache.size());
+    assertEquals(6 * ProcessDataCache.BYTES_PER_CHAR, cache.getEstimatedBytes());
+  }
+
+  @Test
+  public void put_tooLarge() {
+    // given
+    ProcessDataCache cache = new ProcessDataCache(10, 4 * ProcessDataCache.BYTES_PER_CHAR);
+
+    // when
+    cache.put("1", entry("12345"));
+
+    // then
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void invalidate() {
+    // given
+    ProcessDataCache cache = new ProcessDataCache(10, 1024);
+    cache.put("1", entry("{}"));
+
+    // when
+    cache.invalidate("1");
+
+    // then
+    assertNull(cache.get("1", "{}"));
+    assertEquals(0, cache.getEstimatedBytes());
+  }
+
+  @Test
+  public void start_registersStatistics() throws Exception {
+    // given
+    ProcessDataCache cache = new ProcessDataCache(10, 1024);
+    cache.put("1", entry("{}"));
+    cache.get("1", "{}");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(ProcessDataCache.OBJECT_NAME);
+
+    // when
+    cache.start();
+
+    // then
+    try {
+      assertEquals(Long.valueOf(1), server.getAttribute(name, "HitCount"));
+      assertEquals(Integer.valueOf(1), server.getAttribute(name, "Size"));
+      assertEquals(
+          Long.valueOf(2 * ProcessDataCache.BYTES_PER_CHAR),
+          server.getAttribute(name, "EstimatedBytes"));
+    } finally {
+      cache.stop();
+    }
+    assertFalse(server.isRegistered(name));
+  }
+
+  private static ProcessDataCache.Entry entry(String description) {
+    return new ProcessDataCache.Entry(description, new TriggerProcessData());
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.oscm.app.approval.database.RetryQueue.Entry;
+import org.oscm.app.approval.util.ApprovalConfig;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RetryQueueTest {
+
+  @Mock DataAccessService das;
+  @Mock DataSource ds;
+  @Mock Connection con;
+  @Mock PreparedStatement ps;
+  @Mock ResultSet rs;
+  @Mock RetryQueue.Handler handler;
+
+  Properties props = new Properties();
+  RetryQueue queue;
+
+  @Before
+  public void setUp() throws Exception {
+    props.setProperty("test.retry.millis", "1000");
+    props.setProperty("test.retry.max.millis", "5000");
+    props.setProperty("test.max.attempts", "3");
+    props.setProperty("test.lease.millis", "60000");
+    queue = new RetryQueue("testqueue", "test", das, new ApprovalConfig(props), handler);
+  }
+
+  private void givenDatabase() throws Exception {
+    doReturn(ds).when(das).getDatasource();
+    doReturn(con).when(ds).getConnection();
+    doReturn(ps).when(con).prepareStatement(anyString());
+  }
+
+  private void givenClaimed(int attempts) throws Exception {
+    givenDatabase();
+    doReturn(rs).when(ps).executeQuery();
+    when(rs.next()).thenReturn(true, true);
+    when(rs.getLong("tkey")).thenReturn(5L);
+    when(rs.getString("trigger")).thenReturn("entry");
+    when(rs.getBytes("payload")).thenReturn(new byte[] {7});
+    when(rs.getInt("attempts")).thenReturn(attempts);
+  }
+
+  @Test
+  public void enqueue() throws Exception {
+    // given
+    givenDatabase();
+    doReturn(Integer.valueOf(1)).when(ps).executeUpdate();
+
+    // when
+    boolean stored = queue.enqueue("entry", new byte[] {7}, 500);
+
+    // then
+    assertTrue(stored);
+    verify(con).prepareStatement(RetryQueue.INSERT);
+    verify(ps).setString(1, "testqueue");
+    verify(ps).setString(2, "entry");
+    verify(ps).setBytes(3, new byte[] {7});
+    verify(ps).setLong(4, 500);
+  }
+
+  @Test
+  public void enqueue_alreadyStored() throws Exception {
+    // given
+    givenDatabase();
+
+    // when
+    boolean stored = queue.enqueue("entry", new byte[] {7}, 500);
+
+    // then
+    assertFalse(stored);
+  }
+
+  @Test
+  public void processNext_none() throws Exception {
+    // given
+    givenDatabase();
+    doReturn(rs).when(ps).executeQuery();
+
+    // when
+    boolean processed = queue.processNext();
+
+    // then
+    assertFalse(processed);
+    verify(con).prepareStatement(RetryQueue.CLAIM);
+    verify(ps).setLong(1, 60000);
+    verify(ps).setString(2, "testqueue");
+    verify(handler, never()).process(any());
+  }
+
+  @Test
+  public void processNext() throws Exception {
+    // given
+    givenClaimed(1);
+    when(rs.getLong("latency")).thenReturn(120L);
+    ArgumentCaptor<Entry> entry = ArgumentCaptor.forClass(Entry.class);
+
+    // when
+    boolean processed = queue.processNext();
+
+    // then
+    assertTrue(processed);
+    verify(handler).process(entry.capture());
+    assertEquals(5L, entry.getValue().tkey);
+    assertEquals("entry", entry.getValue().name);
+    assertEquals(1, entry.getValue().attempts);
+    verify(con).prepareStatement(RetryQueue.COMPLETE);
+    verify(ps).setLong(1, 5L);
+    assertEquals(1, queue.getProcessed());
+    assertEquals(120, queue.getLastLatencyMillis());
+    assertEquals(120, queue.getMaxLatencyMillis());
+    assertEquals(120, queue.getAverageLatencyMillis());
+  }
+
+  @Test
+  public void processNext_retry() throws Exception {
+    // given
+    givenClaimed(2);
+    doThrow(new RuntimeException("BES not available")).when(handler).process(any());
+    ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+
+    // when
+    queue.processNext();
+
+    // then
+    verify(con).prepareStatement(RetryQueue.RETRY);
+    verify(ps, times(2)).setLong(eq(1), delay.capture());
+    assertBetween(1000, 2000, delay.getAllValues().get(1).longValue());
+    verify(ps).setString(2, "java.lang.RuntimeException: BES not available");
+    verify(con, never()).prepareStatement(RetryQueue.COMPLETE);
+    assertEquals(1, queue.getRetried());
+    assertEquals(0, queue.getProcessed());
+  }
+
+  @Test
+  public void processNext_failed() throws Exception {
+    // given
+    givenClaimed(3);
+    doThrow(new RuntimeException("BES not available")).when(handler).process(any());
+
+    // when
+    queue.processNext();
+
+    // then
+    verify(con).prepareStatement(RetryQueue.FAIL);
+    verify(con, never()).prepareStatement(RetryQueue.RETRY);
+    assertEquals(0, queue.getRetried());
+  }
+
+  @Test
+  public void getRetryDelay() {
+    for (int i = 0; i < 20; i++) {
+      assertBetween(500, 1000, queue.getRetryDelay(1));
+      assertBetween(1000, 2000, queue.getRetryDelay(2));
+      assertBetween(2000, 4000, queue.getRetryDelay(3));
+      assertBetween(2500, 5000, queue.getRetryDelay(4));
+      assertBetween(2500, 5000, queue.getRetryDelay(100));
+    }
+  }
+
+  private static void assertBetween(long min, long max, long value) {
+    assertTrue(value + " not in [" + min + "," + max + "]", value >= min && value <= max);
+  }
+
+  @Test
+  public void count() throws Exception {
+    // given
+    doReturn(ds).when(das).getReadDatasource();
+    doReturn(con).when(ds).getConnection();
+    doReturn(ps).when(con).prepareStatement(RetryQueue.COUNT);
+    doReturn(rs).when(ps).executeQuery();
+    when(rs.next()).thenReturn(true);
+    when(rs.getLong(1)).thenReturn(3L);
+
+    // when
+    long count = queue.count("QUEUED");
+
+    // then
+    assertEquals(3, count);
+    verify(ps).setString(1, "testqueue");
+    verify(ps).setString(2, "QUEUED");
+  }
+
+  @Test
+  public void count_databaseFailure() throws Exception {
+    // given
+    doThrow(new IllegalStateException()).when(das).getReadDatasource();
+
+    // then
+    assertEquals(-1, queue.count("QUEUED"));
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SchemaUpdaterTest {
+
+  @Mock DataAccessService das;
+  @Mock DataSource ds;
+  @Mock Connection con;
+  @Mock PreparedStatement ps;
+  @Mock Statement stmt;
+  @Mock ResultSet rs;
+
+  SchemaUpdater updater;
+
+  @Before
+  public void setUp() throws Exception {
+    doReturn(ds).when(das).getSchemaDatasource();
+    doReturn(con).when(ds).getConnection();
+    doReturn(ps).when(con).prepareStatement(anyString());
+    doReturn(rs).when(ps).executeQuery();
+    when(rs.next()).thenReturn(true).thenReturn(false);
+    updater = spy(new SchemaUpdater(das));
+  }
+
+  @Test
+  public void testUpdate() throws Exception {
+    // given
+    doReturn(2).when(rs).getInt("schemaversion");
+    doReturn(stmt).when(con).createStatement();
+    doReturn("create index a on task (tkey); create index b on task (created);")
+        .when(updater)
+        .loadScript(3);
+    doReturn(null).when(updater).loadScript(4);
+
+    // when
+    int version = updater.update();
+
+    // then
+    assertEquals(3, version);
+    verify(stmt).execute("create index a on task (tkey)");
+    verify(stmt).execute("create index b on task (created)");
+    verify(ps).setInt(3, 3);
+    verify(con, times(1)).commit();
+  }
+
+  @Test
+  public void testUpdate_emptyVersionTable() throws Exception {
+    // given
+    doReturn(0).when(rs).getInt("schemaversion");
+    doReturn(null).when(updater).loadScript(2);
+
+    // when
+    int version = updater.update();
+
+    // then
+    assertEquals(SchemaUpdater.BASELINE_SCHEMA_VERSION, version);
+    verify(ps).setInt(3, SchemaUpdater.BASELINE_SCHEMA_VERSION);
+    verify(con, never()).commit();
+    verify(con).setAutoCommit(true);
+    verify(con).setAutoCommit(false);
+  }
+
+  @Test
+  public void testUpdate_emptyDatabase() throws Exception {
+    // given
+    doThrow(new SQLException("relation \"version\" does not exist", SchemaUpdater.UNDEFINED_TABLE))
+        .when(ps)
+        .executeQuery();
+    doReturn(stmt).when(con).createStatement();
+    doReturn(null).when(updater).loadScript(2);
+
+    // when
+    int version = updater.update();
+
+    // then
+    assertEquals(SchemaUpdater.BASELINE_SCHEMA_VERSION, version);
+    verify(updater).loadScript(SchemaUpdater.BASELINE_SCHEMA_VERSION);
+    verify(stmt).execute(startsWith("CREATE TABLE task ("));
+    verify(ps).setInt(3, SchemaUpdater.BASELINE_SCHEMA_VERSION);
+    verify(con, times(1)).commit();
+  }
+
+  @Test(expected = SQLException.class)
+  public void testUpdate_scriptFails() throws Exception {
+    // given
+    doReturn(1).when(rs).getInt("schemaversion");
+    doReturn(stmt).when(con).createStatement();
+    doReturn("drop table task").when(updater).loadScript(2);
+    doThrow(new SQLException()).when(stmt).execute(anyString());
+
+    // when
+    try {
+      updater.update();
+    } finally {
+      // then
+      verify(con).rollback();
+      verify(ps, never()).setInt(3, 2);
+    }
+  }
+
+  @Test
+  public void testLoadScript() throws Exception {
+    // when
+    String script = new SchemaUpdater(das).loadScript(2);
+
+    // then
+    assertNotNull(script);
+    assertNull(new SchemaUpdater(das).loadScript(99));
+  }
+
+  @Test
+  public void testSplitStatements() {
+    // given
+    String script =
+        "-- comment; with semicolon\n"
+            + "insert into status values (9,'A;B');\n"
+            + "create function f() returns trigger as $body$ begin return new; end; $body$ language plpgsql;\n"
+            + "/* block; comment */ select 1";
+
+    // when
+    List<String> result = SchemaUpdater.splitStatements(script);
+
+    // then
+    assertEquals(3, result.size());
+    assertEquals("insert into status values (9,'A;B')", result.get(0));
+    assertEquals(
+        "create function f() returns trigger as $body$ begin return new; end; $body$ language plpgsql",
+        result.get(1));
+    assertEquals("select 1", result.get(2));
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.oscm.app.approval.util.ApprovalConfig;
+
+public class TaskChangeFeedTest {
+
+  private static final String PAYLOAD =
+      "{\"op\":\"UPDATE\",\"tkey\":\"11\",\"approver_tkey\":7,\"status_tkey\":\"4\","
+          + "\"triggername\":\"Subscribe\",\"orgid\":\"customer\",\"orgname\":\"Customer Inc.\","
+          + "\"requestinguser\":\"user1\"}";
+
+  private TaskChangeFeed feed;
+
+  @Before
+  public void setUp() {
+    feed = new TaskChangeFeed(mock(DataAccessService.class), mock(ApprovalConfig.class));
+  }
+
+  @After
+  public void tearDown() {
+    feed.stop();
+  }
+
+  @Test
+  public void dispatch_routesToApprover() throws Exception {
+    // given
+    TaskEventHandler handler = mock(TaskEventHandler.class);
+    TaskEventHandler other = mock(TaskEventHandler.class);
+    feed.subscribe(7, handler);
+    feed.subscribe(8, other);
+
+    // when
+    feed.dispatch(PAYLOAD);
+
+    // then
+    ArgumentCaptor<TaskEvent> event = ArgumentCaptor.forClass(TaskEvent.class);
+    verify(handler).handle(event.capture());
+    verify(other, never()).handle(any());
+    assertEquals("UPDATE", event.getValue().op);
+    assertEquals("11", event.getValue().tkey);
+    assertEquals("4", event.getValue().status_tkey);
+    assertEquals("user1", event.getValue().requestinguser);
+  }
+
+  @Test
+  public void dispatch_unsubscribed() throws Exception {
+    // given
+    TaskEventHandler handler = mock(TaskEventHandler.class);
+    feed.subscribe(7, handler);
+    feed.unsubscribe(7, handler);
+
+    // when
+    feed.dispatch(PAYLOAD);
+
+    // then
+    verify(handler, never()).handle(any());
+    assertEquals(0, feed.getSubscriberCount(7));
+  }
+
+  @Test
+  public void dispatch_dropsFailingHandler() throws Exception {
+    // given
+    TaskEventHandler handler = mock(TaskEventHandler.class);
+    TaskEventHandler failing = mock(TaskEventHandler.class);
+    doThrow(new IOException("closed")).when(failing).handle(any());
+    feed.subscribe(7, handler);
+    feed.subscribe(7, failing);
+
+    // when
+    feed.dispatch(PAYLOAD);
+
+    // then
+    verify(handler).handle(any());
+    assertEquals(1, feed.getSubscriberCount(7));
+  }
+
+  @Test
+  public void dispatch_invalidPayload() throws Exception {
+    // given
+    TaskEventHandler handler = mock(TaskEventHandler.class);
+    feed.subscribe(7, handler);
+
+    // when
+    feed.dispatch("no json");
+
+    // then
+    verify(handler, never()).handle(any());
+  }
+}
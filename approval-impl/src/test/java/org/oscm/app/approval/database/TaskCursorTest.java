@@ -0,0 +1,43 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+public class TaskCursorTest {
+
+  @Test
+  public void testEncodeDecode() {
+    // given
+    Timestamp created = Timestamp.valueOf("2020-10-01 12:00:00.123456");
+    TaskCursor cursor = new TaskCursor(created, 4711);
+
+    // when
+    TaskCursor result = TaskCursor.decode(cursor.encode());
+
+    // then
+    assertEquals(created, result.getCreated());
+    assertEquals(4711, result.getTkey());
+  }
+
+  @Test
+  public void testDecode_empty() {
+    assertNull(TaskCursor.decode(""));
+    assertNull(TaskCursor.decode(null));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecode_invalid() {
+    TaskCursor.decode("invalid");
+  }
+}
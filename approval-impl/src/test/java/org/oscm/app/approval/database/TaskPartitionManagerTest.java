@@ -0,0 +1,98 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.oscm.app.approval.util.ApprovalConfig;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TaskPartitionManagerTest {
+
+  @Mock DataAccessService das;
+  @Mock Connection con;
+  @Mock Statement stmt;
+  @Mock PreparedStatement ps;
+  @Mock ResultSet rs;
+  @Mock ResultSet openTasks;
+
+  TaskPartitionManager manager;
+
+  @Before
+  public void setUp() throws Exception {
+    manager = new TaskPartitionManager(das, new ApprovalConfig(new Properties()));
+    doReturn(stmt).when(con).createStatement();
+  }
+
+  @Test
+  public void testCreatePartitions() throws Exception {
+    // when
+    manager.createPartitions(con, YearMonth.of(2020, 11), 2);
+
+    // then
+    verify(stmt)
+        .execute(
+            "create table if not exists task_p202011 partition of task for values from ('2020-11-01') to ('2020-12-01')");
+    verify(stmt)
+        .execute(
+            "create table if not exists task_p202101 partition of task for values from ('2021-01-01') to ('2021-02-01')");
+    verify(stmt).execute("create unique index if not exists task_p202011_tkey_key on task_p202011 (tkey)");
+    verify(stmt)
+        .execute(
+            "do $$ begin if exists (select 1 from pg_roles where rolname = 'approvaluser') then"
+                + " grant all privileges on table task_p202011 to approvaluser; end if; end $$");
+  }
+
+  @Test
+  public void testDropPartitions() throws Exception {
+    // given
+    doReturn(rs).when(stmt).executeQuery(anyString());
+    when(rs.next()).thenReturn(true, true, true, true, false);
+    when(rs.getString("relname"))
+        .thenReturn("task_default", "task_p202001", "task_p202002", "task_p202012");
+    doReturn(ps).when(con).prepareStatement(anyString());
+    doReturn(openTasks).when(ps).executeQuery();
+    // task_p202001 has no open tasks, task_p202002 has
+    when(openTasks.next()).thenReturn(false, true);
+
+    // when
+    List<String> dropped = manager.dropPartitions(con, YearMonth.of(2020, 6));
+
+    // then
+    assertEquals(Arrays.asList("task_p202001"), dropped);
+    verify(stmt).execute("drop table task_p202001");
+    verify(stmt, never()).execute("drop table task_p202002");
+  }
+
+  @Test
+  public void testParseMonth() {
+    assertEquals(YearMonth.of(2020, 11), TaskPartitionManager.parseMonth("task_p202011"));
+    assertNull(TaskPartitionManager.parseMonth("task_default"));
+    assertNull(TaskPartitionManager.parseMonth("task_p2020"));
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.oscm.app.approval.json.Organization;
+import org.oscm.app.approval.json.PriceModel;
+import org.oscm.app.approval.json.Service;
+import org.oscm.app.approval.json.ServiceParameter;
+import org.oscm.app.approval.json.TriggerProcessData;
+import org.oscm.app.approval.json.User;
+import org.oscm.app.dataaccess.AppDataService;
+import org.oscm.app.dataaccess.Credentials;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TaskPropertiesTest {
+
+  @Mock AppDataService appDataService;
+
+  private Task task;
+  private TriggerProcessData data;
+  private ProcessDataCache.Entry parsed;
+
+  @Before
+  public void setUp() {
+    task = new Task();
+    task.tkey = "11";
+    task.comment = "comment";
+    task.description = "{}";
+    data = new TriggerProcessData();
+    data.ctmg_trigger_orgid = "customer";
+    data.ctmg_user = new User();
+    data.ctmg_user.locale = "de";
+    data.ctmg_organization = new Organization();
+    data.ctmg_organization.id = "customer";
+    parsed = new ProcessDataCache.Entry(task.description, data);
+  }
+
+  @Test
+  public void get_withoutLookups() throws Exception {
+    // given
+    Map<String, String> props = new TaskProperties(task, parsed, appDataService);
+
+    // when
+    String locale = props.get("user.locale");
+    String comment = props.get("task.comment");
+
+    // then
+    assertEquals("de", locale);
+    assertEquals("comment", comment);
+    verify(appDataService, never()).getApproverOrgId(anyString());
+    verify(appDataService, never()).loadOrgAdminCredentials(anyString());
+  }
+
+  @Test
+  public void get_lookupsOnce() throws Exception {
+    // given
+    Credentials cred = new Credentials();
+    cred.setUserId("admin");
+    cred.setPassword("secret");
+    doReturn("approver").when(appDataService).getApproverOrgId("customer");
+    doReturn(cred).when(appDataService).loadOrgAdminCredentials("customer");
+    Map<String, String> props = new TaskProperties(task, parsed, appDataService);
+
+    // when
+    String approver = props.get("approver.org.id");
+    String userId = props.get("admin.userid");
+    String password = props.get("admin.password");
+
+    // then
+    assertEquals("approver", approver);
+    assertEquals("admin", userId);
+    assertEquals("secret", password);
+    verify(appDataService, times(1)).loadOrgAdminCredentials("customer");
+  }
+
+  @Test
+  public void get_lookupsIndependent() throws Exception {
+    // given
+    Credentials cred = new Credentials();
+    cred.setUserId("admin");
+    doReturn("approver").when(appDataService).getApproverOrgId("customer");
+    doReturn(cred).when(appDataService).loadOrgAdminCredentials("customer");
+    Map<String, String> approverProps = new TaskProperties(task, parsed, appDataService);
+    Map<String, String> adminProps = new TaskProperties(task, parsed, appDataService);
+
+    // when
+    String approver = approverProps.get("approver.org.id");
+    String userId = adminProps.get("admin.userid");
+
+    // then
+    assertEquals("approver", approver);
+    assertEquals("admin", userId);
+    verify(appDataService, times(1)).getApproverOrgId("customer");
+    verify(appDataService, times(1)).loadOrgAdminCredentials("customer");
+  }
+
+  @Test
+  public void get_serviceParameter() {
+    // given
+    ServiceParameter param = new ServiceParameter();
+    param.id = "RESPONSIBLE_PERSON";
+    param.label = "Responsible";
+    data.ctmg_service = new Service();
+    data.ctmg_service.params.put(param.id, param);
+    Map<String, String> props = new TaskProperties(task, parsed, appDataService);
+
+    // when
+    String label = props.get("service.params.RESPONSIBLE_PERSON.label");
+
+    // then
+    assertEquals("Responsible", label);
+    assertTrue(props.containsKey("service.params.RESPONSIBLE_PERSON.value"));
+    assertFalse(props.containsKey("service.params.OTHER.value"));
+    assertNull(props.get("service.price.text"));
+  }
+
+  @Test
+  public void get_priceTextInUserLocale() {
+    // given
+    data.ctmg_service = new Service();
+    data.ctmg_service.price = new PriceModel();
+    data.ctmg_service.price.oneTimeFee = "10";
+    data.ctmg_service.price.currency = "EUR";
+    Map<String, String> props = new TaskProperties(task, parsed, appDataService);
+
+    // when
+    String text = props.get("service.price.text");
+
+    // then
+    assertEquals("Ab EUR 10", text);
+  }
+
+  @Test
+  public void containsKey() {
+    // given
+    Map<String, String> props = new TaskProperties(task, parsed, appDataService);
+
+    // then
+    assertTrue(props.containsKey("user.email"));
+    assertFalse(props.containsKey("service.id"));
+    assertFalse(props.containsKey("subscription.id"));
+    assertFalse(props.containsKey("mail.subject"));
+  }
+
+  @Test
+  public void put_overrides() {
+    // given
+    Map<String, String> props = new TaskProperties(task, parsed, appDataService);
+
+    // when
+    props.put("mail.subject", "subject");
+    props.put("user.locale", "en");
+
+    // then
+    assertEquals("subject", props.get("mail.subject"));
+    assertEquals("en", props.get("user.locale"));
+    assertEquals("de", new TaskProperties(task, parsed, appDataService).get("user.locale"));
+  }
+
+  @Test
+  public void entrySet_resolvesAll() throws Exception {
+    // given
+    doReturn("approver").when(appDataService).getApproverOrgId("customer");
+    doReturn(new Credentials()).when(appDataService).loadOrgAdminCredentials("customer");
+    Map<String, String> props = new TaskProperties(task, parsed, appDataService);
+    props.put("mail.subject", "subject");
+
+    // when
+    Map<String, String> copy = new HashMap<>(props);
+
+    // then
+    assertEquals("de", copy.get("user.locale"));
+    assertEquals("approver", copy.get("approver.org.id"));
+    assertEquals("subject", copy.get("mail.subject"));
+    assertTrue(copy.containsKey("task.tkey"));
+    assertEquals(props.size(), copy.size());
+  }
+}
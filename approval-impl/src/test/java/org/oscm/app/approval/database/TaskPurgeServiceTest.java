@@ -0,0 +1,106 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.oscm.app.approval.util.ApprovalConfig;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TaskPurgeServiceTest {
+
+  @Mock DataAccessService das;
+  @Mock DataSource ds;
+  @Mock Connection con;
+  @Mock PreparedStatement ps;
+  @Mock Statement settings;
+  @Mock ResultSet rs;
+
+  Properties props = new Properties();
+  TaskPurgeService service;
+
+  @Before
+  public void setUp() throws Exception {
+    props.setProperty("purge.chunk.size", "2");
+    props.setProperty("purge.chunk.pause.millis", "0");
+    service = new TaskPurgeService(das, new ApprovalConfig(props));
+  }
+
+  @Test
+  public void testPurge() throws Exception {
+    // given
+    doReturn(ds).when(das).getDatasource();
+    doReturn(con).when(ds).getConnection();
+    doReturn(ps).when(con).prepareStatement(anyString());
+    doReturn(settings).when(con).createStatement();
+    doReturn(rs).when(ps).executeQuery();
+    // first chunk is full, second chunk has one task left
+    when(rs.next()).thenReturn(true, true, false, true, false);
+    when(rs.getInt("tkey")).thenReturn(7, 3, 9);
+    when(rs.getTimestamp("created"))
+        .thenReturn(new Timestamp(1000), new Timestamp(2000), new Timestamp(2000));
+
+    // when
+    int deleted = service.purge(Integer.valueOf(1), 6, new Timestamp(0));
+
+    // then
+    assertEquals(3, deleted);
+    verify(ps, times(2)).executeQuery();
+    verify(ps).setTimestamp(2, new Timestamp(0));
+    verify(ps).setInt(3, 0);
+    verify(ps).setTimestamp(2, new Timestamp(2000));
+    verify(ps).setInt(3, 3);
+    verify(ps, times(2)).setInt(6, 2);
+    verify(settings).execute("set approval.notify = off");
+    verify(settings).execute("reset approval.notify");
+  }
+
+  @Test
+  public void testBuildPurgeQuery() {
+    // when
+    String query = service.buildPurgeQuery(false, true);
+
+    // then
+    assertEquals(
+        "delete from task where (tkey,created) in (select tkey,created from task where status_tkey = ? and (created,tkey) > (?,?) and created < ? order by created,tkey limit ?) returning tkey,created",
+        query);
+  }
+
+  @Test
+  public void testBuildPurgeQuery_archive() {
+    // given
+    props.setProperty("purge.archive", "true");
+
+    // when
+    String query = service.buildPurgeQuery(true, false);
+
+    // then
+    assertTrue(query.startsWith("with del as (delete from task"));
+    assertTrue(query.contains("insert into task_archive"));
+  }
+}
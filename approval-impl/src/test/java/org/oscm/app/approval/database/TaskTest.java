@@ -10,8 +10,12 @@
 package org.oscm.app.approval.database;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.util.Map;
 
@@ -52,6 +56,7 @@ public class TaskTest {
     initSubscription();
 
     doReturn(processData).when(task).mapDescriptionToTriggerProcessData();
+    doReturn(new ProcessDataCache(10, 1024 * 1024)).when(task).getProcessDataCache();
     processData.ctmg_user = user;
     processData.ctmg_organization = organization;
     processData.ctmg_subscription = subscription;
@@ -119,6 +124,31 @@ public class TaskTest {
     return seller;
   }
 
+  @Test
+  public void testCanTransitionTo() {
+    assertTrue(Task.ApprovalStatus.WAITING_FOR_APPROVAL.canTransitionTo(Task.ApprovalStatus.APPROVED));
+    assertTrue(Task.ApprovalStatus.WAITING_FOR_APPROVAL.canTransitionTo(Task.ApprovalStatus.REJECTED));
+    assertTrue(Task.ApprovalStatus.WAITING_FOR_APPROVAL.canTransitionTo(Task.ApprovalStatus.TIMEOUT));
+    assertTrue(
+        Task.ApprovalStatus.WAITING_FOR_CLEARANCE.canTransitionTo(
+            Task.ApprovalStatus.CLEARANCE_GRANTED));
+    assertTrue(
+        Task.ApprovalStatus.CLEARANCE_GRANTED.canTransitionTo(
+            Task.ApprovalStatus.WAITING_FOR_CLEARANCE));
+    assertFalse(Task.ApprovalStatus.APPROVED.canTransitionTo(Task.ApprovalStatus.REJECTED));
+    assertFalse(
+        Task.ApprovalStatus.WAITING_FOR_CLEARANCE.canTransitionTo(Task.ApprovalStatus.APPROVED));
+    assertFalse(
+        Task.ApprovalStatus.CLEARANCE_GRANTED.canTransitionTo(
+            Task.ApprovalStatus.CLEARANCE_GRANTED));
+  }
+
+  @Test
+  public void testFromKey() {
+    assertEquals(Task.ApprovalStatus.NOTIFICATION, Task.ApprovalStatus.fromKey(6));
+    assertNull(Task.ApprovalStatus.fromKey(99));
+  }
+
   @Test
   public void testGetTriggerProcessData_ctmg_serviceIsNull() throws Exception {
     // when
@@ -141,4 +171,32 @@ public class TaskTest {
     assertEquals("description", result.get("task.description"));
     assertEquals("1", result.get("service.id"));
   }
+
+  @Test
+  public void testGetTriggerProcessData_parsedOnce() throws Exception {
+    // given
+    task.getTriggerProcessData();
+    task.comment = "changed";
+
+    // when
+    Map<String, String> result = task.getTriggerProcessData();
+
+    // then
+    verify(task, times(1)).mapDescriptionToTriggerProcessData();
+    assertEquals("changed", result.get("task.comment"));
+    assertEquals("1", result.get("subscription.id"));
+  }
+
+  @Test
+  public void testGetTriggerProcessData_notCachedWithoutKey() throws Exception {
+    // given
+    task.tkey = null;
+    task.getTriggerProcessData();
+
+    // when
+    task.getTriggerProcessData();
+
+    // then
+    verify(task, times(2)).mapDescriptionToTriggerProcessData();
+  }
 }
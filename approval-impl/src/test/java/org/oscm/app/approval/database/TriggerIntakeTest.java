@@ -0,0 +1,107 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import java.io.InvalidClassException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.oscm.notification.intf.NotificationService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TriggerIntakeTest {
+
+  @Mock DataAccessService das;
+  @Mock DataSource ds;
+  @Mock Connection con;
+  @Mock PreparedStatement ps;
+  @Mock NotificationService handler;
+
+  Properties props = new Properties();
+  TriggerIntake intake;
+
+  @Before
+  public void setUp() throws Exception {
+    intake = new TriggerIntake(das, new ApprovalConfig(props), handler);
+  }
+
+  private void givenDatabase() throws Exception {
+    doReturn(ds).when(das).getDatasource();
+    doReturn(con).when(ds).getConnection();
+    doReturn(ps).when(con).prepareStatement(anyString());
+  }
+
+  @Test
+  public void enqueue() throws Exception {
+    // given
+    givenDatabase();
+    ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+
+    // when
+    intake.enqueue("onAddSupplier", null, "supplier");
+
+    // then
+    verify(con).prepareStatement(RetryQueue.INSERT);
+    verify(ps).setString(1, "intake");
+    verify(ps).setString(2, "onAddSupplier");
+    verify(ps).setBytes(eq(3), payload.capture());
+    verify(ps).setLong(4, 0);
+    assertArrayEquals(
+        new Object[] {null, "supplier"}, TriggerIntake.deserialize(payload.getValue()));
+  }
+
+  @Test
+  public void process() throws Exception {
+    // given
+    byte[] payload = TriggerIntake.serialize(new Object[] {7L});
+
+    // when
+    intake.process(new RetryQueue.Entry(5, "onCancelAction", payload, 1));
+
+    // then
+    verify(handler).onCancelAction(7L);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void process_failed() throws Exception {
+    // given
+    doThrow(new RuntimeException("BES not available")).when(handler).onCancelAction(7L);
+    byte[] payload = TriggerIntake.serialize(new Object[] {7L});
+
+    // when
+    intake.process(new RetryQueue.Entry(5, "onCancelAction", payload, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void findCallback_unknown() {
+    TriggerIntake.findCallback("onUnknown");
+  }
+
+  @Test(expected = InvalidClassException.class)
+  public void deserialize_unexpectedClass() throws Exception {
+    TriggerIntake.deserialize(TriggerIntake.serialize(new Object[] {Description.EMPTY}));
+  }
+}
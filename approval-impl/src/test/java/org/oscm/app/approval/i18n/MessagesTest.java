@@ -0,0 +1,99 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.i18n;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class MessagesTest {
+
+  @Test
+  public void testGetLocale() {
+    assertEquals(Locale.GERMAN, Messages.getLocale("de"));
+    assertEquals(Locale.JAPANESE, Messages.getLocale("ja_JP"));
+    assertEquals(Locale.ENGLISH, Messages.getLocale("fr"));
+    assertEquals(Locale.ENGLISH, Messages.getLocale((String) null));
+    assertEquals(Locale.ENGLISH, Messages.getLocale(""));
+  }
+
+  @Test
+  public void testIsShipped() {
+    assertTrue(Messages.isShipped(Locale.GERMANY));
+    assertFalse(Messages.isShipped(Locale.FRENCH));
+    assertFalse(Messages.isShipped(null));
+  }
+
+  @Test
+  public void testGet() {
+    // when
+    String en = Messages.get(Locale.ENGLISH, "priceModel.text.price", "EUR", "10");
+    String de = Messages.get(Locale.GERMAN, "priceModel.text.price", "EUR", "10");
+
+    // then
+    assertEquals("From EUR 10", en);
+    assertEquals("Ab EUR 10", de);
+  }
+
+  @Test
+  public void testGet_NotShipped() {
+    // when
+    String result = Messages.get(Locale.FRENCH, "priceModel.text.price", "EUR", "10");
+
+    // then
+    assertEquals("From EUR 10", result);
+  }
+
+  @Test
+  public void testGet_DefaultLocale() {
+    // when
+    String result = Messages.get("priceModel.text.price", "EUR", "10");
+
+    // then
+    assertEquals("From EUR 10", result);
+  }
+
+  @Test
+  public void testGet_Missing() {
+    assertEquals("!unknown.key!", Messages.get(Locale.GERMAN, "unknown.key"));
+    assertEquals("!unknown.key!", Messages.get(Locale.GERMAN, "unknown.key", "arg"));
+  }
+
+  @Test
+  public void testGet_Concurrent() throws Exception {
+    // given
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Callable<Boolean>> calls = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String value = Integer.toString(i);
+      Locale locale = i % 2 == 0 ? Locale.ENGLISH : Locale.GERMAN;
+      String expected = (i % 2 == 0 ? "From EUR " : "Ab EUR ") + value;
+      calls.add(
+          () -> expected.equals(Messages.get(locale, "priceModel.text.price", "EUR", value)));
+    }
+
+    // when
+    List<Future<Boolean>> results = executor.invokeAll(calls);
+    executor.shutdown();
+
+    // then
+    for (Future<Boolean> result : results) {
+      assertTrue(result.get());
+    }
+  }
+}
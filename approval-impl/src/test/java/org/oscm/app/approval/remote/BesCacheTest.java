@@ -0,0 +1,253 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.oscm.app.approval.util.ApprovalConfig;
+import org.oscm.vo.VOOrganization;
+import org.oscm.vo.VOSubscription;
+import org.oscm.vo.VOSubscriptionDetails;
+import org.oscm.vo.VOUser;
+import org.oscm.vo.VOUserDetails;
+
+public class BesCacheTest {
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private BesCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new BesCache(new ApprovalConfig(new Properties()));
+  }
+
+  @Test
+  public void getOrganization_cached() throws Exception {
+    // given
+    VOOrganization org = new VOOrganization();
+
+    // when
+    VOOrganization first = cache.getOrganization("customer", () -> count(org));
+    VOOrganization second = cache.getOrganization("customer", () -> count(org));
+
+    // then
+    assertSame(org, first);
+    assertSame(org, second);
+    assertEquals(1, calls.get());
+    assertEquals(1, cache.getOrganizationHits());
+    assertEquals(1, cache.getOrganizationMisses());
+    assertEquals(1, cache.getOrganizationSize());
+  }
+
+  @Test
+  public void getOrganization_otherOrganization() throws Exception {
+    // given
+    cache.getOrganization("customer", () -> count(new VOOrganization()));
+
+    // when
+    cache.getOrganization("other", () -> count(new VOOrganization()));
+
+    // then
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void getOrganization_disabled() throws Exception {
+    // given
+    Properties props = new Properties();
+    props.setProperty(BesCache.ORGANIZATION + ".ttl.millis", "0");
+    cache = new BesCache(new ApprovalConfig(props));
+    cache.getOrganization("customer", () -> count(new VOOrganization()));
+
+    // when
+    cache.getOrganization("customer", () -> count(new VOOrganization()));
+
+    // then
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void getSubscription_idAndKey() throws Exception {
+    // given
+    VOSubscriptionDetails byId = new VOSubscriptionDetails();
+    VOSubscriptionDetails byKey = new VOSubscriptionDetails();
+    cache.getSubscription("customer", "10000", () -> count(byId));
+
+    // when
+    VOSubscriptionDetails result =
+        cache.getSubscription("customer", Long.valueOf(10000), () -> count(byKey));
+
+    // then
+    assertSame(byKey, result);
+    assertSame(byId, cache.getSubscription("customer", "10000", () -> count(byKey)));
+    assertEquals(2, calls.get());
+    assertEquals(2, cache.getSubscriptionSize());
+  }
+
+  @Test
+  public void getUserDetails_cached() throws Exception {
+    // given
+    VOUser user = new VOUser();
+    user.setOrganizationId("customer");
+    user.setKey(11000);
+    VOUserDetails details = new VOUserDetails();
+    cache.getUserDetails(user, () -> count(details));
+
+    // when
+    VOUserDetails result = cache.getUserDetails(user, () -> count(new VOUserDetails()));
+
+    // then
+    assertSame(details, result);
+    assertEquals(1, calls.get());
+    assertEquals(1, cache.getUserHits());
+  }
+
+  @Test
+  public void getUserDetails_byUserId() throws Exception {
+    // given
+    VOUser user = new VOUser();
+    user.setOrganizationId("customer");
+    user.setUserId("JacobSmith");
+    VOUser other = new VOUser();
+    other.setOrganizationId("customer");
+    other.setUserId("JaneSmith");
+    VOUserDetails details = cache.getUserDetails(user, () -> count(new VOUserDetails()));
+
+    // when
+    VOUserDetails result = cache.getUserDetails(other, () -> count(new VOUserDetails()));
+
+    // then
+    assertNotSame(details, result);
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void getSubscriptionId_indexed() throws Exception {
+    // given
+    List<VOSubscription> subscriptions = new ArrayList<>();
+    subscriptions.add(subscription(12000, "first"));
+    subscriptions.add(subscription(12001, "second"));
+    cache.getSubscriptionId("customer", 12000, () -> count(subscriptions));
+
+    // when
+    String id = cache.getSubscriptionId("customer", 12001, () -> count(subscriptions));
+
+    // then
+    assertEquals("second", id);
+    assertEquals(1, calls.get());
+    assertEquals(1, cache.getSubscriptionIndexMisses());
+  }
+
+  @Test
+  public void getSubscriptionId_unknown() throws Exception {
+    // when
+    String id = cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>()));
+
+    // then
+    assertNull(id);
+  }
+
+  @Test
+  public void indexSubscription() throws Exception {
+    // given
+    cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>()));
+
+    // when
+    cache.indexSubscription("customer", subscription(12000, "new"));
+
+    // then
+    assertEquals(
+        "new", cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>())));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void indexSubscription_noIndex() throws Exception {
+    // given
+    cache.indexSubscription("customer", subscription(12000, "new"));
+
+    // when
+    String id = cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>()));
+
+    // then
+    assertNull(id);
+  }
+
+  @Test
+  public void getSubscription_indexed() throws Exception {
+    // given
+    cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>()));
+    VOSubscriptionDetails details = new VOSubscriptionDetails();
+    details.setKey(12000);
+    details.setSubscriptionId("read");
+
+    // when
+    cache.getSubscription("customer", "read", () -> details);
+
+    // then
+    assertEquals(
+        "read", cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>())));
+  }
+
+  @Test
+  public void invalidateSubscriptionIndex() throws Exception {
+    // given
+    cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>()));
+
+    // when
+    cache.invalidateSubscriptionIndex("customer");
+    cache.getSubscriptionId("customer", 12000, () -> count(new ArrayList<>()));
+
+    // then
+    assertEquals(2, calls.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void getOrganization_failed() throws Exception {
+    cache.getOrganization(
+        "customer",
+        () -> {
+          throw new IllegalStateException("BES unavailable");
+        });
+  }
+
+  @Test
+  public void clear() throws Exception {
+    // given
+    cache.getOrganization("customer", () -> count(new VOOrganization()));
+
+    // when
+    cache.clear();
+    cache.getOrganization("customer", () -> count(new VOOrganization()));
+
+    // then
+    assertEquals(2, calls.get());
+  }
+
+  private <T> T count(T result) {
+    calls.incrementAndGet();
+    return result;
+  }
+
+  private static VOSubscription subscription(long key, String id) {
+    VOSubscription subscription = new VOSubscription();
+    subscription.setKey(key);
+    subscription.setSubscriptionId(id);
+    return subscription;
+  }
+}
@@ -26,9 +26,18 @@ import javax.xml.ws.Service;
 import javax.xml.ws.handler.Handler;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -57,13 +66,14 @@ public class BesClientTest {
     // given
     PowerMockito.whenNew(AppDataService.class).withNoArguments().thenReturn(appDataService);
     when(appDataService.loadOrgAdminCredentials(anyString())).thenReturn(credentials);
-    when(webServiceTask.getResult()).thenReturn(null, null, "taskResult");
+    when(webServiceTask.getResult()).thenReturn("taskResult");
     // when
     result[0] =
         Whitebox.invokeMethod(
             besClient, "runWebServiceAsOrganizationAdmin", "administrator", webServiceTask);
-    // then
-    verify(webServiceTask, times(3)).getResult();
+    // then the call runs in the calling thread
+    verify(webServiceTask, times(1)).run();
+    verify(webServiceTask, never()).start();
     assertEquals("taskResult", result[0]);
   }
 
@@ -78,6 +88,77 @@ public class BesClientTest {
         besClient, "runWebServiceAsOrganizationAdmin", "administrator", webServiceTask);
   }
 
+  @Test(expected = IllegalStateException.class)
+  public void testAwaitThrowsCause() throws Exception {
+    // given
+    CompletableFuture<Object> lookup =
+        BesClient.lookup(
+            () -> {
+              throw new IllegalStateException();
+            });
+    // when
+    BesClient.await(lookup);
+  }
+
+  @Test
+  public void testLookupConcurrently() throws Exception {
+    // given
+    CountDownLatch started = new CountDownLatch(2);
+    Callable<Boolean> call =
+        () -> {
+          started.countDown();
+          return Boolean.valueOf(started.await(10, TimeUnit.SECONDS));
+        };
+    // when
+    CompletableFuture<Boolean> first = BesClient.lookup(call);
+    CompletableFuture<Boolean> second = BesClient.lookup(call);
+    // then both lookups run at the same time
+    assertTrue(BesClient.await(first).booleanValue());
+    assertTrue(BesClient.await(second).booleanValue());
+  }
+
+  @Test
+  public void testAwaitSharedDeadline() throws Exception {
+    // given
+    long deadline = System.currentTimeMillis() + 500;
+    CountDownLatch never = new CountDownLatch(1);
+    CompletableFuture<Boolean> first =
+        BesClient.lookup(() -> Boolean.valueOf(never.await(400, TimeUnit.MILLISECONDS)), deadline);
+    CompletableFuture<Boolean> second =
+        BesClient.lookup(() -> Boolean.valueOf(never.await(10, TimeUnit.SECONDS)), deadline);
+    long start = System.currentTimeMillis();
+    // when
+    BesClient.await(first);
+    try {
+      BesClient.await(second);
+      fail();
+    } catch (TimeoutException e) {
+      // then the second lookup is not awaited for another full timeout
+      assertTrue(System.currentTimeMillis() - start < 800);
+      assertTrue(second.isCancelled());
+    }
+  }
+
+  @Test
+  public void testGetWebserviceRequestTimeout() throws Exception {
+    // given
+    Service mockService = mock(Service.class);
+    BindingProvider bindingProvider = mock(BindingProvider.class);
+    Binding binding = mock(Binding.class);
+    PowerMockito.mockStatic(Service.class);
+    Map<String, Object> requestContext = new HashMap<>();
+    when(Service.create(any(URL.class), any())).thenReturn(mockService);
+    when(mockService.getPort(any())).thenReturn(bindingProvider);
+    when(bindingProvider.getBinding()).thenReturn(binding);
+    when(bindingProvider.getRequestContext()).thenReturn(requestContext);
+    // when
+    BesClient.getWebserviceIntern(
+        "http://oscm-example:3000/{SERVICE}?wsdl", "user", "password", TestClass.class);
+    // then
+    assertEquals(Integer.valueOf(60000), requestContext.get(BesClient.REQUEST_TIMEOUT));
+    assertEquals(Integer.valueOf(60000), requestContext.get(BesClient.RECEIVE_TIMEOUT));
+  }
+
   @Test
   public void testGetWebservice() throws Exception {
     // given
@@ -0,0 +1,36 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.servlet;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.oscm.app.approval.database.SchemaUpdater;
+
+public class ApprovalContextListenerTest {
+
+  @Test(expected = IllegalStateException.class)
+  public void contextInitialized_updateFailed() throws Exception {
+    // given
+    SchemaUpdater updater = mock(SchemaUpdater.class);
+    doThrow(new SQLException("database not available")).when(updater).update();
+    ApprovalContextListener listener =
+        new ApprovalContextListener() {
+          @Override
+          protected SchemaUpdater createSchemaUpdater() {
+            return updater;
+          }
+        };
+
+    // when
+    listener.contextInitialized(null);
+  }
+}
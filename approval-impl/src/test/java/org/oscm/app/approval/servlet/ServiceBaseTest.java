@@ -17,7 +17,10 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Locale;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -105,4 +108,30 @@ public class ServiceBaseTest {
     // then
     verify(service, times(1)).sendResult(any());
   }
+
+  @Test
+  public void testGetLocale() {
+    // given
+    when(req.getLocales())
+        .thenReturn(
+            Collections.enumeration(Arrays.asList(Locale.FRENCH, Locale.GERMANY, Locale.ENGLISH)));
+
+    // when
+    Locale result = base.getLocale(req);
+
+    // then
+    assertEquals(Locale.GERMANY, result);
+  }
+
+  @Test
+  public void testGetLocale_NotShipped() {
+    // given
+    when(req.getLocales()).thenReturn(Collections.enumeration(Arrays.asList(Locale.FRENCH)));
+
+    // when
+    Locale result = base.getLocale(req);
+
+    // then
+    assertEquals(Locale.ENGLISH, result);
+  }
 }
@@ -0,0 +1,221 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.oscm.app.approval.auth.User;
+import org.oscm.app.approval.database.ApproverRegistry;
+import org.oscm.app.approval.database.DataAccessService;
+import org.oscm.app.approval.database.TaskChangeFeed;
+import org.oscm.app.approval.database.TaskEvent;
+
+public class TaskEventServletTest {
+
+  /** Output which takes data only while it is ready, like a connection to a slow browser. */
+  static class TestOutputStream extends ServletOutputStream {
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    boolean ready = true;
+    WriteListener listener;
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void write(int b) {
+      data.write(b);
+    }
+
+    @Override
+    public String toString() {
+      return new String(data.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private TaskEventServlet servlet;
+  private TaskChangeFeed feed;
+  private ApproverRegistry registry;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private AsyncContext async;
+  private TestOutputStream output;
+
+  @Before
+  public void setUp() throws Exception {
+    servlet = spy(new TaskEventServlet());
+    feed = mock(TaskChangeFeed.class);
+    registry = mock(ApproverRegistry.class);
+    request = mock(HttpServletRequest.class);
+    response = mock(HttpServletResponse.class);
+    async = mock(AsyncContext.class);
+    output = new TestOutputStream();
+    HttpSession session = mock(HttpSession.class);
+    doReturn(feed).when(servlet).getTaskChangeFeed();
+    doReturn(registry).when(servlet).getApproverRegistry();
+    doReturn(mock(DataAccessService.class)).when(servlet).createDataAccessService();
+    when(request.getSession()).thenReturn(session);
+    when(session.getAttribute("user")).thenReturn(User.builder().orgId("customer").build());
+    when(registry.getApproverKey(anyString(), any())).thenReturn(Integer.valueOf(7));
+    when(request.startAsync()).thenReturn(async);
+    when(response.getOutputStream()).thenReturn(output);
+  }
+
+  /** Opens a stream and lets the container report the output as ready. */
+  private TaskEventServlet.EventStream openStream() throws Exception {
+    ArgumentCaptor<TaskEventServlet.EventStream> stream =
+        ArgumentCaptor.forClass(TaskEventServlet.EventStream.class);
+    servlet.doGet(request, response);
+    verify(feed).subscribe(eq(7), stream.capture());
+    output.listener.onWritePossible();
+    return stream.getValue();
+  }
+
+  @Test
+  public void doGet_subscribes() throws Exception {
+    // when
+    servlet.doGet(request, response);
+
+    // then
+    verify(response).setContentType("text/event-stream");
+    verify(async).setTimeout(TaskEventServlet.STREAM_TIMEOUT_MILLIS);
+    verify(feed).subscribe(eq(7), any());
+    assertEquals(1, servlet.getStreamCount());
+  }
+
+  @Test
+  public void doGet_sendsTaskEvents() throws Exception {
+    // given
+    TaskEventServlet.EventStream stream = openStream();
+    TaskEvent event = new TaskEvent();
+    event.op = "INSERT";
+    event.tkey = "11";
+
+    // when
+    stream.handle(event);
+
+    // then
+    assertTrue(output.toString().startsWith(": connected\n\n"));
+    assertTrue(output.toString().contains("event: task\ndata: {\"op\":\"INSERT\",\"tkey\":\"11\""));
+  }
+
+  @Test
+  public void send_queuesUntilOutputReady() throws Exception {
+    // given
+    TaskEventServlet.EventStream stream = openStream();
+    output.ready = false;
+
+    // when
+    stream.send(": first\n\n");
+    stream.send(": second\n\n");
+
+    // then
+    assertFalse(output.toString().contains("first"));
+
+    // when
+    output.ready = true;
+    output.listener.onWritePossible();
+
+    // then
+    assertTrue(output.toString().endsWith(": first\n\n: second\n\n"));
+  }
+
+  @Test
+  public void send_closesOverflowingStream() throws Exception {
+    // given
+    TaskEventServlet.EventStream stream = openStream();
+    output.ready = false;
+    for (int i = 0; i < 100; i++) {
+      stream.send(": " + i + "\n\n");
+    }
+
+    // when
+    try {
+      stream.send(": overflow\n\n");
+      fail();
+    } catch (IOException e) {
+      // then
+      assertEquals("Event stream overflow", e.getMessage());
+    }
+    verify(feed).unsubscribe(7, stream);
+    verify(async).complete();
+    assertEquals(0, servlet.getStreamCount());
+  }
+
+  @Test
+  public void doGet_unsubscribesOnTimeout() throws Exception {
+    // given
+    TaskEventServlet.EventStream stream = openStream();
+
+    // when
+    stream.onTimeout(null);
+
+    // then
+    verify(feed).unsubscribe(7, stream);
+    verify(async).complete();
+    assertEquals(0, servlet.getStreamCount());
+  }
+
+  @Test
+  public void sendHeartbeat() throws Exception {
+    // given
+    openStream();
+
+    // when
+    servlet.sendHeartbeat();
+
+    // then
+    assertTrue(output.toString().endsWith(": heartbeat\n\n"));
+  }
+
+  @Test
+  public void doGet_unknownApprover() throws Exception {
+    // given
+    when(registry.getApproverKey(anyString(), any())).thenThrow(new RuntimeException("db down"));
+
+    // when
+    servlet.doGet(request, response);
+
+    // then
+    verify(response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    verify(feed, never()).subscribe(eq(7), any());
+    assertEquals(0, servlet.getStreamCount());
+  }
+}
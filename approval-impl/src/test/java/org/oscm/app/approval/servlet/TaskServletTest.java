@@ -14,8 +14,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.oscm.app.approval.auth.User;
+import org.oscm.app.approval.database.ApproverRegistry;
 import org.oscm.app.approval.database.DataAccessService;
 import org.oscm.app.approval.database.Task;
+import org.oscm.app.approval.database.TaskCursor;
+import org.oscm.app.approval.database.TaskFacets;
+import org.oscm.app.approval.database.TaskHandler;
+import org.oscm.app.approval.database.TaskListQuery;
+import org.oscm.app.approval.database.TaskProjection;
+import org.oscm.app.approval.database.TaskPurgeService;
+import org.oscm.app.approval.database.TaskSearchQuery;
 import org.oscm.app.approval.remote.BesClient;
 import org.oscm.app.connector.framework.IProcess;
 import org.oscm.app.dataaccess.AppDataService;
@@ -27,15 +35,25 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
 import org.springframework.beans.factory.xml.XmlBeanFactory;
 
+import javax.servlet.http.HttpServletResponse;
+
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -52,6 +70,7 @@ public class TaskServletTest {
   @Mock PropertyPlaceholderConfigurer cfg;
   @Mock IProcess iProcess;
   @Mock DataAccessService dataAccessService;
+  @Mock TaskPurgeService purgeService;
 
   TaskServlet taskServlet;
   private final String[] PATHS =
@@ -63,7 +82,18 @@ public class TaskServletTest {
     doReturn(ads).when(taskServlet).createAppDataService();
     doReturn(task).when(taskServlet).createTask();
     doReturn(task).when(das).getTask(anyString());
+    doReturn(task).when(das).getTask(anyString(), any(), anyBoolean());
+    doReturn(task).when(das).getTask(anyString(), any(), any(), anyBoolean());
     doReturn(das).when(taskServlet).createDataAccessService();
+    doReturn(new ApproverRegistry()).when(taskServlet).getApproverRegistry();
+  }
+
+  private static List<String> tkeys(List<Task> tasks) {
+    List<String> tkeys = new ArrayList<>();
+    for (Task task : tasks) {
+      tkeys.add(task.tkey);
+    }
+    return tkeys;
   }
 
   private BufferedReader getTestReader() {
@@ -76,21 +106,68 @@ public class TaskServletTest {
   public void TestDoService_get_taskList() throws Exception {
     // given
     String expected =
-        "[{\"tkey\":null,\"triggername\":null,\"orgid\":\"orgid\",\"orgname\":null,\"requestinguser\":\"requestinguser\",\"status\":\"status\",\"status_tkey\":\"status_tkey\"}]";
+        "[{\"tkey\":null,\"triggername\":null,\"orgid\":\"orgid\",\"orgname\":null,\"requestinguser\":\"requestinguser\",\"created\":\"created\",\"status\":\"status\",\"status_tkey\":\"status_tkey\"}]";
     Map<String, String[]> paramMap = new HashMap<String, String[]>();
     paramMap.put("cmd", new String[] {"tasklist"});
     ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
-    List<Task> tasks = new ArrayList<Task>();
-    tasks.add(createTask());
-    doReturn(tasks)
+    doAnswer(
+            invocation -> {
+              TaskHandler handler = invocation.getArgument(1);
+              handler.handle(createTask());
+              return null;
+            })
         .when(das)
-        .getTaskList(
-            anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean());
+        .streamTaskList(any(TaskListQuery.class), any(TaskHandler.class));
     // when
     ServiceResult result =
         taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
     // then
-    assertEquals(expected, result.getJson().getJson());
+    assertEquals(expected, streamToString(result));
+  }
+
+  @Test
+  public void TestDoService_get_taskList_paged() throws Exception {
+    // given
+    TaskCursor next = new TaskCursor(Timestamp.valueOf("2020-10-01 12:00:00.123456"), 7);
+    String expected =
+        "{\"tasks\":[{\"tkey\":null,\"triggername\":null,\"orgid\":\"orgid\",\"orgname\":null,\"requestinguser\":\"requestinguser\",\"created\":\"created\",\"status\":\"status\",\"status_tkey\":\"status_tkey\"}],\"next_cursor\":\""
+            + next.encode()
+            + "\"}";
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"tasklist"});
+    paramMap.put("page_size", new String[] {"1"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    doAnswer(
+            invocation -> {
+              TaskListQuery query = invocation.getArgument(0);
+              assertEquals(1, query.pageSize);
+              TaskHandler handler = invocation.getArgument(1);
+              handler.handle(createTask());
+              return next;
+            })
+        .when(das)
+        .streamTaskList(any(TaskListQuery.class), any(TaskHandler.class));
+    // when
+    ServiceResult result =
+        taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    assertEquals(expected, streamToString(result));
+  }
+
+  @Test
+  public void TestDoService_get_taskList_invalidCursor() throws Exception {
+    // given
+    PowerMockito.whenNew(ServiceResult.class).withNoArguments().thenReturn(serviceResult);
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"tasklist"});
+    paramMap.put("page_size", new String[] {"10"});
+    paramMap.put("cursor", new String[] {"invalid"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    // when
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(serviceResult, times(1)).setError(eq(400), anyString());
+    verify(das, never()).streamTaskList(any(), any());
   }
 
   @Test
@@ -102,7 +179,7 @@ public class TaskServletTest {
     Map<String, String[]> paramMap = new HashMap<String, String[]>();
     paramMap.put("cmd", new String[] {"open"});
     ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
-    doReturn(createTask()).when(das).getTask(anyString());
+    doReturn(createTask()).when(das).getTask(anyString(), any(), any(), anyBoolean());
     // when
     ServiceResult result =
         taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
@@ -118,7 +195,7 @@ public class TaskServletTest {
     Map<String, String[]> paramMap = new HashMap<String, String[]>();
     paramMap.put("cmd", new String[] {"details"});
     ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
-    doReturn(createTask()).when(das).getTask(anyString());
+    doReturn(createTask()).when(das).getTask(anyString(), any(), any(), anyBoolean());
     // when
     ServiceResult result =
         taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
@@ -126,17 +203,209 @@ public class TaskServletTest {
     assertEquals(expected, result.getJson().getJson());
   }
 
+  @Test
+  public void TestDoService_get_details_notModified() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"details"});
+    paramMap.put("tkey", new String[] {"1"});
+    Map<String, String> headers = new HashMap<>();
+    headers.put("if-none-match", "\"1-815\"");
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap, headers);
+    Task header = createTask();
+    header.tkey = "1";
+    header.row_version = "815";
+    doReturn(header).when(das).getTask("1", "", TaskProjection.HEADER, false);
+    // when
+    ServiceResult result =
+        taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, result.getStatus());
+    assertEquals("\"1-815\"", result.getHeader("ETag"));
+    verify(das, never()).getTask(anyString(), any(), eq(TaskProjection.PAYLOAD), anyBoolean());
+  }
+
+  @Test
+  public void TestDoService_get_open_modified() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"open"});
+    paramMap.put("tkey", new String[] {"1"});
+    Map<String, String> headers = new HashMap<>();
+    headers.put("if-none-match", "\"1-815\"");
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap, headers);
+    Task task = createTask();
+    task.tkey = "1";
+    task.row_version = "816";
+    doReturn(task).when(das).getTask("1", "", TaskProjection.HEADER, false);
+    doReturn(task).when(das).getTask("1", "", TaskProjection.PAYLOAD, false);
+    // when
+    ServiceResult result =
+        taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    assertEquals(HttpServletResponse.SC_OK, result.getStatus());
+    assertEquals("\"1-816\"", result.getHeader("ETag"));
+  }
+
+  @Test
+  public void TestDoService_get_details_created() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"details"});
+    paramMap.put("tkey", new String[] {"1"});
+    paramMap.put("created", new String[] {"2020-11-05 10:15:00.123"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    // when
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(das).getTask("1", "2020-11-05 10:15:00.123", TaskProjection.PAYLOAD, false);
+  }
+
   @Test
   public void TestDoService_get_delete() throws Exception {
     // given
     Map<String, String[]> paramMap = new HashMap<String, String[]>();
     paramMap.put("cmd", new String[] {"delete"});
+    paramMap.put("delete_notifications", new String[] {"true"});
+    paramMap.put("delete_finished_tasks", new String[] {"true"});
+    doReturn(5).when(das).registerApprover("orgId");
+    doReturn(purgeService).when(taskServlet).getTaskPurgeService();
+    doReturn(CompletableFuture.completedFuture(Integer.valueOf(3)))
+        .when(purgeService)
+        .enqueue(anyInt(), anyList());
     ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
     // when
     taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
     // then
-    verify(das, times(1))
-        .deleteApprovedTasks(anyString(), anyBoolean(), anyBoolean(), anyBoolean());
+    verify(purgeService, times(1)).enqueue(5, Arrays.asList(6, 4, 5));
+  }
+
+  @Test
+  public void TestDoService_get_delete_accepted() throws Exception {
+    // given
+    PowerMockito.whenNew(ServiceResult.class).withNoArguments().thenReturn(serviceResult);
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"delete"});
+    doReturn(purgeService).when(taskServlet).getTaskPurgeService();
+    doReturn(new CompletableFuture<Integer>()).when(purgeService).enqueue(anyInt(), anyList());
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    // when
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(serviceResult, times(1)).setStatus(HttpServletResponse.SC_ACCEPTED);
+  }
+
+  @Test
+  public void TestDoService_get_summary() throws Exception {
+    // given
+    TaskServlet.getSummaryCache().clear();
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"summary"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    doReturn(5).when(das).registerApprover("orgId");
+    Map<Integer, Long> counts = new HashMap<>();
+    counts.put(1, 3L);
+    counts.put(4, 10L);
+    counts.put(5, 2L);
+    counts.put(7, 1L);
+    doReturn(counts).when(das).getTaskCounts(5);
+    // when
+    ServiceResult result =
+        taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    assertEquals(
+        "{\"open_tasks\":3,\"open_clearances\":1,\"notifications\":0,\"finished_tasks\":12,\"granted_clearances\":0}",
+        result.getJson().getJson());
+    verify(das, times(1)).getTaskCounts(5);
+  }
+
+  @Test
+  public void TestDoService_get_summary_invalidatedByApprove() throws Exception {
+    // given
+    TaskServlet.getSummaryCache().clear();
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"summary"});
+    ServiceParams summary = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    Map<String, String[]> approveMap = new HashMap<String, String[]>();
+    approveMap.put("cmd", new String[] {"approve"});
+    ServiceParams approve = new ServiceParams(ServiceParams.MODE.POST, PATHS, approveMap);
+    doReturn(createResultData()).when(taskServlet).createResultData(anyString(), any());
+    doReturn(true).when(das).updateTaskStatus(any(), any(), any(), any());
+    doNothing().when(taskServlet).notifyCTMGTrigger(anyString(), any(), anyBoolean());
+    doReturn(new HashMap<Integer, Long>()).when(das).getTaskCounts(anyInt());
+    // when
+    taskServlet.doService(summary, getTestReader(), User.builder().orgId("orgId").build());
+    taskServlet.doService(approve, getTestReader(), User.builder().orgId("orgId").build());
+    taskServlet.doService(summary, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(das, times(2)).getTaskCounts(anyInt());
+  }
+
+  @Test
+  public void TestDoService_get_search() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"search"});
+    paramMap.put("q", new String[] {"smith"});
+    paramMap.put("status", new String[] {"1,7"});
+    paramMap.put("created_from", new String[] {"2020-11-01"});
+    paramMap.put("created_to", new String[] {"2020-11-30"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    doReturn(5).when(das).registerApprover("orgId");
+    Task found = createTask();
+    found.tkey = "3";
+    doAnswer(
+            invocation -> {
+              ((TaskHandler) invocation.getArgument(1)).handle(found);
+              return Boolean.FALSE;
+            })
+        .when(das)
+        .searchTasks(any(), any());
+    TaskFacets facets = new TaskFacets();
+    facets.status.put(1, 1L);
+    facets.triggername.put("trigger", 1L);
+    doReturn(facets).when(das).getSearchFacets(any());
+    // when
+    ServiceResult result =
+        taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    String json = streamToString(result);
+    assertTrue(json.contains("\"tkey\":\"3\""));
+    assertTrue(json.contains("\"more\":false,\"total\":1"));
+    assertTrue(json.contains("\"facets\":{\"status\":{\"1\":1},\"triggername\":{\"trigger\":1}}"));
+  }
+
+  @Test
+  public void TestDoService_get_search_invalidDate() throws Exception {
+    // given
+    PowerMockito.whenNew(ServiceResult.class).withNoArguments().thenReturn(serviceResult);
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"search"});
+    paramMap.put("created_from", new String[] {"yesterday"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    // when
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(serviceResult, times(1)).setError(eq(400), anyString());
+  }
+
+  @Test
+  public void createSearchQuery() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("created_to", new String[] {"2020-11-30"});
+    paramMap.put("triggername", new String[] {"trigger"});
+    paramMap.put("page_size", new String[] {"20"});
+    paramMap.put("page", new String[] {"2"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.GET, PATHS, paramMap);
+    // when
+    TaskSearchQuery query = taskServlet.createSearchQuery(params, 5);
+    // then
+    assertEquals(Timestamp.valueOf("2020-12-01 00:00:00"), query.createdTo);
+    assertEquals("trigger", query.triggerName);
+    assertEquals(40, query.getOffset());
+    assertTrue(query.statusKeys.isEmpty());
   }
 
   @Test
@@ -172,11 +441,139 @@ public class TaskServletTest {
     paramMap.put("cmd", new String[] {"approve"});
     ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
     doReturn(createResultData()).when(taskServlet).createResultData(anyString(), any());
-    doNothing().when(taskServlet).notifyCTMGTrigger(anyString(), anyBoolean());
+    doReturn(true).when(das).updateTaskStatus(any(), any(), any(), any());
+    doNothing().when(taskServlet).notifyCTMGTrigger(anyString(), any(), anyBoolean());
     // when
     taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
     // then
-    verify(das, times(1)).updateTaskStatus(any(), any(), any());
+    verify(das, times(1)).updateTaskStatus(any(), any(), any(), any());
+    verify(taskServlet, times(1)).notifyCTMGTrigger(anyString(), any(), eq(true));
+  }
+
+  @Test
+  public void TestDoService_post_approve_conflict() throws Exception {
+    // given
+    PowerMockito.whenNew(ServiceResult.class).withNoArguments().thenReturn(serviceResult);
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"approve"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
+    doReturn(createResultData()).when(taskServlet).createResultData(anyString(), any());
+    doReturn(false).when(das).updateTaskStatus(any(), any(), any(), any());
+    // when
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(serviceResult, times(1)).setError(eq(HttpServletResponse.SC_CONFLICT), anyString());
+    verify(taskServlet, never()).notifyCTMGTrigger(anyString(), any(), anyBoolean());
+  }
+
+  @Test
+  public void TestDoService_post_bulkApprove() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"bulk_approve"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
+    String content = "[{\"tkey\":\"1\",\"comment\":\"ok\"},{\"tkey\":\"2\"},{\"tkey\":\"3\"}]";
+    doReturn(new int[] {1, 0, 1})
+        .when(das)
+        .batchUpdateTaskStatus(anyList(), anyInt(), eq(Task.ApprovalStatus.APPROVED));
+    Map<String, Task> triggerTasks = new HashMap<>();
+    triggerTasks.put("1", new Task());
+    triggerTasks.put("3", new Task());
+    doReturn(triggerTasks).when(das).getTriggerTasks(argThat(tasks -> tkeys(tasks).equals(Arrays.asList("1", "3"))));
+    doNothing().when(taskServlet).notifyCTMGTrigger(same(triggerTasks.get("1")), eq(true));
+    doThrow(new Exception("bes down"))
+        .when(taskServlet)
+        .notifyCTMGTrigger(same(triggerTasks.get("3")), eq(true));
+    String expected =
+        "[{\"tkey\":\"1\",\"result\":\"OK\"},{\"tkey\":\"2\",\"result\":\"NOT_FOUND\"},{\"tkey\":\"3\",\"result\":\"FAILED\",\"message\":\"bes down\"}]";
+    // when
+    ServiceResult result =
+        taskServlet.doService(
+            params,
+            new BufferedReader(new StringReader(content)),
+            User.builder().orgId("orgId").build());
+    // then
+    assertEquals(expected, result.getJson().getJson());
+    assertEquals("ok", triggerTasks.get("1").comment);
+  }
+
+  @Test
+  public void TestDoService_post_bulkApprove_timeout() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"bulk_approve"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
+    String content = "[{\"tkey\":\"1\"}]";
+    doReturn(new int[] {1})
+        .when(das)
+        .batchUpdateTaskStatus(anyList(), anyInt(), eq(Task.ApprovalStatus.APPROVED));
+    Map<String, Task> triggerTasks = new HashMap<>();
+    triggerTasks.put("1", new Task());
+    doReturn(triggerTasks).when(das).getTriggerTasks(argThat(tasks -> tkeys(tasks).equals(Arrays.asList("1"))));
+    CompletableFuture<Object> notification = new CompletableFuture<>();
+    PowerMockito.mockStatic(BesClient.class);
+    PowerMockito.when(BesClient.lookup(any())).thenReturn(notification);
+    PowerMockito.when(BesClient.await(notification))
+        .thenThrow(new TimeoutException("BES lookup did not finish within 60000 ms"));
+    String expected =
+        "[{\"tkey\":\"1\",\"result\":\"TIMEOUT\",\"message\":\"BES lookup did not finish within 60000 ms\"}]";
+    // when
+    ServiceResult result =
+        taskServlet.doService(
+            params,
+            new BufferedReader(new StringReader(content)),
+            User.builder().orgId("orgId").build());
+    // then
+    assertEquals(expected, result.getJson().getJson());
+  }
+
+  @Test
+  public void TestDoService_post_bulkApprove_lanes() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"bulk_approve"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
+    String content = "[{\"tkey\":\"1\"},{\"tkey\":\"2\"},{\"tkey\":\"3\"},{\"tkey\":\"4\"},{\"tkey\":\"5\"},{\"tkey\":\"6\"}]";
+    doReturn(new int[] {1, 1, 1, 1, 1, 1})
+        .when(das)
+        .batchUpdateTaskStatus(anyList(), anyInt(), eq(Task.ApprovalStatus.APPROVED));
+    Map<String, Task> triggerTasks = new HashMap<>();
+    for (int i = 1; i <= 6; i++) {
+      triggerTasks.put(Integer.toString(i), new Task());
+    }
+    doReturn(triggerTasks).when(das).getTriggerTasks(anyList());
+    doNothing().when(taskServlet).notifyCTMGTrigger(any(Task.class), eq(true));
+    PowerMockito.mockStatic(BesClient.class);
+    PowerMockito.when(BesClient.lookup(any()))
+        .thenAnswer(
+            invocation ->
+                CompletableFuture.completedFuture(
+                    ((Callable<?>) invocation.getArgument(0)).call()));
+    // when
+    ServiceResult result =
+        taskServlet.doService(
+            params,
+            new BufferedReader(new StringReader(content)),
+            User.builder().orgId("orgId").build());
+    // then the six notifications run in four lookups
+    PowerMockito.verifyStatic(BesClient.class, times(4));
+    BesClient.lookup(any());
+    verify(taskServlet, times(6)).notifyCTMGTrigger(any(Task.class), eq(true));
+    assertTrue(result.getJson().getJson().matches("(.*\"result\":\"OK\"){6}.*"));
+  }
+
+  @Test
+  public void TestDoService_post_bulkReject_invalidContent() throws Exception {
+    // given
+    PowerMockito.whenNew(ServiceResult.class).withNoArguments().thenReturn(serviceResult);
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"bulk_reject"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
+    // when
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(serviceResult, times(1)).setError(eq(400), anyString());
+    verify(das, never()).batchUpdateTaskStatus(anyList(), anyInt(), any());
   }
 
   @Test
@@ -186,11 +583,13 @@ public class TaskServletTest {
     paramMap.put("cmd", new String[] {"reject"});
     ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
     doReturn(createResultData()).when(taskServlet).createResultData(anyString(), any());
-    doNothing().when(taskServlet).notifyCTMGTrigger(anyString(), anyBoolean());
+    doReturn(true).when(das).updateTaskStatus(any(), any(), any(), any());
+    doNothing().when(taskServlet).notifyCTMGTrigger(anyString(), any(), anyBoolean());
     // when
     taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
     // then
-    verify(das, times(1)).updateTaskStatus(any(), any(), any());
+    verify(das, times(1)).updateTaskStatus(any(), any(), any(), any());
+    verify(taskServlet, times(1)).notifyCTMGTrigger(anyString(), any(), eq(false));
   }
 
   @Test
@@ -217,12 +616,70 @@ public class TaskServletTest {
     doReturn(createResultData()).when(taskServlet).createResultData(anyString(), any());
     doReturn(createControllerSettings()).when(task).getTriggerProcessData();
     doNothing().when(taskServlet).excecuteProcess(anyString(), any());
+    task.tkey = "1";
+    doReturn(true)
+        .when(das)
+        .compareAndSetTaskStatus(same(task), any(), eq(Task.ApprovalStatus.CLEARANCE_GRANTED));
     // when
     taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
     // then
     verify(taskServlet, times(1)).excecuteProcess(any(), any());
   }
 
+  @Test
+  public void TestDoService_post_grant_clearance_processFailed() throws Exception {
+    // given
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"grant_clearance"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
+    doReturn(createResultData()).when(taskServlet).createResultData(anyString(), any());
+    doReturn(createControllerSettings()).when(task).getTriggerProcessData();
+    doThrow(new Exception("process failed")).when(taskServlet).excecuteProcess(anyString(), any());
+    task.tkey = "1";
+    task.version = 3;
+    doReturn(true)
+        .when(das)
+        .compareAndSetTaskStatus(same(task), any(), eq(Task.ApprovalStatus.CLEARANCE_GRANTED));
+    doReturn(true)
+        .when(das)
+        .compareAndSetTaskStatus(
+            argThat(
+                t ->
+                    "1".equals(t.tkey)
+                        && t.version == 4
+                        && Integer.toString(Task.ApprovalStatus.CLEARANCE_GRANTED.tkey)
+                            .equals(t.status_tkey)),
+            any(),
+            eq(Task.ApprovalStatus.WAITING_FOR_CLEARANCE));
+    // when
+    try {
+      taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+      fail();
+    } catch (Exception e) {
+      // then
+      assertEquals("process failed", e.getMessage());
+    }
+    verify(das, times(1))
+        .compareAndSetTaskStatus(any(), any(), eq(Task.ApprovalStatus.WAITING_FOR_CLEARANCE));
+  }
+
+  @Test
+  public void TestDoService_post_grant_clearance_conflict() throws Exception {
+    // given
+    PowerMockito.whenNew(ServiceResult.class).withNoArguments().thenReturn(serviceResult);
+    Map<String, String[]> paramMap = new HashMap<String, String[]>();
+    paramMap.put("cmd", new String[] {"grant_clearance"});
+    ServiceParams params = new ServiceParams(ServiceParams.MODE.POST, PATHS, paramMap);
+    doReturn(createResultData()).when(taskServlet).createResultData(anyString(), any());
+    task.tkey = "1";
+    doReturn(false).when(das).compareAndSetTaskStatus(any(), any(), any());
+    // when
+    taskServlet.doService(params, getTestReader(), User.builder().orgId("orgId").build());
+    // then
+    verify(serviceResult, times(1)).setError(eq(HttpServletResponse.SC_CONFLICT), anyString());
+    verify(taskServlet, never()).excecuteProcess(any(), any());
+  }
+
   @Test
   public void TestExecuteProcess() throws Exception {
     // given
@@ -239,12 +696,12 @@ public class TaskServletTest {
   public void TestNotifyCTMGTrigger() throws Exception {
     // given
     PowerMockito.whenNew(DataAccessService.class).withNoArguments().thenReturn(dataAccessService);
-    when(dataAccessService.getTask(anyString())).thenReturn(task);
+    when(dataAccessService.getTask(anyString(), any(), any(), anyBoolean())).thenReturn(task);
     PowerMockito.mockStatic(BesClient.class);
     PowerMockito.when(BesClient.runWebServiceAsOrganizationAdmin(anyString(), any()))
         .thenReturn(task);
     // when
-    taskServlet.notifyCTMGTrigger(anyString(), anyBoolean());
+    taskServlet.notifyCTMGTrigger(anyString(), any(), anyBoolean());
     // then
     PowerMockito.verifyPrivate(taskServlet, times(1))
         .invoke("notifyCTMGTrigger", task, "", null, false);
@@ -254,9 +711,9 @@ public class TaskServletTest {
   public void TestNotifyCTMGTrigger_ThrowsException() throws Exception {
     // given
     PowerMockito.whenNew(DataAccessService.class).withNoArguments().thenReturn(dataAccessService);
-    when(dataAccessService.getTask(anyString())).thenReturn(task);
+    when(dataAccessService.getTask(anyString(), any(), any(), anyBoolean())).thenReturn(task);
     // when
-    taskServlet.notifyCTMGTrigger(anyString(), anyBoolean());
+    taskServlet.notifyCTMGTrigger(anyString(), any(), anyBoolean());
   }
 
   @Test
@@ -287,6 +744,12 @@ public class TaskServletTest {
     verify(testService, times(1)).rejectAction(anyLong(), any());
   }
 
+  private String streamToString(ServiceResult result) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    result.writeJsonStream(out);
+    return out.toString("UTF-8");
+  }
+
   private Map<String, String> createControllerSettings() {
     Map<String, String> rd = new HashMap<String, String>();
     rd.put("APPROVAL_URL", "url");
@@ -13,6 +13,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.oscm.app.approval.database.TriggerIntake;
+import org.oscm.app.approval.remote.BesCache;
+import org.oscm.app.connector.framework.ProcessException;
 import org.oscm.intf.AccountService;
 import org.oscm.intf.SubscriptionService;
 import org.oscm.notification.vo.VONotification;
@@ -22,11 +25,17 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -54,6 +63,10 @@ public class ApprovalNotificationServiceTest {
     doReturn(task).when(service).createApprovalTask(anyString());
     doReturn(task).when(service).createApprovalTask(anyString(), any(), any());
     doReturn(task).when(service).createApprovalTask(anyString(), any());
+    doReturn(task).when(service).createApprovalTask(anyString(), any(), any(), any());
+    doReturn(CompletableFuture.completedFuture(new VOUserDetails()))
+        .when(service)
+        .getUserDetailsAsync(any());
   }
 
   @Test
@@ -312,25 +325,115 @@ public class ApprovalNotificationServiceTest {
   }
 
   @Test
-  public void testCreateSubscriptionDetailsWSCall() throws Exception {
+  public void testCreateSubscriptionsWSCall() throws Exception {
     // given
     List<VOSubscription> listSubscription = new ArrayList<>();
     SubscriptionService testService = mock(SubscriptionService.class);
-
-    VOSubscriptionDetails subscriptionDetails = new VOSubscriptionDetails();
-    VOSubscription subscription = new VOSubscription();
-    subscription.setServiceInstanceId("ServiceInstanceId");
-    subscription.setSubscriptionId("SubscriptionId");
-    subscription.setKey(12000);
-    subscriptionDetails.setSubscriptionId("ServiceInstanceId");
-    listSubscription.add(subscription);
     when(testService.getSubscriptionsForOrganization()).thenReturn(listSubscription);
     // when
-    service
-        .createSubscriptionDetailsWSCall(SubscriptionService.class, 12000, "OrganizationId")
-        .execute(testService);
+    Object result = service.createSubscriptionsWSCall(SubscriptionService.class).execute(testService);
     // then
-    verify(testService, times(1)).getSubscriptionDetails("SubscriptionId");
+    assertSame(listSubscription, result);
+  }
+
+  @Test
+  public void testLoadSubscription_indexed() throws Exception {
+    // given
+    BesCache.getInstance().clear();
+    doReturn(subscriptions(12000, "SubscriptionId"))
+        .when(service)
+        .getSubscriptions("OrganizationId");
+    doReturn(subscriptionDetails(12000, "SubscriptionId"))
+        .when(service)
+        .getSubscriptionDetails("OrganizationId", "SubscriptionId");
+    service.loadSubscription("OrganizationId", 12000);
+    // when
+    VOSubscriptionDetails result = service.loadSubscription("OrganizationId", 12000);
+    // then
+    assertEquals("SubscriptionId", result.getSubscriptionId());
+    verify(service, times(1)).getSubscriptions("OrganizationId");
+    verify(service, times(2)).getSubscriptionDetails("OrganizationId", "SubscriptionId");
+  }
+
+  @Test
+  public void testLoadSubscription_renamed() throws Exception {
+    // given
+    BesCache.getInstance().clear();
+    doReturn(subscriptions(12000, "OldId"))
+        .doReturn(subscriptions(12000, "NewId"))
+        .when(service)
+        .getSubscriptions("OrganizationId");
+    doReturn(subscriptionDetails(12000, "OldId"))
+        .doThrow(new IllegalStateException("not found"))
+        .when(service)
+        .getSubscriptionDetails("OrganizationId", "OldId");
+    doReturn(subscriptionDetails(12000, "NewId"))
+        .when(service)
+        .getSubscriptionDetails("OrganizationId", "NewId");
+    service.loadSubscription("OrganizationId", 12000);
+    // when
+    VOSubscriptionDetails result = service.loadSubscription("OrganizationId", 12000);
+    // then
+    assertEquals("NewId", result.getSubscriptionId());
+    verify(service, times(2)).getSubscriptions("OrganizationId");
+  }
+
+  @Test
+  public void testLoadSubscription_reusedId() throws Exception {
+    // given
+    BesCache.getInstance().clear();
+    doReturn(subscriptions(12000, "SubscriptionId"))
+        .doReturn(subscriptions(12001, "SubscriptionId"))
+        .when(service)
+        .getSubscriptions("OrganizationId");
+    doReturn(subscriptionDetails(12000, "SubscriptionId"))
+        .doReturn(subscriptionDetails(12001, "SubscriptionId"))
+        .when(service)
+        .getSubscriptionDetails("OrganizationId", "SubscriptionId");
+    service.loadSubscription("OrganizationId", 12000);
+    // when
+    try {
+      service.loadSubscription("OrganizationId", 12000);
+      fail();
+    } catch (ProcessException e) {
+      // then
+      assertTrue(e.toString().contains("Subscription 12000 of organization OrganizationId"));
+    }
+    verify(service, times(2)).getSubscriptions("OrganizationId");
+    verify(service, never()).getSubscriptionDetails("OrganizationId", "");
+  }
+
+  @Test
+  public void testLoadSubscription_builtIndexNotRebuilt() throws Exception {
+    // given
+    BesCache.getInstance().clear();
+    doReturn(subscriptions(12001, "OtherId")).when(service).getSubscriptions("OrganizationId");
+    // when
+    try {
+      service.loadSubscription("OrganizationId", 12000);
+      fail();
+    } catch (ProcessException e) {
+      // then
+      assertEquals(ProcessException.BAD_RESPONSE, e.getErrorcode());
+    }
+    verify(service, times(1)).getSubscriptions("OrganizationId");
+    verify(service, never()).getSubscriptionDetails(anyString(), anyString());
+  }
+
+  private static List<VOSubscription> subscriptions(long key, String id) {
+    List<VOSubscription> subscriptions = new ArrayList<>();
+    VOSubscription subscription = new VOSubscription();
+    subscription.setKey(key);
+    subscription.setSubscriptionId(id);
+    subscriptions.add(subscription);
+    return subscriptions;
+  }
+
+  private static VOSubscriptionDetails subscriptionDetails(long key, String id) {
+    VOSubscriptionDetails details = new VOSubscriptionDetails();
+    details.setKey(key);
+    details.setSubscriptionId(id);
+    return details;
   }
 
   @Test
@@ -354,4 +457,34 @@ public class ApprovalNotificationServiceTest {
     // then
     verify(testService, times(1)).getOrganizationData();
   }
+
+  @Test
+  public void testOnCancelAction_Intake() throws Exception {
+    // given
+    TriggerIntake intake = mock(TriggerIntake.class);
+    when(intake.isEnabled()).thenReturn(true);
+    service = new ApprovalNotificationService(intake);
+
+    // when
+    service.onCancelAction(3);
+
+    // then
+    verify(intake, times(1)).enqueue("onCancelAction", 3L);
+  }
+
+  @Test
+  public void testOnCancelAction_IntakeFailed() throws Exception {
+    // given
+    TriggerIntake intake = mock(TriggerIntake.class);
+    when(intake.isEnabled()).thenReturn(true);
+    doThrow(new SQLException()).when(intake).enqueue(anyString(), any());
+    service = spy(new ApprovalNotificationService(intake));
+    doReturn(task).when(service).createApprovalTask(anyString());
+
+    // when
+    service.onCancelAction(3);
+
+    // then
+    verify(task, times(1)).startApprovalProcess();
+  }
 }
@@ -11,11 +11,9 @@ package org.oscm.app.approval.util;
 
 import static org.junit.Assert.assertTrue;
 
-import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.oscm.app.approval.i18n.Messages;
 import org.oscm.app.approval.json.PriceModel;
 import org.oscm.internal.types.enumtypes.PriceModelType;
 
@@ -27,11 +25,6 @@ public class PriceTextTest {
   final int UNIT = 1;
   final int COMBINED = 2;
 
-  @Before
-  public void setUp() {
-    Messages.setLocale("en");
-  }
-
   @Test
   public void getPriceTag_Free() {
     // given
@@ -0,0 +1,272 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TtlCacheTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+  private final AtomicInteger loads = new AtomicInteger();
+  private final TtlCache.Loader<String, String> loader =
+      key -> key + "-" + loads.incrementAndGet();
+
+  private TtlCache<String, String> cache;
+
+  @Before
+  public void setUp() {
+    cache = createCache(100, 2);
+  }
+
+  private TtlCache<String, String> createCache(long ttl, int maxSize) {
+    return new TtlCache<String, String>(ttl, maxSize) {
+      @Override
+      long currentTimeMillis() {
+        return now.get();
+      }
+    };
+  }
+
+  @Test
+  public void get_cached() throws Exception {
+    // when
+    String first = cache.get("a", loader);
+    String second = cache.get("a", loader);
+
+    // then
+    assertEquals("a-1", first);
+    assertEquals("a-1", second);
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void get_expired() throws Exception {
+    // given
+    cache.get("a", loader);
+    now.addAndGet(100);
+
+    // when
+    String value = cache.get("a", loader);
+
+    // then
+    assertEquals("a-2", value);
+  }
+
+  @Test
+  public void get_invalidated() throws Exception {
+    // given
+    cache.get("a", loader);
+    cache.invalidate("a");
+
+    // when
+    String value = cache.get("a", loader);
+
+    // then
+    assertEquals("a-2", value);
+  }
+
+  @Test
+  public void get_full() throws Exception {
+    // given
+    cache.get("a", loader);
+    cache.get("b", loader);
+
+    // when
+    cache.get("c", loader);
+
+    // then
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void get_disabled() throws Exception {
+    // given
+    cache = createCache(0, 2);
+
+    // when
+    cache.get("a", loader);
+    cache.get("a", loader);
+
+    // then
+    assertEquals(2, loads.get());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void getIfPresent() throws Exception {
+    // given
+    cache.get("a", loader);
+
+    // when
+    String value = cache.getIfPresent("a");
+
+    // then
+    assertEquals("a-1", value);
+    assertNull(cache.getIfPresent("b"));
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void getIfPresent_expired() throws Exception {
+    // given
+    cache.get("a", loader);
+    now.addAndGet(100);
+
+    // when
+    String value = cache.getIfPresent("a");
+
+    // then
+    assertNull(value);
+  }
+
+  @Test
+  public void get_refreshAhead() throws Exception {
+    // given
+    cache =
+        new TtlCache<String, String>(100, 2, 80, Runnable::run) {
+          @Override
+          long currentTimeMillis() {
+            return now.get();
+          }
+        };
+    cache.get("a", loader);
+    now.addAndGet(80);
+
+    // when
+    String stale = cache.get("a", loader);
+    String refreshed = cache.get("a", loader);
+
+    // then
+    assertEquals("a-1", stale);
+    assertEquals("a-2", refreshed);
+    assertEquals(1, cache.getRefreshCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void get_refreshFailed() throws Exception {
+    // given
+    cache =
+        new TtlCache<String, String>(100, 2, 80, Runnable::run) {
+          @Override
+          long currentTimeMillis() {
+            return now.get();
+          }
+        };
+    cache.get("a", loader);
+    now.addAndGet(80);
+
+    // when
+    String value =
+        cache.get(
+            "a",
+            key -> {
+              throw new IllegalStateException("unavailable");
+            });
+
+    // then
+    assertEquals("a-1", value);
+    assertEquals(0, cache.getRefreshCount());
+  }
+
+  @Test
+  public void get_concurrentMisses() throws Exception {
+    // given
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    TtlCache.Loader<String, String> slowLoader =
+        key -> {
+          loading.countDown();
+          release.await(5, TimeUnit.SECONDS);
+          return loader.load(key);
+        };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    // when
+    Future<String> first = executor.submit(() -> cache.get("a", slowLoader));
+    loading.await(5, TimeUnit.SECONDS);
+    AtomicReference<Thread> waiting = new AtomicReference<>();
+    Future<String> second =
+        executor.submit(
+            () -> {
+              waiting.set(Thread.currentThread());
+              return cache.get("a", slowLoader);
+            });
+    awaitWaiting(waiting);
+    release.countDown();
+
+    // then
+    assertEquals("a-1", first.get(5, TimeUnit.SECONDS));
+    assertEquals("a-1", second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, loads.get());
+    executor.shutdown();
+  }
+
+  @Test
+  public void get_concurrentMissFailed() throws Exception {
+    // given
+    IllegalStateException failure = new IllegalStateException("unavailable");
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<String> first =
+        executor.submit(
+            () ->
+                cache.get(
+                    "a",
+                    key -> {
+                      loading.countDown();
+                      release.await(5, TimeUnit.SECONDS);
+                      throw failure;
+                    }));
+    loading.await(5, TimeUnit.SECONDS);
+
+    // when
+    AtomicReference<Thread> waiting = new AtomicReference<>();
+    Future<Exception> second =
+        executor.submit(
+            () -> {
+              waiting.set(Thread.currentThread());
+              try {
+                cache.get("a", loader);
+                return null;
+              } catch (Exception e) {
+                return e;
+              }
+            });
+    awaitWaiting(waiting);
+    release.countDown();
+
+    // then
+    assertSame(failure, second.get(5, TimeUnit.SECONDS));
+    assertEquals(0, loads.get());
+    assertEquals(0, cache.size());
+    executor.shutdown();
+  }
+
+  private static void awaitWaiting(AtomicReference<Thread> thread) throws InterruptedException {
+    while (thread.get() == null || thread.get().getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+  }
+}
@@ -17,6 +17,8 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -51,11 +53,13 @@ public class AppDataServiceTest {
 
   private HashMap<String, Setting> configSettings = new HashMap<String, Setting>();
   private PasswordAuthentication authentication;
+  private ApprovalInstanceAccess aic;
 
   @Before
   public void setUp() throws Exception {
     PowerMockito.mockStatic(APPlatformServiceFactory.class);
-   
+    AppDataService.invalidateAll();
+
     ApprovalInstanceAccess aic = spy(new ApprovalInstanceAccess());
     PowerMockito.whenNew(ApprovalInstanceAccess.class).withNoArguments().thenReturn(aic);
 
@@ -72,6 +76,7 @@ public class AppDataServiceTest {
         };
 
     doAnswer(clientData).when(aic).getCustomerSettings(anyString());
+    this.aic = aic;
 
     mockPlatformService();
   }
@@ -108,6 +113,44 @@ public class AppDataServiceTest {
     assertEquals("testUser", cred.getUserId());
   }
 
+  @Test
+  public void getOrgAdminCredentials_cached() throws Exception {
+    // given
+    defineCustomAttribute("USERKEY_1af3c", "3000");
+    defineCustomAttribute("USERID_1af3c", "testUser");
+    defineCustomAttribute("USERPWD_1af3c", "pass");
+    defineCustomAttribute("APPROVER_ORG_ID_1af3c", "approver");
+    dataService.loadOrgAdminCredentials("1af3c");
+
+    // when
+    Credentials cred = new AppDataService().loadOrgAdminCredentials("1af3c");
+    String approverOrgId = new AppDataService().getApproverOrgId("1af3c");
+
+    // then
+    assertEquals("testUser", cred.getUserId());
+    assertEquals("approver", approverOrgId);
+    verify(aic, times(1)).getCustomerSettings("1af3c");
+  }
+
+  @Test
+  public void getOrgAdminCredentials_invalidated() throws Exception {
+    // given
+    defineCustomAttribute("USERKEY_1af3c", "3000");
+    defineCustomAttribute("USERID_1af3c", "testUser");
+    defineCustomAttribute("USERPWD_1af3c", "pass");
+    defineCustomAttribute("APPROVER_ORG_ID_1af3c", "approver");
+    dataService.loadOrgAdminCredentials("1af3c");
+    defineCustomAttribute("USERPWD_1af3c", "changed");
+
+    // when
+    AppDataService.invalidate("1af3c");
+    Credentials cred = dataService.loadOrgAdminCredentials("1af3c");
+
+    // then
+    assertEquals("changed", cred.getPassword());
+    verify(aic, times(2)).getCustomerSettings("1af3c");
+  }
+
   @Test(expected = APPlatformException.class)
   public void getOrgAdminCredentials_missing() throws Exception {
     // given
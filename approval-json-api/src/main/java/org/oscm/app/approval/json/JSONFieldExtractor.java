@@ -0,0 +1,96 @@
+/********************************************************************************
+ *
+ * Copyright FUJITSU LIMITED 2020
+ *
+ *******************************************************************************/
+package org.oscm.app.approval.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads single values out of a JSON document with the streaming parser,
+ * without binding the whole document. Objects which do not lead to a
+ * requested field are skipped, and parsing stops as soon as all requested
+ * fields have been found.
+ */
+public class JSONFieldExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(JSONFieldExtractor.class);
+
+    /**
+     * Returns the scalar value at the given path, e.g.
+     * <code>ctmg_user.locale</code>, or <code>null</code> if there is none.
+     */
+    public static String extract(String json, String path) {
+        return extract(json, new String[] { path }).get(path);
+    }
+
+    /**
+     * Returns the scalar values at the given paths. Paths which are missing
+     * or refer to an object or array are not contained in the result.
+     */
+    public static Map<String, String> extract(String json, String... paths) {
+        Map<String, String> result = new HashMap<>();
+        if (json == null || paths.length == 0) {
+            return result;
+        }
+        Set<String> wanted = new HashSet<>(Arrays.asList(paths));
+        Set<String> parents = new HashSet<>();
+        for (String path : wanted) {
+            for (int i = path.indexOf('.'); i > 0; i = path.indexOf('.', i + 1)) {
+                parents.add(path.substring(0, i));
+            }
+        }
+        try (JsonParser parser = JSONMapper.getMapper().getFactory()
+                .createParser(json)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                readObject(parser, "", wanted, parents, result);
+            }
+        } catch (IOException e) {
+            log.error("Failed to read " + wanted + " from JSON. " + json, e);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the fields of the current object.
+     *
+     * @return <code>true</code> once all wanted values have been found
+     */
+    private static boolean readObject(JsonParser parser, String prefix,
+            Set<String> wanted, Set<String> parents, Map<String, String> result)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String path = prefix + parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                if (!parents.contains(path)) {
+                    parser.skipChildren();
+                } else if (readObject(parser, path + ".", wanted, parents,
+                        result)) {
+                    return true;
+                }
+            } else if (token == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            } else if (wanted.contains(path)) {
+                result.put(path, token == JsonToken.VALUE_NULL ? null
+                        : parser.getValueAsString());
+                if (result.size() == wanted.size()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -13,30 +13,34 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 
+/**
+ * Converts the trigger process data from and to JSON. The mapper is
+ * configured once, its readers and writers are immutable and thread-safe and
+ * can be shared by all callers.
+ */
 public class JSONMapper {
 
     private static final Logger log = LoggerFactory.getLogger(JSONMapper.class);
 
-    public static String toJSON(TriggerProcessData data) {
-        log.debug("");
-        ObjectMapper mapper = new ObjectMapper();
-        String json = "";
-        try {
-            json = mapper.writeValueAsString(data);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to convert TriggerProcessData to JSON.", e);
-        }
-        return json;
-    }
+    /**
+     * System property which disables the Afterburner module, e.g. to compare
+     * the performance with and without it.
+     */
+    static final String AFTERBURNER = "approval.json.afterburner";
 
-    public static TriggerProcessData toTriggerProcessData(String json) {
-        log.debug("");
+    private static final ObjectMapper MAPPER = createMapper();
+    private static final ObjectReader PROCESS_DATA_READER = MAPPER
+            .readerFor(TriggerProcessData.class);
+    private static final ObjectWriter PROCESS_DATA_WRITER = MAPPER
+            .writerFor(TriggerProcessData.class);
+
+    static ObjectMapper createMapper() {
         final ObjectMapper mapper = new ObjectMapper();
 
-        // to enable standard indentation ("pretty-printing"):
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
         // to allow serialization of "empty" POJOs (no properties to serialize)
         // (without this setting, an exception is thrown in those cases)
         mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
@@ -51,11 +55,54 @@ public class JSONMapper {
         mapper.enable(
                 DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT);
 
-        final ObjectReader reader = mapper.reader(TriggerProcessData.class);
+        if (!"false".equalsIgnoreCase(System.getProperty(AFTERBURNER))) {
+            // replaces the reflective field access of the data binding with
+            // generated bytecode
+            mapper.registerModule(new AfterburnerModule());
+        }
+        return mapper;
+    }
+
+    /**
+     * Returns the shared mapper. It must not be reconfigured.
+     */
+    public static ObjectMapper getMapper() {
+        return MAPPER;
+    }
+
+    /**
+     * Returns a shared reader for the given type.
+     */
+    public static ObjectReader readerFor(Class<?> type) {
+        return TriggerProcessData.class.equals(type) ? PROCESS_DATA_READER
+                : MAPPER.readerFor(type);
+    }
+
+    /**
+     * Returns a shared writer for the given type.
+     */
+    public static ObjectWriter writerFor(Class<?> type) {
+        return TriggerProcessData.class.equals(type) ? PROCESS_DATA_WRITER
+                : MAPPER.writerFor(type);
+    }
+
+    public static String toJSON(TriggerProcessData data) {
+        log.debug("");
+        String json = "";
+        try {
+            json = PROCESS_DATA_WRITER.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to convert TriggerProcessData to JSON.", e);
+        }
+        return json;
+    }
+
+    public static TriggerProcessData toTriggerProcessData(String json) {
+        log.debug("");
         TriggerProcessData data = null;
 
         try {
-            data = reader.readValue(json);
+            data = PROCESS_DATA_READER.readValue(json);
         } catch (Exception e) {
             log.error("Failed to convert JSON to TriggerProcessData. " + json,
                     e);
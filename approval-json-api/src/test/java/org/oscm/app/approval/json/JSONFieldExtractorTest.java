@@ -0,0 +1,77 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JSONFieldExtractorTest {
+
+  private static final String JSON =
+      "{\"ctmg_trigger_id\":\"onSubscribeToProduct\","
+          + "\"ctmg_service\":{\"id\":\"Service\",\"params\":{\"A\":{\"value\":\"1\"}}},"
+          + "\"ctmg_users\":[{\"locale\":\"de\"}],"
+          + "\"ctmg_user\":{\"email\":null,\"locale\":\"en\",\"key\":11000}}";
+
+  @Test
+  public void extract_nested() {
+    // when
+    String locale = JSONFieldExtractor.extract(JSON, "ctmg_user.locale");
+
+    // then
+    assertEquals("en", locale);
+  }
+
+  @Test
+  public void extract_several() {
+    // when
+    Map<String, String> values =
+        JSONFieldExtractor.extract(
+            JSON, "ctmg_trigger_id", "ctmg_service.params.A.value", "ctmg_user.key");
+
+    // then
+    assertEquals("onSubscribeToProduct", values.get("ctmg_trigger_id"));
+    assertEquals("1", values.get("ctmg_service.params.A.value"));
+    assertEquals("11000", values.get("ctmg_user.key"));
+  }
+
+  @Test
+  public void extract_null() {
+    // when
+    Map<String, String> values = JSONFieldExtractor.extract(JSON, new String[] {"ctmg_user.email"});
+
+    // then
+    assertTrue(values.containsKey("ctmg_user.email"));
+    assertNull(values.get("ctmg_user.email"));
+  }
+
+  @Test
+  public void extract_missingOrNotScalar() {
+    // when
+    Map<String, String> values =
+        JSONFieldExtractor.extract(JSON, "ctmg_user.phone", "ctmg_service", "ctmg_users");
+
+    // then
+    assertTrue(values.isEmpty());
+  }
+
+  @Test
+  public void extract_invalid() {
+    // when
+    String value = JSONFieldExtractor.extract("{\"ctmg_user\":{\"locale\":", "ctmg_user.locale");
+
+    // then
+    assertNull(value);
+    assertNull(JSONFieldExtractor.extract(null, "a"));
+  }
+}
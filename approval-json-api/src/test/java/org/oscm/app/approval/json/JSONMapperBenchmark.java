@@ -0,0 +1,97 @@
+/**
+ * *****************************************************************************
+ *
+ * <p>Copyright FUJITSU LIMITED 2020
+ *
+ * <p>*****************************************************************************
+ */
+package org.oscm.app.approval.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Compares reading a task description with a new mapper per call, as before, with the shared
+ * reader and with the streaming extraction of a single field. Not run with the unit tests, start
+ * it with
+ *
+ * <pre>
+ * mvn -pl approval-json-api test-compile org.codehaus.mojo:exec-maven-plugin:3.0.0:exec \
+ *   -Dexec.executable=java -Dexec.classpathScope=test \
+ *   -Dexec.args="-cp %classpath org.oscm.app.approval.json.JSONMapperBenchmark"
+ * </pre>
+ *
+ * Add <code>-Dapproval.json.afterburner=false</code> to the java arguments to measure the shared
+ * reader without Afterburner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONMapperBenchmark {
+
+  static final String DESCRIPTION =
+      "{\"ctmg_trigger_id\":\"onSubscribeToProduct\",\"ctmg_trigger_name\":\"Subscribe\","
+          + "\"ctmg_trigger_key\":\"12000\",\"ctmg_trigger_orgid\":\"supplier\","
+          + "\"ctmg_suspend_process\":\"true\",\"instanceid\":\"InstanceID\","
+          + "\"instancename\":\"Subscribe to service\","
+          + "\"ctmg_organization\":{\"id\":\"customer\",\"name\":\"Customer Inc.\","
+          + "\"address\":\"Small Village 10\"},"
+          + "\"ctmg_service\":{\"id\":\"Service\",\"technicalId\":\"Tech\",\"name\":\"Service\","
+          + "\"seller\":{\"key\":\"18000\",\"id\":\"supplier\",\"name\":\"Supplier\"},"
+          + "\"price\":{\"oneTimeFee\":\"10\",\"pricePerPeriod\":\"10\",\"pricePerUser\":\"100\","
+          + "\"freePeriod\":\"7\",\"type\":\"PER_UNIT\",\"currency\":\"EUR\",\"period\":\"MONTH\"},"
+          + "\"params\":{\"RESPONSIBLE_PERSON\":{\"id\":\"RESPONSIBLE_PERSON\","
+          + "\"label\":\"Responsible person\",\"value\":\"Jacob Smith\"},"
+          + "\"AUTO_APPROVE\":{\"id\":\"AUTO_APPROVE\",\"label\":\"Auto approve\",\"value\":\"false\"}}},"
+          + "\"ctmg_subscription\":{\"id\":\"SubscriptionID\"},"
+          + "\"ctmg_user\":{\"userid\":\"JacobSmith\",\"orgId\":\"customer\",\"key\":\"11000\","
+          + "\"additional_name\":\"Jan\",\"address\":\"Small Village 10\","
+          + "\"email\":\"jacob.smith@email.com\",\"firstname\":\"Jacob\",\"lastname\":\"Smith\","
+          + "\"locale\":\"en\",\"phone\":\"123456789\",\"salutation\":\"MR\","
+          + "\"realm_userid\":\"JacobS\"}}";
+
+  /** The former implementation of JSONMapper.toTriggerProcessData. */
+  @Benchmark
+  public TriggerProcessData newMapperPerCall() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.enable(SerializationFeature.INDENT_OUTPUT);
+    mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+    mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    mapper.enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT);
+    return mapper.readerFor(TriggerProcessData.class).readValue(DESCRIPTION);
+  }
+
+  @Benchmark
+  public TriggerProcessData sharedReader() {
+    return JSONMapper.toTriggerProcessData(DESCRIPTION);
+  }
+
+  @Benchmark
+  public String extractLocale() {
+    return JSONFieldExtractor.extract(DESCRIPTION, "ctmg_user.locale");
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(JSONMapperBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
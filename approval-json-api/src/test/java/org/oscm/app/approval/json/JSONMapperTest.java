@@ -140,4 +140,16 @@ public class JSONMapperTest {
     // then
     assertNull(data);
   }
+
+  @Test
+  public void testReaderForShared() {
+    // when
+    Object reader = JSONMapper.readerFor(TriggerProcessData.class);
+
+    // then
+    assertSame(reader, JSONMapper.readerFor(TriggerProcessData.class));
+    assertSame(
+        JSONMapper.writerFor(TriggerProcessData.class),
+        JSONMapper.writerFor(TriggerProcessData.class));
+  }
 }